@@ -0,0 +1,208 @@
+package com.example.microservices.auth.audit;
+
+import com.example.microservices.auth.model.LoginAttempt;
+import com.example.microservices.auth.repository.AuthRepository;
+import com.example.microservices.auth.util.ConfigUtil;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ログイン履歴の非同期書き込み
+ * ログイン試行を有界キューに積み、バックグラウンドで N 件 / M ミリ秒ごとに
+ * JDBCバッチで login_history へ書き込む
+ */
+@ApplicationScoped
+public class LoginHistoryWriter {
+
+    /**
+     * キューが満杯の場合の動作
+     */
+    public enum OverflowPolicy {
+        // 最も古い試行を破棄して新しい試行を積む
+        DROP_OLDEST,
+        // 空きが出るまで待機（待機上限を超えた場合は破棄）
+        BLOCK
+    }
+
+    private final int queueCapacity = ConfigUtil.getInt("LOGIN_HISTORY_QUEUE_CAPACITY", 10_000);
+    private final int batchSize = ConfigUtil.getInt("LOGIN_HISTORY_BATCH_SIZE", 500);
+    private final long flushIntervalMillis = ConfigUtil.getLong("LOGIN_HISTORY_FLUSH_INTERVAL_MILLIS", 200);
+    private final long blockTimeoutMillis = ConfigUtil.getLong("LOGIN_HISTORY_BLOCK_TIMEOUT_MILLIS", 50);
+    private final OverflowPolicy overflowPolicy =
+            parseOverflowPolicy(ConfigUtil.getString("LOGIN_HISTORY_OVERFLOW_POLICY", OverflowPolicy.DROP_OLDEST.name()));
+
+    @Inject
+    private AuthRepository authRepository;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    private final BlockingQueue<LoginAttempt> queue = new ArrayBlockingQueue<>(queueCapacity);
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private ScheduledFuture<?> flushTask;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    /**
+     * アプリケーション起動時に定期フラッシュを開始
+     */
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        flushTask = scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * シャットダウン時にキューに残った試行を書き込む
+     */
+    @PreDestroy
+    void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        flushLock.lock();
+        try {
+            while (!queue.isEmpty()) {
+                writeBatch();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * ログイン試行を書き込みキューに追加
+     */
+    public void submit(LoginAttempt attempt) {
+        if (!offer(attempt)) {
+            dropped.increment();
+            return;
+        }
+        enqueued.increment();
+
+        // バッチサイズに達した場合は定期実行を待たずにフラッシュ
+        if (queue.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                });
+            } catch (RuntimeException e) {
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * キューの内容をバッチで書き込む（他スレッドがフラッシュ中の場合は何もしない）
+     */
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            while (!queue.isEmpty()) {
+                writeBatch();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 書き込みの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long flushCount = flushes.sum();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("overflowPolicy", overflowPolicy.name());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("written", written.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("failed", failed.sum());
+        stats.put("flushes", flushCount);
+        stats.put("lastFlushMillis", TimeUnit.NANOSECONDS.toMillis(lastFlushNanos));
+        stats.put("maxFlushMillis", TimeUnit.NANOSECONDS.toMillis(maxFlushNanos.get()));
+        stats.put("avgFlushMillis", flushCount > 0 ? TimeUnit.NANOSECONDS.toMillis(flushNanos.sum() / flushCount) : 0);
+        return stats;
+    }
+
+    private boolean offer(LoginAttempt attempt) {
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                return queue.offer(attempt, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        while (!queue.offer(attempt)) {
+            if (queue.poll() != null) {
+                dropped.increment();
+            }
+        }
+        return true;
+    }
+
+    private void writeBatch() {
+        List<LoginAttempt> batch = new ArrayList<>(batchSize);
+        queue.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            authRepository.recordLoginHistoryBatch(batch);
+            written.add(batch.size());
+        } catch (Exception e) {
+            // ログ記録失敗は致命的なエラーではないので破棄して継続
+            failed.add(batch.size());
+            System.err.println("Failed to record login history batch (" + batch.size() + " rows): " + e.getMessage());
+        }
+        long elapsed = System.nanoTime() - start;
+        flushes.increment();
+        flushNanos.add(elapsed);
+        lastFlushNanos = elapsed;
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    /**
+     * キューが満杯の場合の動作をパース（大文字小文字は区別しない。不明な値は DROP_OLDEST）
+     */
+    private static OverflowPolicy parseOverflowPolicy(String value) {
+        try {
+            return OverflowPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown LOGIN_HISTORY_OVERFLOW_POLICY '" + value + "', using " + OverflowPolicy.DROP_OLDEST);
+            return OverflowPolicy.DROP_OLDEST;
+        }
+    }
+}
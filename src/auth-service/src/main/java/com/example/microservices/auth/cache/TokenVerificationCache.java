@@ -0,0 +1,176 @@
+package com.example.microservices.auth.cache;
+
+import com.example.microservices.auth.util.ConfigUtil;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * トークン検証結果のキャッシュ
+ * トークンのハッシュをキーに検証済みの結果をトークン自身の有効期限まで保持し、
+ * 拒否したトークンは短時間だけネガティブキャッシュに保持する
+ */
+@ApplicationScoped
+public class TokenVerificationCache {
+
+    private final int maxEntries = ConfigUtil.getInt("TOKEN_CACHE_MAX_ENTRIES", 100_000);
+    private final int maxNegativeEntries = ConfigUtil.getInt("TOKEN_CACHE_MAX_NEGATIVE_ENTRIES", 10_000);
+    private final long maxTtlMillis = ConfigUtil.getLong("TOKEN_CACHE_MAX_TTL_MILLIS", 10 * 60 * 1000L);
+    private final long negativeTtlMillis = ConfigUtil.getLong("TOKEN_CACHE_NEGATIVE_TTL_MILLIS", 30 * 1000L);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private final BoundedExpiringMap<String, Entry> entries = new BoundedExpiringMap<>(
+            maxEntries, Entry::getExpiresAtMillis, (key, entry, expired) -> evictions.increment());
+    private final BoundedExpiringMap<String, Long> negativeEntries = new BoundedExpiringMap<>(
+            maxNegativeEntries, Long::longValue);
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    /**
+     * キャッシュされた検証結果
+     */
+    public static class Entry {
+        private final String userId;
+        private final String username;
+        private final LocalDateTime sessionExpiresAt;
+        private final long expiresAtMillis;
+
+        public Entry(String userId, String username, LocalDateTime sessionExpiresAt, long expiresAtMillis) {
+            this.userId = userId;
+            this.username = username;
+            this.sessionExpiresAt = sessionExpiresAt;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * レガシーセッショントークンの有効期限（JWTの場合はnull）
+         */
+        public LocalDateTime getSessionExpiresAt() {
+            return sessionExpiresAt;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+
+        boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+
+    /**
+     * 検証済みの結果を取得
+     */
+    public Optional<Entry> get(String token) {
+        String key = hash(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, entry);
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry);
+    }
+
+    /**
+     * 直近に拒否されたトークンかどうか
+     */
+    public boolean isRejected(String token) {
+        String key = hash(token);
+        Long expiresAt = negativeEntries.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() >= expiresAt) {
+            negativeEntries.remove(key, expiresAt);
+            return false;
+        }
+        negativeHits.increment();
+        return true;
+    }
+
+    /**
+     * 検証結果を登録
+     *
+     * @param tokenExpiresAtMillis トークン自身の有効期限（エポックミリ秒）
+     */
+    public void put(String token, String userId, String username, LocalDateTime sessionExpiresAt, long tokenExpiresAtMillis) {
+        long now = System.currentTimeMillis();
+        long expiresAt = Math.min(tokenExpiresAtMillis, now + maxTtlMillis);
+        if (expiresAt <= now) {
+            return;
+        }
+        entries.put(hash(token), new Entry(userId, username, sessionExpiresAt, expiresAt), now);
+    }
+
+    /**
+     * 拒否したトークンを登録
+     */
+    public void putRejected(String token) {
+        long now = System.currentTimeMillis();
+        negativeEntries.put(hash(token), now + negativeTtlMillis, now);
+    }
+
+    /**
+     * トークンの検証結果を破棄（ログアウト・セッション削除時）
+     */
+    public void invalidate(String token) {
+        if (entries.remove(hash(token)) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * キャッシュの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", entries.size());
+        stats.put("negativeSize", negativeEntries.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("negativeHits", negativeHits.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private String hash(String token) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        byte[] hashed = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hashed);
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.microservices.auth.directory;
+
+import com.example.microservices.auth.model.UserIdentity;
+import com.example.microservices.auth.repository.AuthRepository;
+import com.example.microservices.auth.util.ConfigUtil;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ユーザーディレクトリ
+ * ユーザーサービスDBの userId ↔ username の対応をメモリ上に複製し、
+ * users.updated_at による差分取得で定期的に更新する。
+ * ディレクトリに存在しない場合はDBを直接参照するため、新規ユーザーもログイン可能。
+ * 削除は定期的な全件再読込で検知し、ログイン時の存在確認は最後にDBで確認してから
+ * USER_DIRECTORY_CONFIRM_TTL_SECONDS を過ぎたエントリに限ってDBを参照する。
+ */
+@ApplicationScoped
+public class UserDirectory {
+
+    private final boolean enabled = ConfigUtil.getBoolean("USER_DIRECTORY_ENABLED", true);
+    private final long refreshIntervalSeconds = ConfigUtil.getLong("USER_DIRECTORY_REFRESH_SECONDS", 30);
+    // 差分取得では削除を検知できないため、一定間隔で全件を読み直す
+    private final long fullReloadIntervalSeconds = ConfigUtil.getLong("USER_DIRECTORY_FULL_RELOAD_SECONDS", 300);
+    // ログイン時の存在確認でDBを参照しないエントリの鮮度（既定は全件再読込の間隔 + 差分取得の間隔）
+    private final long confirmTtlMillis = TimeUnit.SECONDS.toMillis(
+            ConfigUtil.getLong("USER_DIRECTORY_CONFIRM_TTL_SECONDS", fullReloadIntervalSeconds + refreshIntervalSeconds));
+    // 差分取得の開始位置を取り込み済みの最大値より前にずらす幅
+    // （updated_at はトランザクション開始時刻のため、後からコミットされた古い updated_at の行を取りこぼさない）
+    private final long watermarkLagSeconds = ConfigUtil.getLong("USER_DIRECTORY_WATERMARK_LAG_SECONDS", 60);
+
+    @Inject
+    private AuthRepository authRepository;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    private volatile ConcurrentHashMap<String, UUID> userIdsByUsername = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<UUID, String> usernamesByUserId = new ConcurrentHashMap<>();
+    // 全件再読込以降に個別にDBで確認したエントリの確認時刻（全件再読込で読み込んだエントリは lastFullReloadMillis）
+    private volatile ConcurrentHashMap<UUID, Long> confirmedAtMillis = new ConcurrentHashMap<>();
+    // マップの差し替えと書き込みの排他（全件再読込中の書き込みが古いマップに入って失われないようにする）
+    private final Object writeLock = new Object();
+
+    // 取り込み済みの users.updated_at の最大値（DB時刻基準の差分取得位置）
+    private volatile LocalDateTime watermark;
+    private volatile long lastRefreshMillis;
+    private volatile long lastFullReloadMillis;
+    private volatile boolean loaded;
+    private ScheduledFuture<?> refreshTask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder confirmQueries = new LongAdder();
+
+    /**
+     * アプリケーション起動時に初回ロードと定期更新を開始
+     */
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        if (!enabled) {
+            return;
+        }
+        refreshTask = scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+        }
+    }
+
+    /**
+     * ユーザー名からユーザーIDを解決（未登録の場合はDBを直接参照）
+     */
+    public Optional<UUID> resolveUserId(String username) throws SQLException {
+        UUID userId = userIdsByUsername.get(username);
+        if (userId != null) {
+            hits.increment();
+            return Optional.of(userId);
+        }
+        misses.increment();
+        Optional<UUID> found = authRepository.getUserIdByUsername(username);
+        found.ifPresent(id -> put(id, username));
+        return found;
+    }
+
+    /**
+     * ユーザーIDからユーザー名を解決（未登録の場合はDBを直接参照）
+     */
+    public Optional<String> resolveUsername(UUID userId) throws SQLException {
+        String username = usernamesByUserId.get(userId);
+        if (username != null) {
+            hits.increment();
+            return Optional.of(username);
+        }
+        misses.increment();
+        Optional<String> found = authRepository.getUsernameByUserId(userId);
+        found.ifPresent(name -> put(userId, name));
+        return found;
+    }
+
+    /**
+     * ユーザーがまだ存在するかを確認（トークン発行前に使用）
+     * 最後にDBで確認してから confirmTtl 以内のエントリはディレクトリの値を返し、それ以外はDBで確認する。
+     * 削除されていた場合はディレクトリからも削除する
+     *
+     * @return 現在のユーザー名。削除されていた場合は空
+     */
+    public Optional<String> confirmExists(UUID userId) throws SQLException {
+        String username = usernamesByUserId.get(userId);
+        if (username != null && System.currentTimeMillis() - confirmedAt(userId) <= confirmTtlMillis) {
+            return Optional.of(username);
+        }
+        confirmQueries.increment();
+        Optional<String> found = authRepository.getUsernameByUserId(userId);
+        if (found.isPresent()) {
+            put(userId, found.get());
+        } else {
+            evicted.increment();
+            synchronized (writeLock) {
+                String removed = usernamesByUserId.remove(userId);
+                if (removed != null) {
+                    userIdsByUsername.remove(removed, userId);
+                }
+                confirmedAtMillis.remove(userId);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * ディレクトリを更新（差分取得、一定間隔で全件再読込）
+     */
+    public void refresh() {
+        try {
+            long now = System.currentTimeMillis();
+            if (!loaded || now - lastFullReloadMillis >= TimeUnit.SECONDS.toMillis(fullReloadIntervalSeconds)) {
+                reloadAll();
+                loaded = true;
+            } else {
+                LocalDateTime since = watermark != null ? watermark.minusSeconds(watermarkLagSeconds) : null;
+                applyChanges(authRepository.findUserIdentitiesUpdatedSince(since));
+            }
+            lastRefreshMillis = now;
+        } catch (Exception e) {
+            // 更新失敗時は既存のディレクトリで継続（ミス時はDB直接参照にフォールバック）
+            refreshFailures.increment();
+            System.err.println("Failed to refresh user directory: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ディレクトリの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("loaded", loaded);
+        stats.put("size", usernamesByUserId.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("refreshFailures", refreshFailures.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("confirmQueries", confirmQueries.sum());
+        stats.put("watermark", watermark != null ? watermark.toString() : null);
+        stats.put("stalenessMillis", lastRefreshMillis > 0 ? System.currentTimeMillis() - lastRefreshMillis : null);
+        return stats;
+    }
+
+    private void reloadAll() throws SQLException {
+        long startedAt = System.currentTimeMillis();
+        List<UserIdentity> identities = authRepository.findUserIdentitiesUpdatedSince(null);
+        ConcurrentHashMap<String, UUID> byUsername = new ConcurrentHashMap<>(identities.size() * 2);
+        ConcurrentHashMap<UUID, String> byUserId = new ConcurrentHashMap<>(identities.size() * 2);
+        LocalDateTime latest = null;
+        for (UserIdentity identity : identities) {
+            byUsername.put(identity.getUsername(), identity.getUserId());
+            byUserId.put(identity.getUserId(), identity.getUsername());
+            latest = later(latest, identity.getUpdatedAt());
+        }
+        synchronized (writeLock) {
+            userIdsByUsername = byUsername;
+            usernamesByUserId = byUserId;
+            confirmedAtMillis = new ConcurrentHashMap<>();
+            // 読み込み開始時点で存在したことを確認済みとみなす
+            lastFullReloadMillis = startedAt;
+            watermark = latest;
+        }
+    }
+
+    private void applyChanges(List<UserIdentity> identities) {
+        synchronized (writeLock) {
+            LocalDateTime latest = watermark;
+            for (UserIdentity identity : identities) {
+                put(identity.getUserId(), identity.getUsername());
+                latest = later(latest, identity.getUpdatedAt());
+            }
+            watermark = latest;
+        }
+    }
+
+    private long confirmedAt(UUID userId) {
+        Long confirmed = confirmedAtMillis.get(userId);
+        return confirmed != null ? Math.max(confirmed, lastFullReloadMillis) : lastFullReloadMillis;
+    }
+
+    /**
+     * DBで確認した対応を登録（全件再読込によるマップの差し替えと排他し、常に現在のマップに書き込む）
+     */
+    private void put(UUID userId, String username) {
+        synchronized (writeLock) {
+            String previous = usernamesByUserId.put(userId, username);
+            // ユーザー名変更時は旧ユーザー名の対応を削除
+            if (previous != null && !previous.equals(username)) {
+                userIdsByUsername.remove(previous, userId);
+            }
+            userIdsByUsername.put(username, userId);
+            confirmedAtMillis.put(userId, System.currentTimeMillis());
+        }
+    }
+
+    private LocalDateTime later(LocalDateTime current, LocalDateTime candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.microservices.auth.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 認証情報一括登録リクエストDTO
+ */
+public class CredentialBatchRequest implements Serializable {
+    private List<CredentialImport> credentials;
+
+    // Constructors
+    public CredentialBatchRequest() {
+    }
+
+    public CredentialBatchRequest(List<CredentialImport> credentials) {
+        this.credentials = credentials;
+    }
+
+    // Getters and Setters
+    public List<CredentialImport> getCredentials() {
+        return credentials;
+    }
+
+    public void setCredentials(List<CredentialImport> credentials) {
+        this.credentials = credentials;
+    }
+}
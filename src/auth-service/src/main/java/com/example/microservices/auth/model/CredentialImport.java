@@ -0,0 +1,49 @@
+package com.example.microservices.auth.model;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * 一括登録する認証情報（1件分）
+ * password（平文）または passwordHash（BCrypt ハッシュ）のどちらかを指定する
+ */
+public class CredentialImport implements Serializable {
+    private UUID userId;
+    private String password;
+    private String passwordHash;
+
+    // Constructors
+    public CredentialImport() {
+    }
+
+    public CredentialImport(UUID userId, String password, String passwordHash) {
+        this.userId = userId;
+        this.password = password;
+        this.passwordHash = passwordHash;
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.microservices.auth.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ログイン試行（login_history に書き込む1件分）
+ */
+public class LoginAttempt implements Serializable {
+    private UUID userId;
+    private String ipAddress;
+    private String userAgent;
+    private boolean success;
+    private LocalDateTime attemptedAt;
+
+    // Constructors
+    public LoginAttempt() {
+    }
+
+    public LoginAttempt(UUID userId, String ipAddress, String userAgent, boolean success, LocalDateTime attemptedAt) {
+        this.userId = userId;
+        this.ipAddress = ipAddress;
+        this.userAgent = userAgent;
+        this.success = success;
+        this.attemptedAt = attemptedAt;
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public void setIpAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public LocalDateTime getAttemptedAt() {
+        return attemptedAt;
+    }
+
+    public void setAttemptedAt(LocalDateTime attemptedAt) {
+        this.attemptedAt = attemptedAt;
+    }
+}
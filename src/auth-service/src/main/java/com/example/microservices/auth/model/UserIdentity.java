@@ -0,0 +1,49 @@
+package com.example.microservices.auth.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ユーザーIDとユーザー名の対応（ユーザーサービスDBから取得）
+ */
+public class UserIdentity implements Serializable {
+    private UUID userId;
+    private String username;
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public UserIdentity() {
+    }
+
+    public UserIdentity(UUID userId, String username, LocalDateTime updatedAt) {
+        this.userId = userId;
+        this.username = username;
+        this.updatedAt = updatedAt;
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,11 +1,19 @@
 package com.example.microservices.auth.repository;
 
+import com.example.microservices.auth.model.LoginAttempt;
 import com.example.microservices.auth.model.SessionToken;
+import com.example.microservices.auth.model.UserIdentity;
 import javax.annotation.Resource;
 import javax.enterprise.context.ApplicationScoped;
 import javax.sql.DataSource;
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -17,33 +25,9 @@ public class AuthRepository {
     @Resource(lookup = "java:app/jdbc/authServiceDB")
     private DataSource dataSource;
 
-    static {
-        try {
-            // PostgreSQLドライバーを明示的にロード
-            Class.forName("org.postgresql.Driver");
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("PostgreSQL JDBC Driver not found", e);
-        }
-    }
-
-    /**
-     * 設定値を取得（システムプロパティ優先、次に環境変数、最後にデフォルト値）
-     * テスト時にはシステムプロパティで動的な値を設定可能
-     */
-    private String getConfigValue(String key, String defaultValue) {
-        // システムプロパティを優先（テスト用）
-        String sysProp = System.getProperty(key);
-        if (sysProp != null && !sysProp.isEmpty()) {
-            return sysProp;
-        }
-        // 次に環境変数
-        String envVar = System.getenv(key);
-        if (envVar != null && !envVar.isEmpty()) {
-            return envVar;
-        }
-        // デフォルト値
-        return defaultValue;
-    }
+    // ユーザーサービスDB参照用のコネクションプール（glassfish-resources.xml で定義）
+    @Resource(lookup = "java:app/jdbc/userServiceDB")
+    private DataSource userServiceDataSource;
 
     /**
      * ユーザー名からユーザーIDを取得
@@ -51,17 +35,9 @@ public class AuthRepository {
     public Optional<UUID> getUserIdByUsername(String username) throws SQLException {
         // ユーザーサービスのデータベースに接続してユーザーIDを取得
         // 本来はマイクロサービス間通信で取得すべきですが、簡易的にDB直接接続
-        // 設定値を取得（システムプロパティまたは環境変数から）
-        String host = getConfigValue("USER_SERVICE_DB_HOST", "localhost");
-        String port = getConfigValue("USER_SERVICE_DB_PORT", "5432");
-        String dbName = getConfigValue("USER_SERVICE_DB_NAME", "user_service_db");
-        String dbUser = getConfigValue("USER_SERVICE_DB_USER", "postgres");
-        String dbPassword = getConfigValue("USER_SERVICE_DB_PASSWORD", "postgres");
-        
-        String jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", host, port, dbName);
         String sql = "SELECT id FROM users WHERE username = ?";
         
-        try (Connection conn = java.sql.DriverManager.getConnection(jdbcUrl, dbUser, dbPassword);
+        try (Connection conn = userServiceDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, username);
@@ -80,17 +56,9 @@ public class AuthRepository {
      */
     public Optional<String> getUsernameByUserId(UUID userId) throws SQLException {
         // ユーザーサービスのデータベースに接続してユーザー名を取得
-        // 設定値を取得（システムプロパティまたは環境変数から）
-        String host = getConfigValue("USER_SERVICE_DB_HOST", "localhost");
-        String port = getConfigValue("USER_SERVICE_DB_PORT", "5432");
-        String dbName = getConfigValue("USER_SERVICE_DB_NAME", "user_service_db");
-        String dbUser = getConfigValue("USER_SERVICE_DB_USER", "postgres");
-        String dbPassword = getConfigValue("USER_SERVICE_DB_PASSWORD", "postgres");
-        
-        String jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", host, port, dbName);
         String sql = "SELECT username FROM users WHERE id = ?";
         
-        try (Connection conn = java.sql.DriverManager.getConnection(jdbcUrl, dbUser, dbPassword);
+        try (Connection conn = userServiceDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setObject(1, userId);
@@ -104,6 +72,36 @@ public class AuthRepository {
         return Optional.empty();
     }
 
+    /**
+     * 指定日時以降に更新されたユーザーのID・ユーザー名を取得（nullの場合は全件）
+     */
+    public List<UserIdentity> findUserIdentitiesUpdatedSince(LocalDateTime since) throws SQLException {
+        List<UserIdentity> identities = new ArrayList<>();
+        String sql = since == null
+                ? "SELECT id, username, updated_at FROM users ORDER BY updated_at"
+                : "SELECT id, username, updated_at FROM users WHERE updated_at >= ? ORDER BY updated_at";
+
+        try (Connection conn = userServiceDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            if (since != null) {
+                stmt.setTimestamp(1, Timestamp.valueOf(since));
+            }
+            stmt.setFetchSize(1000);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp updatedAt = rs.getTimestamp("updated_at");
+                    identities.add(new UserIdentity(
+                            (UUID) rs.getObject("id"),
+                            rs.getString("username"),
+                            updatedAt != null ? updatedAt.toLocalDateTime() : null));
+                }
+            }
+        }
+        return identities;
+    }
+
     /**
      * ユーザー認証情報の検証
      */
@@ -145,6 +143,54 @@ public class AuthRepository {
         return Optional.empty();
     }
 
+    /**
+     * パスワードハッシュ更新（保存済みハッシュが変わっていない場合のみ）
+     */
+    public boolean updatePasswordHash(UUID userId, String currentHash, String newHash) throws SQLException {
+        String sql = "UPDATE user_credentials SET password_hash = ?, updated_at = CURRENT_TIMESTAMP " +
+                    "WHERE user_id = ? AND password_hash = ?";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, newHash);
+            stmt.setObject(2, userId);
+            stmt.setString(3, currentHash);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * 認証情報の一括作成（1回のINSERTで登録）
+     * 既に認証情報があるユーザーは変更しない
+     *
+     * @param passwordHashes ユーザーID → パスワードハッシュ
+     * @return 新たに作成したユーザーID
+     */
+    public Set<UUID> createCredentialsBatch(Map<UUID, String> passwordHashes) throws SQLException {
+        String sql = "INSERT INTO user_credentials (user_id, password_hash) " +
+                    "SELECT c.user_id, c.password_hash FROM unnest(?, ?) AS c(user_id, password_hash) " +
+                    "ON CONFLICT (user_id) DO NOTHING RETURNING user_id";
+
+        Set<UUID> created = new HashSet<>();
+        if (passwordHashes.isEmpty()) {
+            return created;
+        }
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setArray(1, conn.createArrayOf("uuid", passwordHashes.keySet().toArray()));
+            stmt.setArray(2, conn.createArrayOf("varchar", passwordHashes.values().toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    created.add((UUID) rs.getObject("user_id"));
+                }
+            }
+        }
+        return created;
+    }
+
     /**
      * セッショントークン作成
      */
@@ -227,6 +273,27 @@ public class AuthRepository {
         }
     }
 
+    /**
+     * ログイン履歴の一括記録（JDBCバッチ）
+     */
+    public void recordLoginHistoryBatch(List<LoginAttempt> attempts) throws SQLException {
+        String sql = "INSERT INTO login_history (user_id, login_time, ip_address, user_agent, success) VALUES (?, ?, ?, ?, ?)";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (LoginAttempt attempt : attempts) {
+                stmt.setObject(1, attempt.getUserId());
+                stmt.setTimestamp(2, Timestamp.valueOf(attempt.getAttemptedAt()));
+                stmt.setString(3, attempt.getIpAddress());
+                stmt.setString(4, attempt.getUserAgent());
+                stmt.setBoolean(5, attempt.isSuccess());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
     /**
      * 期限切れセッションの削除
      */
@@ -2,24 +2,47 @@ package com.example.microservices.auth.rest;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.microservices.auth.audit.LoginHistoryWriter;
+import com.example.microservices.auth.cache.TokenVerificationCache;
+import com.example.microservices.auth.directory.UserDirectory;
+import com.example.microservices.auth.filter.RequestDeadlineFilter;
+import com.example.microservices.auth.model.CredentialBatchRequest;
+import com.example.microservices.auth.model.CredentialImport;
+import com.example.microservices.auth.model.LoginAttempt;
 import com.example.microservices.auth.model.LoginRequest;
 import com.example.microservices.auth.model.SessionToken;
 import com.example.microservices.auth.repository.AuthRepository;
 import com.example.microservices.auth.service.AuthService;
+import com.example.microservices.auth.util.ConfigUtil;
 import com.example.microservices.auth.util.JwtUtil;
+import com.example.microservices.auth.util.ServiceTokenVerifier;
 
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 認証REST API
@@ -29,6 +52,9 @@ import java.util.UUID;
 @Consumes(MediaType.APPLICATION_JSON)
 public class AuthResource {
 
+    private static final long LOGIN_TIMEOUT_MILLIS = ConfigUtil.getLong("LOGIN_TIMEOUT_MILLIS", 5000);
+    private static final int CREDENTIAL_BATCH_MAX_SIZE = ConfigUtil.getInt("CREDENTIAL_BATCH_MAX_SIZE", 1000);
+
     @Inject
     private AuthRepository authRepository;
 
@@ -38,18 +64,43 @@ public class AuthResource {
     @Inject
     private JwtUtil jwtUtil;
 
+    @Inject
+    private TokenVerificationCache tokenVerificationCache;
+
+    @Inject
+    private UserDirectory userDirectory;
+
+    @Inject
+    private LoginHistoryWriter loginHistoryWriter;
+
+    @Resource
+    private ManagedExecutorService managedExecutorService;
+
     /**
      * ログイン
+     * パスワード検証は専用スレッドプールで実行し、その間HTTPスレッドを解放する
      */
     @POST
     @Path("/login")
-    public Response login(LoginRequest loginRequest, @Context HttpHeaders headers) {
+    public void login(LoginRequest loginRequest, @Context HttpHeaders headers, @Context HttpServletRequest request,
+                      @Suspended AsyncResponse asyncResponse) {
+        // BFF から期限が伝えられた場合は、それを過ぎて処理を続けないようタイムアウトを短くする
+        long timeoutMillis = Math.min(LOGIN_TIMEOUT_MILLIS,
+                RequestDeadlineFilter.remainingMillis(request, LOGIN_TIMEOUT_MILLIS));
+        asyncResponse.setTimeout(Math.max(1, timeoutMillis), TimeUnit.MILLISECONDS);
+        asyncResponse.setTimeoutHandler(ar -> ar.resume(createBusyResponse("Login timed out")));
+
+        // リクエストヘッダーは別スレッドから参照できないため先に取り出す
+        String ipAddress = resolveIpAddress(headers);
+        String userAgent = resolveUserAgent(headers);
+
         try {
             // 入力検証
             if (loginRequest == null || loginRequest.getPassword() == null) {
-                return Response.status(Response.Status.BAD_REQUEST)
+                asyncResponse.resume(Response.status(Response.Status.BAD_REQUEST)
                         .entity(createErrorResponse("Username and password are required"))
-                        .build();
+                        .build());
+                return;
             }
 
             UUID userId = null;
@@ -61,7 +112,7 @@ public class AuthResource {
                 userId = loginRequest.getUserId();
                 // ユーザー名を取得（レスポンス用）
                 try {
-                    Optional<String> usernameOpt = authRepository.getUsernameByUserId(userId);
+                    Optional<String> usernameOpt = userDirectory.resolveUsername(userId);
                     if (usernameOpt.isPresent()) {
                         username = usernameOpt.get();
                     }
@@ -73,7 +124,7 @@ public class AuthResource {
                 // ユーザー名でログイン
                 username = loginRequest.getUsername();
                 try {
-                    Optional<UUID> userIdOpt = authRepository.getUserIdByUsername(username);
+                    Optional<UUID> userIdOpt = userDirectory.resolveUserId(username);
                     if (userIdOpt.isPresent()) {
                         userId = userIdOpt.get();
                     }
@@ -82,35 +133,73 @@ public class AuthResource {
                     System.err.println("Failed to get userId for username " + username + ": " + e.getMessage());
                 }
             } else {
-                return Response.status(Response.Status.BAD_REQUEST)
+                asyncResponse.resume(Response.status(Response.Status.BAD_REQUEST)
                         .entity(createErrorResponse("Username and password are required"))
-                        .build();
+                        .build());
+                return;
             }
 
             if (userId == null) {
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorResponse("Invalid credentials"))
-                        .build();
+                asyncResponse.resume(createInvalidCredentialsResponse());
+                return;
             }
 
             // パスワードハッシュ取得
             Optional<String> hashedPasswordOpt = authRepository.getPasswordHash(userId);
             if (!hashedPasswordOpt.isPresent()) {
-                recordLoginAttempt(userId, headers, false);
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorResponse("Invalid credentials"))
-                        .build();
+                recordLoginAttempt(userId, ipAddress, userAgent, false);
+                asyncResponse.resume(createInvalidCredentialsResponse());
+                return;
             }
 
-            // パスワード検証
-            boolean isValid = authService.verifyPassword(loginRequest.getPassword(), hashedPasswordOpt.get());
-            
-            if (!isValid) {
-                recordLoginAttempt(userId, headers, false);
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(createErrorResponse("Invalid credentials"))
-                        .build();
+            // パスワード検証（キューが満杯の場合は即座に503を返す）
+            CompletableFuture<Boolean> verification;
+            try {
+                verification = authService.verifyPasswordAsync(userId, loginRequest.getPassword(), hashedPasswordOpt.get());
+            } catch (RejectedExecutionException e) {
+                asyncResponse.resume(createBusyResponse("Too many concurrent logins, please retry"));
+                return;
+            }
+
+            UUID verifiedUserId = userId;
+            String verifiedUsername = username;
+            verification
+                    .thenApplyAsync(isValid -> {
+                        if (isValid) {
+                            // ハッシュコストが設定値と異なる場合はバックグラウンドで再ハッシュ
+                            authService.upgradeHashIfNeeded(verifiedUserId, loginRequest.getPassword(), hashedPasswordOpt.get());
+                        }
+                        return completeLogin(verifiedUserId, verifiedUsername, isValid, ipAddress, userAgent);
+                    }, managedExecutorService)
+                    .exceptionally(e -> Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(createErrorResponse("Login failed: " + e.getMessage()))
+                            .build())
+                    .thenAccept(asyncResponse::resume);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            asyncResponse.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(createErrorResponse("Login failed: " + e.getMessage()))
+                    .build());
+        }
+    }
+
+    /**
+     * パスワード検証後のログイン処理（トークン発行・履歴記録）
+     */
+    private Response completeLogin(UUID userId, String username, boolean isValid, String ipAddress, String userAgent) {
+        if (!isValid) {
+            recordLoginAttempt(userId, ipAddress, userAgent, false);
+            return createInvalidCredentialsResponse();
+        }
+
+        try {
+            // 削除済みユーザーにトークンを発行しないよう存在を確認する（最近DBで確認済みのエントリはDBを参照しない）
+            Optional<String> currentUsername = userDirectory.confirmExists(userId);
+            if (!currentUsername.isPresent()) {
+                recordLoginAttempt(userId, ipAddress, userAgent, false);
+                return createInvalidCredentialsResponse();
             }
+            username = currentUsername.get();
 
             // JWT トークン生成
             String jwtToken = jwtUtil.generateToken(userId, username);
@@ -123,7 +212,7 @@ public class AuthResource {
             session = authRepository.createSessionToken(session);
 
             // ログイン成功記録
-            recordLoginAttempt(userId, headers, true);
+            recordLoginAttempt(userId, ipAddress, userAgent, true);
 
             Map<String, Object> response = new HashMap<>();
             response.put("token", jwtToken);
@@ -156,6 +245,20 @@ public class AuthResource {
             }
 
             String token = authHeader.substring(7);
+
+            // キャッシュ済みの検証結果があればそのまま返す
+            Optional<TokenVerificationCache.Entry> cached = tokenVerificationCache.get(token);
+            if (cached.isPresent()) {
+                TokenVerificationCache.Entry entry = cached.get();
+                return Response.ok(createVerifyResponse(entry.getUserId(), entry.getUsername(), entry.getSessionExpiresAt())).build();
+            }
+
+            // 直近に拒否したトークンはHMAC検証・DB参照を行わない
+            if (tokenVerificationCache.isRejected(token)) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity(createErrorResponse("Invalid token"))
+                        .build();
+            }
             
             // JWT トークン検証を試みる
             try {
@@ -164,25 +267,26 @@ public class AuthResource {
                 String username = jwt.getClaim("username").asString();
                 
                 if (userIdStr == null || userIdStr.isEmpty()) {
+                    tokenVerificationCache.putRejected(token);
                     return Response.status(Response.Status.UNAUTHORIZED)
                             .entity(createErrorResponse("Invalid token: userId claim missing"))
                             .build();
                 }
                 
                 // usernameはオプショナル（nullでも有効なトークンとして扱う）
-                Map<String, Object> response = new HashMap<>();
-                response.put("valid", true);
-                response.put("userId", userIdStr);
-                if (username != null && !username.isEmpty()) {
-                    response.put("username", username);
+                if (username != null && username.isEmpty()) {
+                    username = null;
                 }
+                long expiresAtMillis = jwt.getExpiresAt() != null ? jwt.getExpiresAt().getTime() : Long.MAX_VALUE;
+                tokenVerificationCache.put(token, userIdStr, username, null, expiresAtMillis);
 
-                return Response.ok(response).build();
+                return Response.ok(createVerifyResponse(userIdStr, username, null)).build();
             } catch (JWTVerificationException e) {
                 // JWT 検証失敗の場合、レガシーセッショントークンを確認
                 Optional<SessionToken> sessionOpt = authRepository.findSessionByToken(token);
 
                 if (!sessionOpt.isPresent()) {
+                    tokenVerificationCache.putRejected(token);
                     return Response.status(Response.Status.UNAUTHORIZED)
                             .entity(createErrorResponse("Invalid token"))
                             .build();
@@ -191,17 +295,18 @@ public class AuthResource {
                 SessionToken session = sessionOpt.get();
                 if (session.isExpired()) {
                     authRepository.deleteSession(token);
+                    tokenVerificationCache.invalidate(token);
+                    tokenVerificationCache.putRejected(token);
                     return Response.status(Response.Status.UNAUTHORIZED)
                             .entity(createErrorResponse("Token expired"))
                             .build();
                 }
 
-                Map<String, Object> response = new HashMap<>();
-                response.put("valid", true);
-                response.put("userId", session.getUserId().toString());
-                response.put("expiresAt", session.getExpiresAt().toString());
+                String userIdStr = session.getUserId().toString();
+                long expiresAtMillis = session.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                tokenVerificationCache.put(token, userIdStr, null, session.getExpiresAt(), expiresAtMillis);
 
-                return Response.ok(response).build();
+                return Response.ok(createVerifyResponse(userIdStr, null, session.getExpiresAt())).build();
             }
         } catch (SQLException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -232,7 +337,9 @@ public class AuthResource {
             } catch (JWTVerificationException e) {
                 // レガシーセッショントークンの場合は削除
                 authRepository.deleteSession(token);
+                tokenVerificationCache.putRejected(token);
             }
+            tokenVerificationCache.invalidate(token);
 
             Map<String, String> response = new HashMap<>();
             response.put("message", "Logged out successfully");
@@ -263,26 +370,160 @@ public class AuthResource {
         }
     }
 
-    private void recordLoginAttempt(UUID userId, HttpHeaders headers, boolean success) {
-        try {
-            String ipAddress = headers.getHeaderString("X-Forwarded-For");
-            if (ipAddress == null) {
-                ipAddress = headers.getHeaderString("X-Real-IP");
-            }
-            if (ipAddress == null) {
-                ipAddress = "unknown";
+    /**
+     * 認証情報の一括作成（ユーザー一括インポート用）
+     * passwordHash は BCrypt ハッシュとしてそのまま保存し、password はハッシュ化してから保存する。
+     * 既に認証情報があるユーザーは変更せずスキップする。
+     * 任意のユーザーの認証情報を作成できるため、サービス間トークンを持つ呼び出し元（user-service）に限る。
+     */
+    @POST
+    @Path("/credentials/batch")
+    public Response createCredentialsBatch(CredentialBatchRequest request, @Context HttpHeaders headers) {
+        Response forbidden = requireServiceToken(headers);
+        if (forbidden != null) {
+            return forbidden;
+        }
+        if (request == null || request.getCredentials() == null || request.getCredentials().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("credentials is required"))
+                    .build();
+        }
+        List<CredentialImport> credentials = request.getCredentials();
+        if (credentials.size() > CREDENTIAL_BATCH_MAX_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("Too many credentials (max " + CREDENTIAL_BATCH_MAX_SIZE + ")"))
+                    .build();
+        }
+
+        Map<UUID, String> passwordHashes = new LinkedHashMap<>();
+        List<UUID> plainUserIds = new ArrayList<>();
+        List<String> plainPasswords = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        List<Map<String, Object>> rejected = new ArrayList<>();
+
+        for (int i = 0; i < credentials.size(); i++) {
+            CredentialImport credential = credentials.get(i);
+            UUID userId = credential != null ? credential.getUserId() : null;
+            String error = null;
+            if (userId == null) {
+                error = "userId is required";
+            } else if (!seen.add(userId)) {
+                error = "Duplicate userId";
+            } else if (credential.getPasswordHash() != null) {
+                if (authService.isPasswordHash(credential.getPasswordHash())) {
+                    passwordHashes.put(userId, credential.getPasswordHash());
+                } else {
+                    error = "passwordHash must be a BCrypt hash";
+                }
+            } else if (credential.getPassword() != null && !credential.getPassword().isEmpty()) {
+                plainUserIds.add(userId);
+                plainPasswords.add(credential.getPassword());
+            } else {
+                error = "password or passwordHash is required";
             }
 
-            String userAgent = headers.getHeaderString("User-Agent");
-            if (userAgent == null) {
-                userAgent = "unknown";
+            if (error != null) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("index", i);
+                if (userId != null) {
+                    entry.put("userId", userId.toString());
+                }
+                entry.put("error", error);
+                rejected.add(entry);
             }
+        }
+
+        // 平文のパスワードはまとめて並列にハッシュ化（ログイン用とは別のスレッドプールが満杯の場合は503）
+        List<String> hashed;
+        try {
+            hashed = authService.hashPasswords(plainPasswords);
+        } catch (RejectedExecutionException e) {
+            return createBusyResponse("Too many concurrent credential imports, please retry");
+        }
+        for (int i = 0; i < plainUserIds.size(); i++) {
+            passwordHashes.put(plainUserIds.get(i), hashed.get(i));
+        }
 
-            authRepository.recordLoginHistory(userId, ipAddress, userAgent, success);
+        try {
+            Set<UUID> created = authRepository.createCredentialsBatch(passwordHashes);
+            Map<String, Object> response = new HashMap<>();
+            response.put("created", created.size());
+            response.put("skipped", passwordHashes.size() - created.size());
+            response.put("rejected", rejected);
+            return Response.ok(response).build();
         } catch (SQLException e) {
-            // ログ記録失敗は致命的なエラーではないので無視
-            System.err.println("Failed to record login history: " + e.getMessage());
+            System.err.println("Failed to create credentials batch: " + e.getMessage());
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(createErrorResponse("Failed to create credentials: " + e.getMessage()))
+                    .build();
+        }
+    }
+
+    /**
+     * サービス間トークン（X-Service-Token）を確認
+     *
+     * @return 拒否する場合のレスポンス（許可する場合は null）
+     */
+    private Response requireServiceToken(HttpHeaders headers) {
+        if (ServiceTokenVerifier.verify(headers.getHeaderString(ServiceTokenVerifier.HEADER))) {
+            return null;
+        }
+        String message = ServiceTokenVerifier.isConfigured()
+                ? "Invalid or missing service token"
+                : "Service endpoints are disabled (SERVICE_API_TOKEN is not set)";
+        return Response.status(Response.Status.FORBIDDEN)
+                .entity(createErrorResponse(message))
+                .build();
+    }
+
+    private String resolveIpAddress(HttpHeaders headers) {
+        String ipAddress = headers.getHeaderString("X-Forwarded-For");
+        if (ipAddress == null) {
+            ipAddress = headers.getHeaderString("X-Real-IP");
+        }
+        if (ipAddress == null) {
+            ipAddress = "unknown";
+        }
+        return ipAddress;
+    }
+
+    private String resolveUserAgent(HttpHeaders headers) {
+        String userAgent = headers.getHeaderString("User-Agent");
+        if (userAgent == null) {
+            userAgent = "unknown";
+        }
+        return userAgent;
+    }
+
+    private void recordLoginAttempt(UUID userId, String ipAddress, String userAgent, boolean success) {
+        // 書き込みはバックグラウンドでバッチ処理（ログイン処理を待たせない）
+        loginHistoryWriter.submit(new LoginAttempt(userId, ipAddress, userAgent, success, LocalDateTime.now()));
+    }
+
+    private Response createInvalidCredentialsResponse() {
+        return Response.status(Response.Status.UNAUTHORIZED)
+                .entity(createErrorResponse("Invalid credentials"))
+                .build();
+    }
+
+    private Response createBusyResponse(String message) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .entity(createErrorResponse(message))
+                .build();
+    }
+
+    private Map<String, Object> createVerifyResponse(String userId, String username, LocalDateTime sessionExpiresAt) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("valid", true);
+        response.put("userId", userId);
+        if (username != null) {
+            response.put("username", username);
+        }
+        if (sessionExpiresAt != null) {
+            response.put("expiresAt", sessionExpiresAt.toString());
         }
+        return response;
     }
 
     private Map<String, String> createErrorResponse(String message) {
@@ -0,0 +1,59 @@
+package com.example.microservices.auth.rest;
+
+import com.example.microservices.auth.audit.LoginHistoryWriter;
+import com.example.microservices.auth.cache.TokenVerificationCache;
+import com.example.microservices.auth.directory.UserDirectory;
+import com.example.microservices.auth.service.AuthService;
+import com.example.microservices.auth.service.CredentialImportExecutor;
+import com.example.microservices.auth.service.PasswordHashingExecutor;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 認証サービス運用メトリクス API
+ */
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+
+    @Inject
+    private TokenVerificationCache tokenVerificationCache;
+
+    @Inject
+    private UserDirectory userDirectory;
+
+    @Inject
+    private LoginHistoryWriter loginHistoryWriter;
+
+    @Inject
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Inject
+    private CredentialImportExecutor credentialImportExecutor;
+
+    @Inject
+    private AuthService authService;
+
+    /**
+     * メトリクス取得
+     * GET /api/metrics
+     */
+    @GET
+    public Response getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("tokenCache", tokenVerificationCache.getStats());
+        metrics.put("userDirectory", userDirectory.getStats());
+        metrics.put("loginHistoryWriter", loginHistoryWriter.getStats());
+        metrics.put("passwordHashing", passwordHashingExecutor.getStats());
+        metrics.put("credentialImportHashing", credentialImportExecutor.getStats());
+        metrics.put("passwordPolicy", authService.getStats());
+        return Response.ok(metrics).build();
+    }
+}
@@ -1,9 +1,21 @@
 package com.example.microservices.auth.service;
 
+import com.example.microservices.auth.repository.AuthRepository;
+import com.example.microservices.auth.util.ConfigUtil;
 import org.mindrot.jbcrypt.BCrypt;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 認証ユーティリティサービス
@@ -14,11 +26,66 @@ public class AuthService {
     private static final int TOKEN_LENGTH = 32;
     private static final SecureRandom secureRandom = new SecureRandom();
 
+    private final int bcryptCost = ConfigUtil.getInt("PASSWORD_BCRYPT_COST", 10);
+    private final LongAdder rehashed = new LongAdder();
+
+    @Inject
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Inject
+    private CredentialImportExecutor credentialImportExecutor;
+
+    @Inject
+    private VerifiedCredentialCache verifiedCredentialCache;
+
+    @Inject
+    private AuthRepository authRepository;
+
     /**
      * パスワードをハッシュ化
      */
     public String hashPassword(String password) {
-        return BCrypt.hashpw(password, BCrypt.gensalt(10));
+        return BCrypt.hashpw(password, BCrypt.gensalt(bcryptCost));
+    }
+
+    /**
+     * 複数のパスワードをハッシュ化（一括インポート用のスレッドプールで並列実行）
+     *
+     * @throws RejectedExecutionException スレッドプールが飽和している場合（呼び出し元で再試行する）
+     */
+    public List<String> hashPasswords(List<String> passwords) {
+        if (passwords.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<CompletableFuture<String>> futures = credentialImportExecutor.submitAll(passwords, this::hashPassword);
+        List<String> hashes = new ArrayList<>(futures.size());
+        for (CompletableFuture<String> future : futures) {
+            hashes.add(future.join());
+        }
+        return hashes;
+    }
+
+    /**
+     * BCrypt ハッシュ形式（$2a$10$ + 53文字）かどうか
+     */
+    public boolean isPasswordHash(String value) {
+        return value != null && value.length() == 60 && value.startsWith("$2") && value.charAt(3) == '$';
+    }
+
+    /**
+     * 保存済みハッシュのコストが設定値と異なるかどうか
+     */
+    public boolean needsRehash(String hashedPassword) {
+        // BCrypt ハッシュ形式: $2a$10$...
+        if (hashedPassword == null || hashedPassword.length() < 7 || hashedPassword.charAt(0) != '$') {
+            return false;
+        }
+        try {
+            int cost = Integer.parseInt(hashedPassword.substring(4, 6));
+            return cost != bcryptCost;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
     /**
@@ -32,6 +99,60 @@ public class AuthService {
         }
     }
 
+    /**
+     * パスワード検証（専用スレッドプールで非同期実行）
+     * 短時間に同じ資格情報で検証済みの場合は BCrypt を実行しない
+     *
+     * @throws java.util.concurrent.RejectedExecutionException スレッドプールが飽和している場合
+     */
+    public CompletableFuture<Boolean> verifyPasswordAsync(UUID userId, String password, String hashedPassword) {
+        if (verifiedCredentialCache.isVerified(userId, password, hashedPassword)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return passwordHashingExecutor.submit(() -> {
+            boolean valid = verifyPassword(password, hashedPassword);
+            if (valid) {
+                verifiedCredentialCache.markVerified(userId, password, hashedPassword);
+            }
+            return valid;
+        });
+    }
+
+    /**
+     * ログイン成功時、保存済みハッシュのコストが設定値と異なれば再ハッシュして保存
+     * ログイン応答は待たせず、スレッドプールが飽和している場合は次回に見送る
+     */
+    public void upgradeHashIfNeeded(UUID userId, String password, String hashedPassword) {
+        if (!needsRehash(hashedPassword)) {
+            return;
+        }
+        try {
+            passwordHashingExecutor.submit(() -> {
+                try {
+                    if (authRepository.updatePasswordHash(userId, hashedPassword, hashPassword(password))) {
+                        rehashed.increment();
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Failed to upgrade password hash for userId " + userId + ": " + e.getMessage());
+                }
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            // 再ハッシュは次回ログイン時に再試行
+        }
+    }
+
+    /**
+     * ハッシュポリシーの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("bcryptCost", bcryptCost);
+        stats.put("rehashed", rehashed.sum());
+        stats.put("credentialCache", verifiedCredentialCache.getStats());
+        return stats;
+    }
+
     /**
      * ランダムなセッショントークン生成
      */
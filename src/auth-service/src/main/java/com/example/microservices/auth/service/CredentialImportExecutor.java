@@ -0,0 +1,100 @@
+package com.example.microservices.auth.service;
+
+import com.example.microservices.auth.util.ConfigUtil;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 一括インポート用のパスワードハッシュ計算スレッドプール
+ * ログイン用の PasswordHashingExecutor とは分け、少ないスレッド数で実行することで
+ * 大量の平文パスワードを含むインポートがログインのパスワード検証を待たせないようにする。
+ * バッチ単位で受け付け、未処理の件数が上限を超える場合はバッチ全体を即座に拒否する。
+ */
+@ApplicationScoped
+public class CredentialImportExecutor {
+
+    private final int threads = ConfigUtil.getInt("CREDENTIAL_IMPORT_HASH_THREADS",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+    private final int capacity = ConfigUtil.getInt("CREDENTIAL_IMPORT_HASH_QUEUE_CAPACITY",
+            ConfigUtil.getInt("CREDENTIAL_BATCH_MAX_SIZE", 1000));
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    private ThreadPoolExecutor executor;
+
+    // 実行中・待機中のハッシュ処理の件数の上限
+    private final Semaphore permits = new Semaphore(capacity);
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejectedBatches = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * バッチ内の全件を投入
+     *
+     * @throws RejectedExecutionException 未処理の件数が上限を超える場合（いずれの処理も投入しない）
+     */
+    public <T, R> List<CompletableFuture<R>> submitAll(List<T> inputs, Function<T, R> task) {
+        if (!permits.tryAcquire(inputs.size())) {
+            rejectedBatches.increment();
+            throw new RejectedExecutionException("Credential import hashing queue is full");
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(inputs.size());
+        for (T input : inputs) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                long startedAt = System.nanoTime();
+                try {
+                    return task.apply(input);
+                } finally {
+                    runNanos.add(System.nanoTime() - startedAt);
+                    completed.increment();
+                    permits.release();
+                }
+            }, executor));
+        }
+        return futures;
+    }
+
+    /**
+     * 実行統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long completedCount = completed.sum();
+        stats.put("threads", threads);
+        stats.put("capacity", capacity);
+        stats.put("pending", capacity - permits.availablePermits());
+        stats.put("completed", completedCount);
+        stats.put("rejectedBatches", rejectedBatches.sum());
+        stats.put("avgRunMillis", completedCount > 0 ? TimeUnit.NANOSECONDS.toMillis(runNanos.sum() / completedCount) : 0);
+        return stats;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.microservices.auth.service;
+
+import com.example.microservices.auth.util.ConfigUtil;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * パスワードハッシュ計算・検証専用の実行スレッドプール
+ * CPU コア数に合わせたスレッド数と有界キューで、BCrypt がHTTPワーカースレッドを
+ * 占有しないようにする。キューが満杯の場合は即座に拒否する（アドミッション制御）。
+ */
+@ApplicationScoped
+public class PasswordHashingExecutor {
+
+    private final int threads = ConfigUtil.getInt("PASSWORD_HASH_THREADS", Runtime.getRuntime().availableProcessors());
+    private final int queueCapacity = ConfigUtil.getInt("PASSWORD_HASH_QUEUE_CAPACITY", threads * 16);
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    private ThreadPoolExecutor executor;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * ハッシュ処理を投入
+     *
+     * @throws RejectedExecutionException キューが満杯の場合
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        long submittedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long startedAt = System.nanoTime();
+                try {
+                    return task.get();
+                } finally {
+                    long elapsed = System.nanoTime() - startedAt;
+                    waitNanos.add(startedAt - submittedAt);
+                    runNanos.add(elapsed);
+                    maxRunNanos.accumulateAndGet(elapsed, Math::max);
+                    completed.increment();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * 実行統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long completedCount = completed.sum();
+        stats.put("threads", threads);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("completed", completedCount);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgWaitMillis", completedCount > 0 ? TimeUnit.NANOSECONDS.toMillis(waitNanos.sum() / completedCount) : 0);
+        stats.put("avgRunMillis", completedCount > 0 ? TimeUnit.NANOSECONDS.toMillis(runNanos.sum() / completedCount) : 0);
+        stats.put("maxRunMillis", TimeUnit.NANOSECONDS.toMillis(maxRunNanos.get()));
+        return stats;
+    }
+}
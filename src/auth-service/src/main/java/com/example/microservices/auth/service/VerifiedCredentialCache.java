@@ -0,0 +1,100 @@
+package com.example.microservices.auth.service;
+
+import com.example.microservices.auth.cache.BoundedExpiringMap;
+import com.example.microservices.auth.util.ConfigUtil;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.enterprise.context.ApplicationScoped;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 検証済み資格情報の短期キャッシュ
+ * 同一ユーザーが同一パスワードで短時間に繰り返しログインする場合に BCrypt をスキップする。
+ * キーはプロセス内で生成した鍵による HMAC(パスワード, 保存済みハッシュ) で、
+ * 平文パスワードは保持しない。保存済みハッシュが変わると一致しなくなる。
+ */
+@ApplicationScoped
+public class VerifiedCredentialCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final boolean enabled = ConfigUtil.getBoolean("CREDENTIAL_CACHE_ENABLED", false);
+    private final long ttlMillis = ConfigUtil.getLong("CREDENTIAL_CACHE_TTL_MILLIS", 30 * 1000L);
+    private final int maxEntries = ConfigUtil.getInt("CREDENTIAL_CACHE_MAX_ENTRIES", 10_000);
+
+    private final SecretKeySpec key;
+    private final BoundedExpiringMap<String, Long> entries = new BoundedExpiringMap<>(maxEntries, Long::longValue);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedCredentialCache() {
+        byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        this.key = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+    }
+
+    /**
+     * 有効期間内に検証済みかどうか
+     */
+    public boolean isVerified(UUID userId, String password, String hashedPassword) {
+        if (!enabled) {
+            return false;
+        }
+        String cacheKey = cacheKey(userId, password, hashedPassword);
+        Long expiresAt = entries.get(cacheKey);
+        if (expiresAt == null || System.currentTimeMillis() >= expiresAt) {
+            if (expiresAt != null) {
+                entries.remove(cacheKey, expiresAt);
+            }
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * 検証成功を登録
+     */
+    public void markVerified(UUID userId, String password, String hashedPassword) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.put(cacheKey(userId, password, hashedPassword), now + ttlMillis, now);
+    }
+
+    /**
+     * キャッシュの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+
+    private String cacheKey(UUID userId, String password, String hashedPassword) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(password.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(hashedPassword.getBytes(StandardCharsets.UTF_8));
+            return userId + ":" + Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC is not available", e);
+        }
+    }
+}
@@ -16,10 +16,9 @@ import java.util.UUID;
 @ApplicationScoped
 public class JwtUtil {
     
-    // SECURITY NOTE: 本番環境では環境変数や暗号化された設定から取得すべき
-    // 環境変数例: System.getenv("JWT_SECRET_KEY")
-    // または AWS Secrets Manager, HashiCorp Vault などのシークレット管理サービスを使用
-    private static final String SECRET_KEY = "your-secret-key-change-this-in-production";
+    // BFF・ポイントサービスと同じ JWT_SECRET_KEY を使用する（既定値は開発用）
+    // SECURITY NOTE: 本番環境では必ず設定し、AWS Secrets Manager, HashiCorp Vault などで管理すること
+    private static final String SECRET_KEY = ConfigUtil.getString("JWT_SECRET_KEY", "your-secret-key-change-this-in-production");
     private static final Algorithm ALGORITHM = Algorithm.HMAC256(SECRET_KEY);
     private static final long EXPIRATION_TIME = 7 * 24 * 60 * 60 * 1000; // 7 days in milliseconds
     
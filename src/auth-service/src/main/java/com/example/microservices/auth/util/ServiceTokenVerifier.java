@@ -0,0 +1,36 @@
+package com.example.microservices.auth.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * サービス間呼び出し用の共有トークンの検証
+ * 認証情報の一括作成等、利用者のJWTでは許可しない操作の呼び出し元を確認する。
+ * SERVICE_API_TOKEN が未設定の場合はすべて拒否する。
+ */
+public final class ServiceTokenVerifier {
+
+    public static final String HEADER = "X-Service-Token";
+
+    private static final String TOKEN = ConfigUtil.getString("SERVICE_API_TOKEN", null);
+
+    private ServiceTokenVerifier() {
+    }
+
+    /**
+     * 設定済みかどうか
+     */
+    public static boolean isConfigured() {
+        return TOKEN != null;
+    }
+
+    /**
+     * 提示されたトークンが一致するか（比較時間が内容に依存しないよう MessageDigest.isEqual で比較）
+     */
+    public static boolean verify(String presented) {
+        if (TOKEN == null || presented == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(TOKEN.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
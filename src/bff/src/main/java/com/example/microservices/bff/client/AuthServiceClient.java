@@ -1,10 +1,13 @@
 package com.example.microservices.bff.client;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.ApplicationScoped;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.Map;
@@ -16,41 +19,88 @@ import java.util.Map;
 public class AuthServiceClient {
 
     private static final String AUTH_SERVICE_URL = System.getenv().getOrDefault("AUTH_SERVICE_URL", "http://localhost:8081");
-    private final Client client;
 
-    public AuthServiceClient() {
-        this.client = ClientBuilder.newClient();
+    @Resource
+    private ManagedExecutorService managedExecutorService;
+
+    private PooledHttpClient httpClient;
+    private WebTarget loginTarget;
+    private WebTarget verifyTarget;
+    private WebTarget logoutTarget;
+
+    @PostConstruct
+    void init() {
+        // ログインは認証サービス側のタイムアウト（LOGIN_TIMEOUT_MILLIS）で 503 を返すため、それより長く待つ
+        httpClient = new PooledHttpClient("AUTH_SERVICE", AUTH_SERVICE_URL, 8000, managedExecutorService);
+        WebTarget authTarget = httpClient.target().path("/auth-service/api/auth");
+        loginTarget = authTarget.path("login");
+        verifyTarget = authTarget.path("verify");
+        logoutTarget = authTarget.path("logout");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        httpClient.close();
     }
 
     /**
      * ログイン
      */
     public Response login(Map<String, Object> loginData) {
-        WebTarget target = client.target(AUTH_SERVICE_URL)
-                .path("/auth-service/api/auth/login");
-        return target.request(MediaType.APPLICATION_JSON)
-                .post(Entity.entity(loginData, MediaType.APPLICATION_JSON));
+        return login(loginData, null);
+    }
+
+    /**
+     * ログイン（クライアントのリクエストヘッダーを引き継ぐ）
+     */
+    public Response login(Map<String, Object> loginData, HttpHeaders incoming) {
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(loginTarget.request(MediaType.APPLICATION_JSON), incoming)
+                .post(Entity.entity(loginData, MediaType.APPLICATION_JSON)));
     }
 
     /**
      * トークン検証
      */
     public Response verifyToken(String token) {
-        WebTarget target = client.target(AUTH_SERVICE_URL)
-                .path("/auth-service/api/auth/verify");
-        return target.request(MediaType.APPLICATION_JSON)
+        return verifyToken(token, null);
+    }
+
+    /**
+     * トークン検証（クライアントのリクエストヘッダーを引き継ぐ）
+     */
+    public Response verifyToken(String token, HttpHeaders incoming) {
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(verifyTarget.request(MediaType.APPLICATION_JSON), incoming)
                 .header("Authorization", "Bearer " + token)
-                .post(Entity.json("{}"));
+                .post(Entity.json("{}")));
     }
 
     /**
      * ログアウト
      */
     public Response logout(String token) {
-        WebTarget target = client.target(AUTH_SERVICE_URL)
-                .path("/auth-service/api/auth/logout");
-        return target.request(MediaType.APPLICATION_JSON)
+        return logout(token, null);
+    }
+
+    /**
+     * ログアウト（クライアントのリクエストヘッダーを引き継ぐ）
+     */
+    public Response logout(String token, HttpHeaders incoming) {
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(logoutTarget.request(MediaType.APPLICATION_JSON), incoming)
                 .header("Authorization", "Bearer " + token)
-                .post(Entity.json("{}"));
+                .post(Entity.json("{}")));
+    }
+
+    /**
+     * コネクションプールの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        return httpClient.getStats();
+    }
+
+    /**
+     * サーキットブレーカーとバルクヘッドの統計を取得
+     */
+    public Map<String, Object> getResilienceStats() {
+        return httpClient.getResilienceStats();
     }
 }
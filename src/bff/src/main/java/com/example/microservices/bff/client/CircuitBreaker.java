@@ -0,0 +1,197 @@
+package com.example.microservices.bff.client;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 下流サービスごとのサーキットブレーカー
+ * 直近 windowSize 件の呼び出しの失敗率が閾値を超えると OPEN になり、openMillis の間は呼び出しを即座に拒否する。
+ * その後 HALF_OPEN で halfOpenCalls 件の試行呼び出しを通し、すべて成功すれば CLOSED に戻る（1件でも失敗すれば再び OPEN）。
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * 呼び出しを拒否した場合の tryAcquire の戻り値
+     */
+    public static final long REJECTED = -1;
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    // 直近の呼び出し結果のリングバッファ（true = 失敗）
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    // 状態が変わるたびに増やし、遷移前に開始した呼び出しの結果を判定に使わないようにする
+    private long epoch;
+    private long openedAt;
+    private long lastTransitionAt = System.currentTimeMillis();
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder toOpen = new LongAdder();
+    private final LongAdder toHalfOpen = new LongAdder();
+    private final LongAdder toClosed = new LongAdder();
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                          long openMillis, int halfOpenCalls) {
+        this.name = name;
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = Math.max(1, Math.min(failureRateThreshold, 100));
+        this.openMillis = Math.max(0, openMillis);
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.window = new boolean[this.windowSize];
+    }
+
+    /**
+     * 呼び出しの可否を判定
+     *
+     * @return 許可した場合は onSuccess / onFailure に渡す値、拒否した場合は REJECTED
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                rejected.increment();
+                return REJECTED;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight + halfOpenSucceeded >= halfOpenCalls) {
+                rejected.increment();
+                return REJECTED;
+            }
+            halfOpenInFlight++;
+        }
+        return epoch;
+    }
+
+    /**
+     * 許可した呼び出しが成功した
+     */
+    public synchronized void onSuccess(long permit) {
+        successes.increment();
+        if (permit != epoch) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight--;
+            halfOpenSucceeded++;
+            if (halfOpenSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * 許可した呼び出しが失敗した（接続エラー・タイムアウト・Retry-After のない 5xx）
+     */
+    public synchronized void onFailure(long permit) {
+        failures.increment();
+        if (permit != epoch) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * サーキットブレーカーの統計を取得
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("state", state.name());
+        stats.put("lastTransitionAt", Instant.ofEpochMilli(lastTransitionAt).toString());
+        stats.put("failureRate", windowCount > 0 ? (double) windowFailures / windowCount : 0.0);
+        stats.put("windowCalls", windowCount);
+        stats.put("rejected", rejected.sum());
+        stats.put("successes", successes.sum());
+        stats.put("failures", failures.sum());
+
+        Map<String, Object> transitions = new HashMap<>();
+        transitions.put("toOpen", toOpen.sum());
+        transitions.put("toHalfOpen", toHalfOpen.sum());
+        transitions.put("toClosed", toClosed.sum());
+        stats.put("transitions", transitions);
+
+        stats.put("windowSize", windowSize);
+        stats.put("minimumCalls", minimumCalls);
+        stats.put("failureRateThreshold", failureRateThreshold);
+        stats.put("openMillis", openMillis);
+        stats.put("halfOpenCalls", halfOpenCalls);
+        return stats;
+    }
+
+    private void record(boolean failed) {
+        if (windowCount == windowSize) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+    }
+
+    private void transitionTo(State next) {
+        State previous = state;
+        state = next;
+        epoch++;
+        lastTransitionAt = System.currentTimeMillis();
+        halfOpenInFlight = 0;
+        halfOpenSucceeded = 0;
+        switch (next) {
+            case OPEN:
+                openedAt = lastTransitionAt;
+                toOpen.increment();
+                break;
+            case HALF_OPEN:
+                toHalfOpen.increment();
+                break;
+            case CLOSED:
+                windowIndex = 0;
+                windowCount = 0;
+                windowFailures = 0;
+                toClosed.increment();
+                break;
+            default:
+                break;
+        }
+        System.err.println("Circuit breaker " + name + ": " + previous + " -> " + next);
+    }
+}
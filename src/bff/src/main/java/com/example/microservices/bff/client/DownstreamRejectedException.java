@@ -0,0 +1,16 @@
+package com.example.microservices.bff.client;
+
+import javax.ws.rs.ProcessingException;
+
+/**
+ * サーキットブレーカーまたはバルクヘッドにより下流サービスを呼び出さずに拒否した
+ * 接続エラーと同じく ProcessingException として扱い、呼び出し側では 503 に変換する
+ */
+public class DownstreamRejectedException extends ProcessingException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DownstreamRejectedException(String message) {
+        super(message);
+    }
+}
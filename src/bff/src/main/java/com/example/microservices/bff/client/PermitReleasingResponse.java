@@ -0,0 +1,199 @@
+package com.example.microservices.bff.client;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.NewCookie;
+import javax.ws.rs.core.Response;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 応答ボディを読み終えるまでバルクヘッドの枠を保持する Response
+ * ボディを InputStream で受け取った場合（DownstreamResponses による転送）はそのストリームを閉じたとき、
+ * それ以外の型で読み込んだ場合（読み込み後に Jersey が接続を返却する）は読み込み後、
+ * または close() のいずれか早い時点で一度だけ枠を返す。
+ */
+class PermitReleasingResponse extends Response {
+
+    private final Response delegate;
+    private final Runnable releaser;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    PermitReleasingResponse(Response delegate, Runnable releaser) {
+        this.delegate = delegate;
+        this.releaser = releaser;
+    }
+
+    private void release() {
+        if (released.compareAndSet(false, true)) {
+            releaser.run();
+        }
+    }
+
+    private <T> T afterRead(T entity) {
+        if (entity instanceof InputStream) {
+            return releaseOnClose(entity);
+        }
+        release();
+        return entity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T releaseOnClose(T entity) {
+        return (T) new FilterInputStream((InputStream) entity) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    release();
+                }
+            }
+        };
+    }
+
+    @Override
+    public int getStatus() {
+        return delegate.getStatus();
+    }
+
+    @Override
+    public StatusType getStatusInfo() {
+        return delegate.getStatusInfo();
+    }
+
+    @Override
+    public Object getEntity() {
+        return delegate.getEntity();
+    }
+
+    @Override
+    public <T> T readEntity(Class<T> entityType) {
+        return afterRead(delegate.readEntity(entityType));
+    }
+
+    @Override
+    public <T> T readEntity(GenericType<T> entityType) {
+        return afterRead(delegate.readEntity(entityType));
+    }
+
+    @Override
+    public <T> T readEntity(Class<T> entityType, Annotation[] annotations) {
+        return afterRead(delegate.readEntity(entityType, annotations));
+    }
+
+    @Override
+    public <T> T readEntity(GenericType<T> entityType, Annotation[] annotations) {
+        return afterRead(delegate.readEntity(entityType, annotations));
+    }
+
+    @Override
+    public boolean hasEntity() {
+        return delegate.hasEntity();
+    }
+
+    @Override
+    public boolean bufferEntity() {
+        return delegate.bufferEntity();
+    }
+
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        return delegate.getMediaType();
+    }
+
+    @Override
+    public Locale getLanguage() {
+        return delegate.getLanguage();
+    }
+
+    @Override
+    public int getLength() {
+        return delegate.getLength();
+    }
+
+    @Override
+    public Set<String> getAllowedMethods() {
+        return delegate.getAllowedMethods();
+    }
+
+    @Override
+    public Map<String, NewCookie> getCookies() {
+        return delegate.getCookies();
+    }
+
+    @Override
+    public EntityTag getEntityTag() {
+        return delegate.getEntityTag();
+    }
+
+    @Override
+    public Date getDate() {
+        return delegate.getDate();
+    }
+
+    @Override
+    public Date getLastModified() {
+        return delegate.getLastModified();
+    }
+
+    @Override
+    public URI getLocation() {
+        return delegate.getLocation();
+    }
+
+    @Override
+    public Set<Link> getLinks() {
+        return delegate.getLinks();
+    }
+
+    @Override
+    public boolean hasLink(String relation) {
+        return delegate.hasLink(relation);
+    }
+
+    @Override
+    public Link getLink(String relation) {
+        return delegate.getLink(relation);
+    }
+
+    @Override
+    public Link.Builder getLinkBuilder(String relation) {
+        return delegate.getLinkBuilder(relation);
+    }
+
+    @Override
+    public MultivaluedMap<String, Object> getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getStringHeaders() {
+        return delegate.getStringHeaders();
+    }
+
+    @Override
+    public String getHeaderString(String name) {
+        return delegate.getHeaderString(name);
+    }
+}
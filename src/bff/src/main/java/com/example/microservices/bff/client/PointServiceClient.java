@@ -1,11 +1,16 @@
 package com.example.microservices.bff.client;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.ApplicationScoped;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 /**
  * ポイントサービスクライアント
@@ -14,10 +19,24 @@ import javax.ws.rs.core.Response;
 public class PointServiceClient {
 
     private static final String POINT_SERVICE_URL = System.getenv().getOrDefault("POINT_SERVICE_URL", "http://localhost:8084");
-    private final Client client;
 
-    public PointServiceClient() {
-        this.client = ClientBuilder.newClient();
+    @Resource
+    private ManagedExecutorService managedExecutorService;
+
+    private PooledHttpClient httpClient;
+    private WebTarget pointsTarget;
+    private WebTarget historyTarget;
+
+    @PostConstruct
+    void init() {
+        httpClient = new PooledHttpClient("POINT_SERVICE", POINT_SERVICE_URL, managedExecutorService);
+        pointsTarget = httpClient.target().path("/point-service/api/points");
+        historyTarget = pointsTarget.path("history");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        httpClient.close();
     }
 
     /**
@@ -25,11 +44,25 @@ public class PointServiceClient {
      * GET /api/points
      */
     public Response getPoints(String jwtToken) {
-        WebTarget target = client.target(POINT_SERVICE_URL)
-                .path("/point-service/api/points");
-        return target.request(MediaType.APPLICATION_JSON)
+        return getPoints(jwtToken, null);
+    }
+
+    /**
+     * ポイント残高取得（クライアントのリクエストヘッダーを引き継ぐ）
+     */
+    public Response getPoints(String jwtToken, HttpHeaders incoming) {
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(pointsTarget.request(MediaType.APPLICATION_JSON), incoming)
                 .header("Authorization", "Bearer " + jwtToken)
-                .get();
+                .get());
+    }
+
+    /**
+     * ポイント残高取得（非同期）
+     */
+    public CompletionStage<Response> getPointsAsync(String jwtToken) {
+        return httpClient.executeAsync(() -> pointsTarget.request(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + jwtToken)
+                .rx().get());
     }
 
     /**
@@ -37,12 +70,56 @@ public class PointServiceClient {
      * GET /api/points/history?page={page}&limit={limit}
      */
     public Response getPointHistory(String jwtToken, int page, int limit) {
-        WebTarget target = client.target(POINT_SERVICE_URL)
-                .path("/point-service/api/points/history")
+        return getPointHistory(jwtToken, page, limit, null);
+    }
+
+    /**
+     * ポイント履歴取得（カーソル指定時はキーセットページネーション）
+     * GET /api/points/history?page={page}&limit={limit}&cursor={cursor}
+     */
+    public Response getPointHistory(String jwtToken, int page, int limit, String cursor) {
+        return getPointHistory(jwtToken, page, limit, cursor, null);
+    }
+
+    /**
+     * ポイント履歴取得（クライアントのリクエストヘッダーを引き継ぐ）
+     */
+    public Response getPointHistory(String jwtToken, int page, int limit, String cursor, HttpHeaders incoming) {
+        WebTarget target = historyTarget
                 .queryParam("page", page)
                 .queryParam("limit", limit);
-        return target.request(MediaType.APPLICATION_JSON)
+        if (cursor != null) {
+            target = target.queryParam("cursor", cursor);
+        }
+        WebTarget requestTarget = target;
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(requestTarget.request(MediaType.APPLICATION_JSON), incoming)
+                .header("Authorization", "Bearer " + jwtToken)
+                .get());
+    }
+
+    /**
+     * ポイント履歴取得（非同期、先頭ページのみ）
+     */
+    public CompletionStage<Response> getPointHistoryAsync(String jwtToken, int limit) {
+        return httpClient.executeAsync(() -> historyTarget
+                .queryParam("page", 1)
+                .queryParam("limit", limit)
+                .request(MediaType.APPLICATION_JSON)
                 .header("Authorization", "Bearer " + jwtToken)
-                .get();
+                .rx().get());
+    }
+
+    /**
+     * コネクションプールの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        return httpClient.getStats();
+    }
+
+    /**
+     * サーキットブレーカーとバルクヘッドの統計を取得
+     */
+    public Map<String, Object> getResilienceStats() {
+        return httpClient.getResilienceStats();
     }
 }
@@ -0,0 +1,352 @@
+package com.example.microservices.bff.client;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.apache.connector.ApacheHttpClientBuilderConfigurator;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 下流サービスごとのコネクションプール付き HTTP クライアント
+ * Apache HttpClient のコネクションプールで接続を再利用し（keep-alive）、
+ * 接続・読み込み・プール待ちのタイムアウトを設定する。
+ * 呼び出しは execute / executeAsync を通し、サーキットブレーカーと同時実行数の上限（バルクヘッド）で保護する。
+ * 各リクエストには BFF が応答を待つ残り時間（X-Request-Timeout-Ms、ミリ秒）を付与する。
+ * 絶対時刻ではなく相対時間で伝え、受信側が自ノードの時刻で期限を計算するため、ノード間の時計のずれに影響されない。
+ * 設定は環境変数 {prefix}_MAX_CONNECTIONS 等で上書きできる。
+ */
+public class PooledHttpClient {
+
+    /**
+     * 下流サービスに伝播するリクエストの残り時間（ミリ秒）のヘッダー
+     */
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    /**
+     * クライアントからのリクエストをそのまま下流サービスに転送するヘッダー
+     */
+    private static final List<String> FORWARDED_REQUEST_HEADERS = Arrays.asList(
+            HttpHeaders.ACCEPT_ENCODING,
+            HttpHeaders.IF_NONE_MATCH,
+            HttpHeaders.IF_MATCH);
+
+    private final String name;
+    private final int maxConnections;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int poolTimeoutMillis;
+    private final long keepAliveMillis;
+    private final int maxConcurrentCalls;
+
+    private final InstrumentedConnectionManager connectionManager;
+    private final Client client;
+    private final WebTarget baseTarget;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder leaseTimeouts = new LongAdder();
+    private final LongAdder leaseNanos = new LongAdder();
+    private final AtomicLong maxLeaseNanos = new AtomicLong();
+    private final LongAdder bulkheadRejected = new LongAdder();
+
+    /**
+     * @param prefix 設定用の環境変数の接頭辞（例: POINT_SERVICE）
+     */
+    public PooledHttpClient(String prefix, String baseUrl, ExecutorService asyncExecutor) {
+        this(prefix, baseUrl, 5000, asyncExecutor);
+    }
+
+    /**
+     * @param prefix 設定用の環境変数の接頭辞（例: POINT_SERVICE）
+     * @param defaultReadTimeoutMillis 読み込みタイムアウトの既定値
+     * @param asyncExecutor 非同期呼び出し（rx()/async()）を実行するスレッドプール
+     */
+    public PooledHttpClient(String prefix, String baseUrl, int defaultReadTimeoutMillis, ExecutorService asyncExecutor) {
+        this.name = prefix;
+        this.maxConnections = getInt(prefix + "_MAX_CONNECTIONS", 50);
+        this.connectTimeoutMillis = getInt(prefix + "_CONNECT_TIMEOUT_MILLIS", 1000);
+        this.readTimeoutMillis = getInt(prefix + "_READ_TIMEOUT_MILLIS", defaultReadTimeoutMillis);
+        this.poolTimeoutMillis = getInt(prefix + "_POOL_TIMEOUT_MILLIS", 1000);
+        this.keepAliveMillis = getInt(prefix + "_KEEP_ALIVE_MILLIS", 30_000);
+        // 既定ではプールの接続数と同じ（接続待ちでリクエストスレッドが滞留する前に拒否する）
+        this.maxConcurrentCalls = getInt(prefix + "_MAX_CONCURRENT_CALLS", maxConnections);
+
+        circuitBreaker = new CircuitBreaker(prefix,
+                getInt(prefix + "_BREAKER_WINDOW_SIZE", 20),
+                getInt(prefix + "_BREAKER_MINIMUM_CALLS", 10),
+                getInt(prefix + "_BREAKER_FAILURE_RATE_THRESHOLD", 50),
+                getInt(prefix + "_BREAKER_OPEN_MILLIS", 10_000),
+                getInt(prefix + "_BREAKER_HALF_OPEN_CALLS", 3));
+        bulkhead = new Semaphore(Math.max(1, maxConcurrentCalls));
+
+        connectionManager = new InstrumentedConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        // 接続先は1ホストのため、ホストごとの上限も全体の上限と同じにする
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        ClientConfig config = new ClientConfig();
+        config.connectorProvider(new ApacheConnectorProvider());
+        config.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+        config.property(ApacheClientProperties.REQUEST_CONFIG, RequestConfig.custom()
+                .setConnectionRequestTimeout(poolTimeoutMillis)
+                .build());
+        config.property(ClientProperties.CONNECT_TIMEOUT, connectTimeoutMillis);
+        config.property(ClientProperties.READ_TIMEOUT, readTimeoutMillis);
+        config.register((ApacheHttpClientBuilderConfigurator) builder -> builder
+                .setKeepAliveStrategy((response, context) -> {
+                    // サーバーが Keep-Alive ヘッダーで短い時間を指定した場合はそちらに従う
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
+                })
+                // 圧縮された応答は展開せずにそのまま転送する（Content-Encoding を保持）
+                .disableContentCompression()
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS));
+        // プール待ち・接続・読み込みのタイムアウトを合わせた時間を過ぎると BFF は応答を待たない
+        long deadlineBudgetMillis = (long) poolTimeoutMillis + connectTimeoutMillis + readTimeoutMillis;
+        config.register((ClientRequestFilter) requestContext -> {
+            if (!requestContext.getHeaders().containsKey(TIMEOUT_HEADER)) {
+                requestContext.getHeaders().putSingle(TIMEOUT_HEADER, String.valueOf(deadlineBudgetMillis));
+            }
+        });
+
+        client = ClientBuilder.newBuilder()
+                .withConfig(config)
+                .executorService(asyncExecutor)
+                .build();
+        baseTarget = client.target(baseUrl);
+    }
+
+    /**
+     * 接続先のベース URL のターゲット（各クライアントはここからパスを組み立てて保持する）
+     */
+    public WebTarget target() {
+        return baseTarget;
+    }
+
+    /**
+     * クライアントからのリクエストヘッダー（Accept-Encoding 等）を下流へのリクエストに引き継ぐ
+     *
+     * @param incoming BFF が受け取ったリクエストのヘッダー（null の場合は何もしない）
+     */
+    public static Invocation.Builder forwardHeaders(Invocation.Builder builder, HttpHeaders incoming) {
+        if (incoming == null) {
+            return builder;
+        }
+        for (String name : FORWARDED_REQUEST_HEADERS) {
+            String value = incoming.getHeaderString(name);
+            if (value != null) {
+                builder.header(name, value);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * サーキットブレーカーとバルクヘッドを通して同期呼び出しを実行
+     * 接続エラー・タイムアウト（ProcessingException）と 5xx 応答を失敗として数える
+     * （Retry-After 付きの 503 は下流のアドミッション制御による拒否のため失敗に数えない）。
+     * 応答ボディを転送し終えるまで接続を使い続けるため、バルクヘッドの枠は応答を閉じる（ボディを読み終える）まで保持する。
+     * 呼び出し元は返された Response を必ず閉じること。
+     *
+     * @throws DownstreamRejectedException サーキットが開いている、または同時実行数の上限に達している
+     */
+    public Response execute(Supplier<Response> call) {
+        long permit = acquire();
+        Response response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            record(permit, false);
+            bulkhead.release();
+            throw e;
+        }
+        record(permit, isHealthy(response));
+        return new PermitReleasingResponse(response, bulkhead::release);
+    }
+
+    /**
+     * サーキットブレーカーとバルクヘッドを通して非同期呼び出しを実行
+     * 拒否した場合は DownstreamRejectedException で失敗した CompletionStage を返す。
+     */
+    public CompletionStage<Response> executeAsync(Supplier<CompletionStage<Response>> call) {
+        long permit;
+        try {
+            permit = acquire();
+        } catch (DownstreamRejectedException e) {
+            CompletableFuture<Response> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+
+        CompletionStage<Response> stage;
+        try {
+            stage = call.get();
+        } catch (RuntimeException e) {
+            record(permit, false);
+            bulkhead.release();
+            throw e;
+        }
+        return stage.whenComplete((response, error) -> {
+            record(permit, error == null && isHealthy(response));
+            bulkhead.release();
+        });
+    }
+
+    /**
+     * クライアントとコネクションプールを閉じる
+     */
+    public void close() {
+        client.close();
+        connectionManager.shutdown();
+    }
+
+    /**
+     * コネクションプールの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        PoolStats pool = connectionManager.getTotalStats();
+        long leaseCount = leases.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("name", name);
+        stats.put("maxConnections", maxConnections);
+        stats.put("leased", pool.getLeased());
+        stats.put("available", pool.getAvailable());
+        stats.put("pending", pool.getPending());
+        stats.put("leases", leaseCount);
+        stats.put("leaseTimeouts", leaseTimeouts.sum());
+        stats.put("avgLeaseMillis", leaseCount > 0 ? (double) TimeUnit.NANOSECONDS.toMicros(leaseNanos.sum() / leaseCount) / 1000 : 0.0);
+        stats.put("maxLeaseMillis", TimeUnit.NANOSECONDS.toMillis(maxLeaseNanos.get()));
+        stats.put("connectTimeoutMillis", connectTimeoutMillis);
+        stats.put("readTimeoutMillis", readTimeoutMillis);
+        stats.put("poolTimeoutMillis", poolTimeoutMillis);
+        stats.put("keepAliveMillis", keepAliveMillis);
+        return stats;
+    }
+
+    /**
+     * サーキットブレーカーとバルクヘッドの統計を取得
+     */
+    public Map<String, Object> getResilienceStats() {
+        Map<String, Object> bulkheadStats = new HashMap<>();
+        bulkheadStats.put("maxConcurrentCalls", maxConcurrentCalls);
+        bulkheadStats.put("active", maxConcurrentCalls - bulkhead.availablePermits());
+        bulkheadStats.put("rejected", bulkheadRejected.sum());
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("name", name);
+        stats.put("circuitBreaker", circuitBreaker.getStats());
+        stats.put("bulkhead", bulkheadStats);
+        return stats;
+    }
+
+    /**
+     * バルクヘッドの枠とサーキットブレーカーの許可を取得（待たずに判定する）
+     */
+    private long acquire() {
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejected.increment();
+            throw new DownstreamRejectedException(name + " bulkhead is full");
+        }
+        long permit = circuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.REJECTED) {
+            bulkhead.release();
+            throw new DownstreamRejectedException(name + " circuit breaker is open");
+        }
+        return permit;
+    }
+
+    /**
+     * 下流サービスが正常に応答したか
+     * Retry-After 付きの 503 は混雑時の意図的な拒否で、サーキットを開いてもかえって回復を遅らせるため正常として扱う
+     */
+    private static boolean isHealthy(Response response) {
+        int status = response.getStatus();
+        if (status == Response.Status.SERVICE_UNAVAILABLE.getStatusCode()) {
+            return response.getHeaderString(HttpHeaders.RETRY_AFTER) != null;
+        }
+        return status < 500;
+    }
+
+    private void record(long permit, boolean success) {
+        if (success) {
+            circuitBreaker.onSuccess(permit);
+        } else {
+            circuitBreaker.onFailure(permit);
+        }
+    }
+
+    private static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(System.getenv().getOrDefault(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid integer value for " + key);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * プールから接続を取得するまでの待ち時間を計測するコネクションマネージャ
+     */
+    private class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            ConnectionRequest request = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit unit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        HttpClientConnection connection = request.get(timeout, unit);
+                        long elapsed = System.nanoTime() - start;
+                        leases.increment();
+                        leaseNanos.add(elapsed);
+                        maxLeaseNanos.accumulateAndGet(elapsed, Math::max);
+                        return connection;
+                    } catch (ConnectionPoolTimeoutException e) {
+                        leaseTimeouts.increment();
+                        throw e;
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+}
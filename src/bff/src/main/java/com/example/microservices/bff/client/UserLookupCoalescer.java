@@ -0,0 +1,247 @@
+package com.example.microservices.bff.client;
+
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ユーザー単体取得の集約（DataLoader 方式）
+ * 短い時間枠（既定 5ms）の間に届いた単体取得をまとめて1回の POST /users/batch で取得する。
+ * 同じユーザーの取得が処理中の場合は新たに要求せず、その結果を共有する。
+ * ETag は BFF で導出せず、一括取得の応答で user-service が返した値をそのまま使う。
+ */
+@ApplicationScoped
+public class UserLookupCoalescer {
+
+    private static final boolean ENABLED =
+            Boolean.parseBoolean(System.getenv().getOrDefault("USER_LOOKUP_COALESCING_ENABLED", "true"));
+    private static final long WINDOW_MILLIS =
+            Long.parseLong(System.getenv().getOrDefault("USER_LOOKUP_WINDOW_MILLIS", "5"));
+    private static final int MAX_BATCH_SIZE =
+            Integer.parseInt(System.getenv().getOrDefault("USER_LOOKUP_MAX_BATCH_SIZE", "100"));
+    // 一括取得の読み込みタイムアウト（既定 5000ms）に時間枠を加えた待ち時間の上限
+    private static final long LOOKUP_TIMEOUT_MILLIS =
+            Long.parseLong(System.getenv().getOrDefault("USER_LOOKUP_TIMEOUT_MILLIS", "6000"));
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    @Inject
+    private UserServiceClient userServiceClient;
+
+    // 取得中（時間枠の待ち・一括取得の応答待ち）のユーザー。存在しない場合の結果は空
+    private final ConcurrentHashMap<UUID, CompletableFuture<Optional<LookupResult>>> inFlight = new ConcurrentHashMap<>();
+
+    private final Object pendingLock = new Object();
+    private List<UUID> pending = new ArrayList<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedIds = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    /**
+     * 取得したユーザー
+     */
+    public static class LookupResult {
+        private final String json;
+        private final String etag;
+
+        LookupResult(String json, String etag) {
+            this.json = json;
+            this.etag = etag;
+        }
+
+        public String getJson() {
+            return json;
+        }
+
+        /**
+         * user-service が返した ETag ヘッダーの値（返さなかった場合は null）
+         */
+        public String getETag() {
+            return etag;
+        }
+    }
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * ユーザーを取得（他のリクエストとまとめて取得されるまで待つ）
+     *
+     * @return 取得したユーザー。存在しない場合は空
+     * @throws ProcessingException 一括取得に失敗した、または時間内に応答がなかった
+     */
+    public Optional<LookupResult> lookup(UUID id) {
+        try {
+            return load(id).get(LOOKUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ProcessingException) {
+                throw (ProcessingException) cause;
+            }
+            throw new ProcessingException("User lookup failed", cause);
+        } catch (TimeoutException e) {
+            throw new ProcessingException("User lookup timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException("User lookup interrupted", e);
+        }
+    }
+
+    /**
+     * ユーザーの取得を予約
+     */
+    public CompletableFuture<Optional<LookupResult>> load(UUID id) {
+        requests.increment();
+        boolean[] created = {false};
+        CompletableFuture<Optional<LookupResult>> future = inFlight.computeIfAbsent(id, key -> {
+            created[0] = true;
+            return new CompletableFuture<>();
+        });
+        if (!created[0]) {
+            deduplicated.increment();
+            return future;
+        }
+        enqueue(id);
+        return future;
+    }
+
+    /**
+     * 統計を取得
+     */
+    public Map<String, Object> getStats() {
+        long batchCount = batches.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("windowMillis", WINDOW_MILLIS);
+        stats.put("maxBatchSize", MAX_BATCH_SIZE);
+        stats.put("requests", requests.sum());
+        stats.put("deduplicated", deduplicated.sum());
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount > 0 ? (double) batchedIds.sum() / batchCount : 0.0);
+        stats.put("failedBatches", failedBatches.sum());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    private void enqueue(UUID id) {
+        List<UUID> full = null;
+        boolean firstInWindow = false;
+        synchronized (pendingLock) {
+            pending.add(id);
+            if (pending.size() >= MAX_BATCH_SIZE) {
+                full = pending;
+                pending = new ArrayList<>();
+            } else {
+                firstInWindow = pending.size() == 1;
+            }
+        }
+
+        if (full != null) {
+            dispatch(full);
+        } else if (firstInWindow) {
+            try {
+                scheduler.schedule(this::flush, WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flush();
+            }
+        }
+    }
+
+    private void flush() {
+        List<UUID> batch;
+        synchronized (pendingLock) {
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private void dispatch(List<UUID> batch) {
+        batches.increment();
+        batchedIds.add(batch.size());
+
+        CompletionStage<Response> stage;
+        try {
+            stage = userServiceClient.getUsersBatchAsync(batch);
+        } catch (RuntimeException e) {
+            fail(batch, e);
+            return;
+        }
+        stage.whenComplete((response, error) -> {
+            if (error != null) {
+                fail(batch, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            try {
+                complete(batch, response);
+            } catch (RuntimeException e) {
+                fail(batch, e);
+            } finally {
+                response.close();
+            }
+        });
+    }
+
+    private void complete(List<UUID> batch, Response response) {
+        if (response.getStatus() != 200) {
+            throw new ProcessingException("User batch lookup failed with status " + response.getStatus());
+        }
+        Map<UUID, LookupResult> users = new HashMap<>();
+        try (JsonReader reader = Json.createReader(new StringReader(response.readEntity(String.class)))) {
+            JsonObject result = reader.readObject();
+            JsonObject etags = result.getJsonObject("etags");
+            for (JsonValue value : result.getJsonArray("users")) {
+                JsonObject user = value.asJsonObject();
+                String id = user.getString("id");
+                String etag = etags != null ? etags.getString(id, null) : null;
+                users.put(UUID.fromString(id), new LookupResult(user.toString(), etag));
+            }
+        }
+        for (UUID id : batch) {
+            CompletableFuture<Optional<LookupResult>> future = inFlight.remove(id);
+            if (future != null) {
+                future.complete(Optional.ofNullable(users.get(id)));
+            }
+        }
+    }
+
+    private void fail(List<UUID> batch, Throwable error) {
+        failedBatches.increment();
+        for (UUID id : batch) {
+            CompletableFuture<Optional<LookupResult>> future = inFlight.remove(id);
+            if (future != null) {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+}
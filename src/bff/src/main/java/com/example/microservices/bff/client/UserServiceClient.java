@@ -1,15 +1,22 @@
 package com.example.microservices.bff.client;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.ApplicationScoped;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 
 /**
  * ユーザーサービスクライアント
@@ -18,65 +25,171 @@ import java.util.UUID;
 public class UserServiceClient {
 
     private static final String USER_SERVICE_URL = System.getenv().getOrDefault("USER_SERVICE_URL", "http://localhost:8080");
-    private final Client client;
 
-    public UserServiceClient() {
-        this.client = ClientBuilder.newClient();
+    @Resource
+    private ManagedExecutorService managedExecutorService;
+
+    private PooledHttpClient httpClient;
+    private WebTarget usersTarget;
+    private WebTarget batchTarget;
+    private WebTarget searchTarget;
+
+    @PostConstruct
+    void init() {
+        httpClient = new PooledHttpClient("USER_SERVICE", USER_SERVICE_URL, managedExecutorService);
+        usersTarget = httpClient.target().path("/user-service/api/users");
+        batchTarget = usersTarget.path("batch");
+        searchTarget = usersTarget.path("search");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        httpClient.close();
     }
 
     /**
      * ユーザー情報取得
      */
     public Response getUser(UUID userId) {
-        WebTarget target = client.target(USER_SERVICE_URL)
-                .path("/user-service/api/users/" + userId);
-        return target.request(MediaType.APPLICATION_JSON).get();
+        return getUser(userId, null);
+    }
+
+    /**
+     * ユーザー情報取得（クライアントのリクエストヘッダーを引き継ぐ）
+     */
+    public Response getUser(UUID userId, HttpHeaders incoming) {
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(usersTarget.path(userId.toString())
+                .request(MediaType.APPLICATION_JSON), incoming).get());
     }
 
     /**
      * ユーザーアカウント情報取得（ユーザー情報 + ポイント）
      */
     public Response getUserAccount(UUID userId) {
-        WebTarget target = client.target(USER_SERVICE_URL)
-                .path("/user-service/api/users/" + userId + "/account");
-        return target.request(MediaType.APPLICATION_JSON).get();
+        return getUserAccount(userId, null);
+    }
+
+    /**
+     * ユーザーアカウント情報取得（クライアントのリクエストヘッダーを引き継ぐ）
+     */
+    public Response getUserAccount(UUID userId, HttpHeaders incoming) {
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(usersTarget.path(userId.toString()).path("account")
+                .request(MediaType.APPLICATION_JSON), incoming).get());
+    }
+
+    /**
+     * ユーザーアカウント情報取得（非同期）
+     */
+    public CompletionStage<Response> getUserAccountAsync(UUID userId) {
+        return httpClient.executeAsync(() -> usersTarget.path(userId.toString()).path("account")
+                .request(MediaType.APPLICATION_JSON).rx().get());
     }
 
     /**
      * 全ユーザー取得
      */
     public Response getAllUsers() {
-        WebTarget target = client.target(USER_SERVICE_URL)
-                .path("/user-service/api/users");
-        return target.request(MediaType.APPLICATION_JSON).get();
+        return getAllUsers(null);
+    }
+
+    /**
+     * 全ユーザー取得（クライアントのリクエストヘッダーを引き継ぐ）
+     */
+    public Response getAllUsers(HttpHeaders incoming) {
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(usersTarget.request(MediaType.APPLICATION_JSON), incoming).get());
+    }
+
+    /**
+     * ユーザー一覧取得（ページネーション・絞り込み）
+     * GET /api/users?limit=&after=&usernamePrefix=&createdFrom=&createdTo=
+     *
+     * @param queryParams 一覧の条件（値が null の項目は送らない）
+     * @param mediaType application/json または application/x-ndjson
+     */
+    public Response listUsers(Map<String, String> queryParams, String mediaType, HttpHeaders incoming) {
+        WebTarget requestTarget = withQuery(usersTarget, queryParams);
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(requestTarget.request(mediaType), incoming).get());
+    }
+
+    /**
+     * ユーザー検索
+     * GET /api/users/search?q=...&mode=prefix|fuzzy&fields=...&limit=...&after=...
+     *
+     * @param queryParams 検索条件（値が null の項目は送らない）
+     */
+    public Response searchUsers(Map<String, String> queryParams, HttpHeaders incoming) {
+        WebTarget requestTarget = withQuery(searchTarget, queryParams);
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(requestTarget.request(MediaType.APPLICATION_JSON), incoming).get());
+    }
+
+    /**
+     * ユーザー一括取得
+     * POST /api/users/batch  {"ids": [...]}
+     */
+    public Response getUsersBatch(Map<String, Object> batchRequest, HttpHeaders incoming) {
+        return httpClient.execute(() -> PooledHttpClient.forwardHeaders(batchTarget.request(MediaType.APPLICATION_JSON), incoming)
+                .post(Entity.entity(batchRequest, MediaType.APPLICATION_JSON)));
+    }
+
+    /**
+     * ユーザー一括取得（非同期）
+     */
+    public CompletionStage<Response> getUsersBatchAsync(Collection<UUID> ids) {
+        List<String> idList = new ArrayList<>();
+        for (UUID id : ids) {
+            idList.add(id.toString());
+        }
+        Map<String, Object> batchRequest = new HashMap<>();
+        batchRequest.put("ids", idList);
+        return httpClient.executeAsync(() -> batchTarget.request(MediaType.APPLICATION_JSON)
+                .rx().post(Entity.entity(batchRequest, MediaType.APPLICATION_JSON)));
     }
 
     /**
      * ユーザー作成
      */
     public Response createUser(Map<String, Object> userData) {
-        WebTarget target = client.target(USER_SERVICE_URL)
-                .path("/user-service/api/users");
-        return target.request(MediaType.APPLICATION_JSON)
-                .post(Entity.entity(userData, MediaType.APPLICATION_JSON));
+        return httpClient.execute(() -> usersTarget.request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(userData, MediaType.APPLICATION_JSON)));
     }
 
     /**
      * ユーザー更新
      */
     public Response updateUser(UUID userId, Map<String, Object> userData) {
-        WebTarget target = client.target(USER_SERVICE_URL)
-                .path("/user-service/api/users/" + userId);
-        return target.request(MediaType.APPLICATION_JSON)
-                .put(Entity.entity(userData, MediaType.APPLICATION_JSON));
+        return httpClient.execute(() -> usersTarget.path(userId.toString())
+                .request(MediaType.APPLICATION_JSON)
+                .put(Entity.entity(userData, MediaType.APPLICATION_JSON)));
     }
 
     /**
      * ユーザー削除
      */
     public Response deleteUser(UUID userId) {
-        WebTarget target = client.target(USER_SERVICE_URL)
-                .path("/user-service/api/users/" + userId);
-        return target.request(MediaType.APPLICATION_JSON).delete();
+        return httpClient.execute(() -> usersTarget.path(userId.toString())
+                .request(MediaType.APPLICATION_JSON).delete());
+    }
+
+    /**
+     * コネクションプールの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        return httpClient.getStats();
+    }
+
+    /**
+     * サーキットブレーカーとバルクヘッドの統計を取得
+     */
+    public Map<String, Object> getResilienceStats() {
+        return httpClient.getResilienceStats();
+    }
+
+    private WebTarget withQuery(WebTarget target, Map<String, String> queryParams) {
+        for (Map.Entry<String, String> param : queryParams.entrySet()) {
+            if (param.getValue() != null) {
+                target = target.queryParam(param.getKey(), param.getValue());
+            }
+        }
+        return target;
     }
 }
@@ -2,15 +2,22 @@ package com.example.microservices.bff.rest;
 
 import com.example.microservices.bff.client.AuthServiceClient;
 import com.example.microservices.bff.client.PointServiceClient;
+import com.example.microservices.bff.client.UserLookupCoalescer;
 import com.example.microservices.bff.client.UserServiceClient;
+import com.example.microservices.bff.security.TokenVerifier;
+import com.example.microservices.bff.security.VerifiedToken;
 
 import javax.inject.Inject;
-import javax.json.JsonObject;
 import javax.ws.rs.*;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -22,6 +29,11 @@ import java.util.UUID;
 @Consumes(MediaType.APPLICATION_JSON)
 public class BffResource {
 
+    private static final String NDJSON = "application/x-ndjson";
+
+    // ユーザー単体取得の Cache-Control（user-service と同じく、キャッシュする場合は毎回 ETag で再検証させる）
+    private static final CacheControl USER_CACHE_CONTROL = createRevalidateCacheControl();
+
     @Inject
     private UserServiceClient userServiceClient;
 
@@ -31,6 +43,16 @@ public class BffResource {
     @Inject
     private PointServiceClient pointServiceClient;
 
+    @Inject
+    private TokenVerifier tokenVerifier;
+
+    @Inject
+    private UserLookupCoalescer userLookupCoalescer;
+
+    // Accept-Encoding 等を下流サービスへ引き継ぐためのリクエストヘッダー
+    @Context
+    private HttpHeaders httpHeaders;
+
     // ==================== 認証エンドポイント ====================
 
     /**
@@ -53,11 +75,10 @@ public class BffResource {
             String password = (String) loginData.get("password");
 
             // loginData をそのまま転送
-            Response authResponse = authServiceClient.login(loginData);
-            String body = authResponse.readEntity(String.class);
-            return Response.status(authResponse.getStatus())
-                    .entity(body)
-                    .build();
+            return DownstreamResponses.passThrough(authServiceClient.login(loginData, httpHeaders));
+        } catch (ProcessingException e) {
+            // 下流サービスへの接続エラー・タイムアウト、またはサーキットブレーカー・バルクヘッドによる拒否
+            return createServiceUnavailableResponse();
         } catch (Exception e) {
             e.printStackTrace();
             return createErrorResponse("Login failed: " + e.getMessage());
@@ -76,11 +97,10 @@ public class BffResource {
             }
 
             String token = authHeader.substring(7);
-            Response authResponse = authServiceClient.logout(token);
-            String body = authResponse.readEntity(String.class);
-            return Response.status(authResponse.getStatus())
-                    .entity(body)
-                    .build();
+            return DownstreamResponses.passThrough(authServiceClient.logout(token, httpHeaders));
+        } catch (ProcessingException e) {
+            // 下流サービスへの接続エラー・タイムアウト、またはサーキットブレーカー・バルクヘッドによる拒否
+            return createServiceUnavailableResponse();
         } catch (Exception e) {
             return createErrorResponse("Logout failed: " + e.getMessage());
         }
@@ -98,11 +118,10 @@ public class BffResource {
             }
 
             String token = authHeader.substring(7);
-            Response authResponse = authServiceClient.verifyToken(token);
-            String body = authResponse.readEntity(String.class);
-            return Response.status(authResponse.getStatus())
-                    .entity(body)
-                    .build();
+            return DownstreamResponses.passThrough(authServiceClient.verifyToken(token, httpHeaders));
+        } catch (ProcessingException e) {
+            // 下流サービスへの接続エラー・タイムアウト、またはサーキットブレーカー・バルクヘッドによる拒否
+            return createServiceUnavailableResponse();
         } catch (Exception e) {
             return createErrorResponse("Verification failed: " + e.getMessage());
         }
@@ -124,27 +143,21 @@ public class BffResource {
                         .build();
             }
 
-            String token = authHeader.substring(7);
-            Response verifyResponse = authServiceClient.verifyToken(token);
-            
-            if (verifyResponse.getStatus() != 200) {
+            Optional<VerifiedToken> verified = tokenVerifier.verifyHeader(authHeader);
+            if (!verified.isPresent()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity(createErrorMap("Invalid or expired token"))
                         .build();
             }
 
             // トークンから userId を取得
-            String verifyBody = verifyResponse.readEntity(String.class);
-            // 簡易的な実装（実際はJSON パースが必要）
-            UUID userId = extractUserIdFromVerifyResponse(verifyBody);
+            UUID userId = verified.get().getUserId();
 
             // ユーザーアカウント情報取得
-            Response userResponse = userServiceClient.getUserAccount(userId);
-            String body = userResponse.readEntity(String.class);
-            
-            return Response.status(userResponse.getStatus())
-                    .entity(body)
-                    .build();
+            return DownstreamResponses.passThrough(userServiceClient.getUserAccount(userId, httpHeaders));
+        } catch (ProcessingException e) {
+            // 下流サービスへの接続エラー・タイムアウト、またはサーキットブレーカー・バルクヘッドによる拒否
+            return createServiceUnavailableResponse();
         } catch (Exception e) {
             return createErrorResponse("Failed to get account: " + e.getMessage());
         }
@@ -174,22 +187,100 @@ public class BffResource {
                         .build();
             }
 
-            Response userResponse = userServiceClient.getUser(id);
-            String body = userResponse.readEntity(String.class);
-            return Response.status(userResponse.getStatus())
-                    .entity(body)
+            // 条件付きリクエスト（If-None-Match）は 304 を返せるよう個別に転送し、それ以外は同時期の取得とまとめる
+            if (!userLookupCoalescer.isEnabled() || httpHeaders.getHeaderString(HttpHeaders.IF_NONE_MATCH) != null) {
+                return DownstreamResponses.passThrough(userServiceClient.getUser(id, httpHeaders));
+            }
+            Optional<UserLookupCoalescer.LookupResult> user = userLookupCoalescer.lookup(id);
+            if (!user.isPresent()) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity(createErrorMap("User not found with id: " + id))
+                        .build();
+            }
+            // まとめて取得した場合も、次回以降の条件付きリクエストに使えるよう
+            // 一括取得で user-service が返した ETag をそのまま付け、個別取得と同じ Cache-Control を付ける
+            return Response.ok(user.get().getJson(), MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.ETAG, user.get().getETag())
+                    .cacheControl(USER_CACHE_CONTROL)
                     .build();
+        } catch (ProcessingException e) {
+            // 下流サービスへの接続エラー・タイムアウト、またはサーキットブレーカー・バルクヘッドによる拒否
+            return createServiceUnavailableResponse();
         } catch (Exception e) {
             return createErrorResponse("Failed to get user: " + e.getMessage());
         }
     }
 
     /**
-     * 全ユーザー取得
+     * ユーザー一括取得
+     * POST /api/users/batch  {"ids": ["...", "..."]}
+     */
+    @POST
+    @Path("/users/batch")
+    public Response getUsersBatch(@HeaderParam("Authorization") String authHeader, Map<String, Object> batchRequest) {
+        try {
+            // 認証チェック
+            if (!isAuthenticated(authHeader)) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity(createErrorMap("Unauthorized"))
+                        .build();
+            }
+
+            return DownstreamResponses.passThrough(userServiceClient.getUsersBatch(batchRequest, httpHeaders));
+        } catch (ProcessingException e) {
+            // 下流サービスへの接続エラー・タイムアウト、またはサーキットブレーカー・バルクヘッドによる拒否
+            return createServiceUnavailableResponse();
+        } catch (Exception e) {
+            return createErrorResponse("Failed to get users: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ユーザー一覧取得
+     * GET /api/users?limit=100&after={cursor}&usernamePrefix=abc&createdFrom=2025-01-01&createdTo=2025-02-01
+     * limit 指定時は1ページ分（次のページのカーソルは X-Next-Cursor ヘッダー）、未指定時は全件を逐次返す
+     */
+    @GET
+    @Path("/users")
+    public Response getAllUsers(@HeaderParam("Authorization") String authHeader,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("after") String after,
+                                @QueryParam("usernamePrefix") String usernamePrefix,
+                                @QueryParam("createdFrom") String createdFrom,
+                                @QueryParam("createdTo") String createdTo) {
+        return listUsers(authHeader, MediaType.APPLICATION_JSON,
+                createUserListQuery(limit, after, usernamePrefix, createdFrom, createdTo));
+    }
+
+    /**
+     * ユーザー一覧取得（NDJSON、1行1ユーザー）
+     * Accept: application/x-ndjson を指定した場合に選択される
      */
     @GET
     @Path("/users")
-    public Response getAllUsers(@HeaderParam("Authorization") String authHeader) {
+    @Produces(NDJSON + ";qs=0.5")
+    public Response streamAllUsers(@HeaderParam("Authorization") String authHeader,
+                                   @QueryParam("after") String after,
+                                   @QueryParam("usernamePrefix") String usernamePrefix,
+                                   @QueryParam("createdFrom") String createdFrom,
+                                   @QueryParam("createdTo") String createdTo) {
+        return listUsers(authHeader, NDJSON,
+                createUserListQuery(null, after, usernamePrefix, createdFrom, createdTo));
+    }
+
+    /**
+     * ユーザー検索
+     * GET /api/users/search?q=tar&mode=prefix|fuzzy&fields=username,email,fullName&limit=20&after={cursor}
+     * 続きがある場合、次のページのカーソルは X-Next-Cursor ヘッダー
+     */
+    @GET
+    @Path("/users/search")
+    public Response searchUsers(@HeaderParam("Authorization") String authHeader,
+                                @QueryParam("q") String q,
+                                @QueryParam("mode") String mode,
+                                @QueryParam("fields") String fields,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("after") String after) {
         try {
             // 認証チェック
             if (!isAuthenticated(authHeader)) {
@@ -198,11 +289,35 @@ public class BffResource {
                         .build();
             }
 
-            Response userResponse = userServiceClient.getAllUsers();
-            String body = userResponse.readEntity(String.class);
-            return Response.status(userResponse.getStatus())
-                    .entity(body)
-                    .build();
+            Map<String, String> query = new LinkedHashMap<>();
+            query.put("q", q);
+            query.put("mode", mode);
+            query.put("fields", fields);
+            query.put("limit", limit != null ? String.valueOf(limit) : null);
+            query.put("after", after);
+            return DownstreamResponses.passThrough(userServiceClient.searchUsers(query, httpHeaders));
+        } catch (ProcessingException e) {
+            // 下流サービスへの接続エラー・タイムアウト、またはサーキットブレーカー・バルクヘッドによる拒否
+            return createServiceUnavailableResponse();
+        } catch (Exception e) {
+            return createErrorResponse("Failed to search users: " + e.getMessage());
+        }
+    }
+
+    private Response listUsers(String authHeader, String mediaType, Map<String, String> query) {
+        try {
+            // 認証チェック
+            if (!isAuthenticated(authHeader)) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .type(MediaType.APPLICATION_JSON)
+                        .entity(createErrorMap("Unauthorized"))
+                        .build();
+            }
+
+            return DownstreamResponses.passThrough(userServiceClient.listUsers(query, mediaType, httpHeaders));
+        } catch (ProcessingException e) {
+            // 下流サービスへの接続エラー・タイムアウト、またはサーキットブレーカー・バルクヘッドによる拒否
+            return createServiceUnavailableResponse();
         } catch (Exception e) {
             return createErrorResponse("Failed to get users: " + e.getMessage());
         }
@@ -228,8 +343,7 @@ public class BffResource {
             String token = authHeader.substring(7);
             
             // JWT検証
-            Response verifyResponse = authServiceClient.verifyToken(token);
-            if (verifyResponse.getStatus() != 200) {
+            if (!tokenVerifier.verify(token).isPresent()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity(createErrorMap("Invalid token"))
                         .build();
@@ -237,19 +351,17 @@ public class BffResource {
 
             // Point Serviceにリクエストを転送
             try {
-                Response pointResponse = pointServiceClient.getPoints(token);
-                String body = pointResponse.readEntity(String.class);
+                Response pointResponse = pointServiceClient.getPoints(token, httpHeaders);
                 
                 // Point Service停止時のエラーハンドリング
                 if (isServiceUnavailable(pointResponse.getStatus())) {
+                    pointResponse.close();
                     return Response.status(Response.Status.SERVICE_UNAVAILABLE)
                             .entity(createErrorMap("Service Unavailable"))
                             .build();
                 }
                 
-                return Response.status(pointResponse.getStatus())
-                        .entity(body)
-                        .build();
+                return DownstreamResponses.passThrough(pointResponse);
             } catch (javax.ws.rs.ProcessingException e) {
                 // Point Service接続エラー（停止時など）
                 return Response.status(Response.Status.SERVICE_UNAVAILABLE)
@@ -264,13 +376,15 @@ public class BffResource {
     /**
      * ポイント履歴取得
      * GET /api/points/history?page=1&limit=10
+     * GET /api/points/history?cursor={nextCursor}&limit=10
      */
     @GET
     @Path("/points/history")
     public Response getPointHistory(
             @HeaderParam("Authorization") String authHeader,
             @QueryParam("page") @DefaultValue("1") int page,
-            @QueryParam("limit") @DefaultValue("10") int limit) {
+            @QueryParam("limit") @DefaultValue("10") int limit,
+            @QueryParam("cursor") String cursor) {
         try {
             // 認証チェック
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -282,8 +396,7 @@ public class BffResource {
             String token = authHeader.substring(7);
             
             // JWT検証
-            Response verifyResponse = authServiceClient.verifyToken(token);
-            if (verifyResponse.getStatus() != 200) {
+            if (!tokenVerifier.verify(token).isPresent()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity(createErrorMap("Invalid token"))
                         .build();
@@ -291,19 +404,17 @@ public class BffResource {
 
             // Point Serviceにリクエストを転送
             try {
-                Response pointResponse = pointServiceClient.getPointHistory(token, page, limit);
-                String body = pointResponse.readEntity(String.class);
+                Response pointResponse = pointServiceClient.getPointHistory(token, page, limit, cursor, httpHeaders);
                 
                 // Point Service停止時のエラーハンドリング
                 if (isServiceUnavailable(pointResponse.getStatus())) {
+                    pointResponse.close();
                     return Response.status(Response.Status.SERVICE_UNAVAILABLE)
                             .entity(createErrorMap("Service Unavailable"))
                             .build();
                 }
                 
-                return Response.status(pointResponse.getStatus())
-                        .entity(body)
-                        .build();
+                return DownstreamResponses.passThrough(pointResponse);
             } catch (javax.ws.rs.ProcessingException e) {
                 // Point Service接続エラー（停止時など）
                 return Response.status(Response.Status.SERVICE_UNAVAILABLE)
@@ -317,54 +428,43 @@ public class BffResource {
 
     // ==================== ヘルパーメソッド ====================
 
-    private boolean isAuthenticated(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            return false;
-        }
+    private Map<String, String> createUserListQuery(Integer limit, String after, String usernamePrefix,
+                                                    String createdFrom, String createdTo) {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("limit", limit != null ? String.valueOf(limit) : null);
+        query.put("after", after);
+        query.put("usernamePrefix", usernamePrefix);
+        query.put("createdFrom", createdFrom);
+        query.put("createdTo", createdTo);
+        return query;
+    }
 
-        try {
-            String token = authHeader.substring(7);
-            Response verifyResponse = authServiceClient.verifyToken(token);
-            return verifyResponse.getStatus() == 200;
-        } catch (Exception e) {
-            return false;
-        }
+    private static CacheControl createRevalidateCacheControl() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+        cacheControl.setNoTransform(false);
+        return cacheControl;
+    }
+
+    private boolean isAuthenticated(String authHeader) {
+        return tokenVerifier.verifyHeader(authHeader).isPresent();
     }
 
     private boolean isServiceUnavailable(int statusCode) {
         return statusCode == 503 || statusCode == 502 || statusCode == 504;
     }
 
-    private UUID extractUserIdFromVerifyResponse(String jsonResponse) {
-        // 簡易的な実装（実際は JSON ライブラリで適切にパースすべき）
-        // 例: {"valid":true,"userId":"550e8400-e29b-41d4-a716-446655440000","expiresAt":"..."}
-        try {
-            String userIdKey = "\"userId\":";
-            int userIdIndex = jsonResponse.indexOf(userIdKey);
-            if (userIdIndex == -1) {
-                return null;
-            }
-            // Skip past "userId": to find the opening quote
-            String substring = jsonResponse.substring(userIdIndex + userIdKey.length());
-            int openQuoteIndex = substring.indexOf("\"");
-            if (openQuoteIndex == -1) {
-                return null;
-            }
-            // Find the closing quote after the opening quote
-            String afterOpenQuote = substring.substring(openQuoteIndex + 1);
-            int closeQuoteIndex = afterOpenQuote.indexOf("\"");
-            if (closeQuoteIndex == -1) {
-                return null;
-            }
-            String userIdStr = afterOpenQuote.substring(0, closeQuoteIndex);
-            return UUID.fromString(userIdStr);
-        } catch (Exception e) {
-            return null;
-        }
+    private Response createServiceUnavailableResponse() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(createErrorMap("Service Unavailable"))
+                .build();
     }
 
     private Response createErrorResponse(String message) {
         return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .type(MediaType.APPLICATION_JSON)
                 .entity(createErrorMap(message))
                 .build();
     }
@@ -0,0 +1,152 @@
+package com.example.microservices.bff.rest;
+
+import com.example.microservices.bff.client.PointServiceClient;
+import com.example.microservices.bff.client.UserServiceClient;
+import com.example.microservices.bff.security.TokenVerifier;
+import com.example.microservices.bff.security.VerifiedToken;
+
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.StringReader;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 会員ダッシュボード用の集約 API
+ * トークンをBFF内で検証した後、アカウント情報・ポイント残高・ポイント履歴（先頭ページ）を
+ * 並行して取得し、1つのJSONにまとめて返す。
+ * 応答が遅い・失敗したサービスのセクションのみエラー状態にして残りを返す（部分的な縮退）。
+ */
+@Path("/api/dashboard")
+@Produces(MediaType.APPLICATION_JSON)
+public class DashboardResource {
+
+    private static final long SECTION_TIMEOUT_MILLIS =
+            Long.parseLong(System.getenv().getOrDefault("DASHBOARD_SECTION_TIMEOUT_MILLIS", "2000"));
+
+    @Inject
+    private TokenVerifier tokenVerifier;
+
+    @Inject
+    private UserServiceClient userServiceClient;
+
+    @Inject
+    private PointServiceClient pointServiceClient;
+
+    /**
+     * ダッシュボード情報取得
+     * GET /api/dashboard?historyLimit=10
+     */
+    @GET
+    public void getDashboard(@HeaderParam("Authorization") String authHeader,
+                             @QueryParam("historyLimit") @DefaultValue("10") int historyLimit,
+                             @Suspended AsyncResponse asyncResponse) {
+        Optional<VerifiedToken> verified = tokenVerifier.verifyHeader(authHeader);
+        if (!verified.isPresent()) {
+            asyncResponse.resume(Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(createError("Invalid or expired token"))
+                    .build());
+            return;
+        }
+        String token = authHeader.substring(7);
+        int limit = Math.min(Math.max(1, historyLimit), 100);
+
+        // 各セクションの呼び出しを同時に開始する（合計の待ち時間は最も遅いサービスの時間になる）
+        UUID userId = verified.get().getUserId();
+        CompletableFuture<JsonObject> account = section(() -> userServiceClient.getUserAccountAsync(userId));
+        CompletableFuture<JsonObject> points = section(() -> pointServiceClient.getPointsAsync(token));
+        CompletableFuture<JsonObject> history = section(() -> pointServiceClient.getPointHistoryAsync(token, limit));
+
+        CompletableFuture.allOf(account, points, history).thenRun(() -> {
+            JsonObject accountSection = account.join();
+            JsonObject pointsSection = points.join();
+            JsonObject historySection = history.join();
+            boolean degraded = !isOk(accountSection) || !isOk(pointsSection) || !isOk(historySection);
+
+            JsonObject body = Json.createObjectBuilder()
+                    .add("userId", userId.toString())
+                    .add("degraded", degraded)
+                    .add("account", accountSection)
+                    .add("points", pointsSection)
+                    .add("history", historySection)
+                    .build();
+            asyncResponse.resume(Response.ok(body.toString(), MediaType.APPLICATION_JSON).build());
+        }).exceptionally(e -> {
+            asyncResponse.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(createError("Failed to build dashboard: " + e.getMessage()))
+                    .build());
+            return null;
+        });
+    }
+
+    /**
+     * 下流サービスの応答を1セクションに変換（タイムアウト・エラー時は状態のみのセクション）
+     */
+    private CompletableFuture<JsonObject> section(Supplier<CompletionStage<Response>> call) {
+        CompletionStage<Response> stage;
+        try {
+            stage = call.get();
+        } catch (RuntimeException e) {
+            // 呼び出しを開始できない場合（実行スレッドの枯渇等）
+            return CompletableFuture.completedFuture(sectionStatus("unavailable").build());
+        }
+        // タイムアウトは複製に対して設定し、遅れて届いた応答も toSection で読み切って接続をプールに返す
+        return stage.thenApply(this::toSection)
+                .toCompletableFuture()
+                .copy()
+                .orTimeout(SECTION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    return sectionStatus(cause instanceof TimeoutException ? "timeout" : "unavailable").build();
+                });
+    }
+
+    private JsonObject toSection(Response response) {
+        try {
+            String body = response.readEntity(String.class);
+            int status = response.getStatus();
+            if (status >= 200 && status < 300) {
+                try (JsonReader reader = Json.createReader(new StringReader(body))) {
+                    return sectionStatus("ok").add("data", reader.readValue()).build();
+                }
+            }
+            return sectionStatus("error").add("httpStatus", status).build();
+        } catch (JsonException e) {
+            return sectionStatus("error").add("message", "Invalid response body").build();
+        } finally {
+            response.close();
+        }
+    }
+
+    private JsonObjectBuilder sectionStatus(String status) {
+        return Json.createObjectBuilder().add("status", status);
+    }
+
+    private boolean isOk(JsonObject section) {
+        return "ok".equals(section.getString("status", null));
+    }
+
+    private String createError(String message) {
+        return Json.createObjectBuilder().add("error", message).build().toString();
+    }
+}
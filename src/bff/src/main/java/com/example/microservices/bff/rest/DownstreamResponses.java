@@ -0,0 +1,74 @@
+package com.example.microservices.bff.rest;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 下流サービスの応答をクライアントにそのまま転送するヘルパー
+ * 応答ボディは文字列に変換せず、固定サイズのバッファでバイト列のままコピーする
+ * （1リクエストあたりのメモリ使用量はボディのサイズではなくバッファサイズで決まる）。
+ */
+final class DownstreamResponses {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * クライアントに転送する応答ヘッダー
+     * ボディは展開せずに転送するため Content-Encoding / Content-Length もそのまま使える
+     */
+    private static final List<String> FORWARDED_RESPONSE_HEADERS = Arrays.asList(
+            HttpHeaders.CONTENT_TYPE,
+            HttpHeaders.CONTENT_ENCODING,
+            HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.ETAG,
+            HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.CACHE_CONTROL,
+            HttpHeaders.VARY,
+            HttpHeaders.LOCATION,
+            "X-Next-Cursor");
+
+    private DownstreamResponses() {
+    }
+
+    /**
+     * 下流サービスの応答をステータス・ヘッダー・ボディごと転送する
+     * ボディがある場合、下流の応答はボディの書き出し後（失敗時も含む）に閉じる。
+     */
+    static Response passThrough(Response downstream) {
+        Response.ResponseBuilder builder = Response.status(downstream.getStatus());
+        for (String name : FORWARDED_RESPONSE_HEADERS) {
+            String value = downstream.getHeaderString(name);
+            if (value != null) {
+                builder.header(name, value);
+            }
+        }
+
+        if (!downstream.hasEntity()) {
+            downstream.close();
+            return builder.build();
+        }
+
+        InputStream body = downstream.readEntity(InputStream.class);
+        StreamingOutput output = out -> copy(downstream, body, out);
+        return builder.entity(output).build();
+    }
+
+    private static void copy(Response downstream, InputStream body, OutputStream out) throws IOException {
+        try (InputStream in = body) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.flush();
+        } finally {
+            downstream.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.microservices.bff.rest;
+
+import com.example.microservices.bff.client.AuthServiceClient;
+import com.example.microservices.bff.client.PointServiceClient;
+import com.example.microservices.bff.client.UserLookupCoalescer;
+import com.example.microservices.bff.client.UserServiceClient;
+import com.example.microservices.bff.security.TokenVerifier;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BFF 運用メトリクス API
+ */
+@Path("/api/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+
+    @Inject
+    private TokenVerifier tokenVerifier;
+
+    @Inject
+    private AuthServiceClient authServiceClient;
+
+    @Inject
+    private UserServiceClient userServiceClient;
+
+    @Inject
+    private PointServiceClient pointServiceClient;
+
+    @Inject
+    private UserLookupCoalescer userLookupCoalescer;
+
+    /**
+     * メトリクス取得
+     * GET /api/metrics
+     */
+    @GET
+    public Response getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("tokenVerification", tokenVerifier.getStats());
+
+        Map<String, Object> connectionPools = new HashMap<>();
+        connectionPools.put("authService", authServiceClient.getStats());
+        connectionPools.put("userService", userServiceClient.getStats());
+        connectionPools.put("pointService", pointServiceClient.getStats());
+        metrics.put("connectionPools", connectionPools);
+
+        Map<String, Object> resilience = new HashMap<>();
+        resilience.put("authService", authServiceClient.getResilienceStats());
+        resilience.put("userService", userServiceClient.getResilienceStats());
+        resilience.put("pointService", pointServiceClient.getResilienceStats());
+        metrics.put("resilience", resilience);
+        metrics.put("userLookupCoalescer", userLookupCoalescer.getStats());
+        return Response.ok(metrics).build();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.microservices.bff.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.microservices.bff.client.AuthServiceClient;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.ws.rs.core.Response;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * トークン検証コンポーネント
+ * JWT（HS256）はBFF内で検証し、レガシーセッショントークンのみAuth Serviceに問い合わせる
+ */
+@ApplicationScoped
+public class TokenVerifier {
+
+    // JWT検証用のシークレットキー（Auth Serviceと同じ値を使用）
+    // SECURITY NOTE: 本番環境では環境変数や暗号化された設定から取得すべき
+    // または AWS Secrets Manager, HashiCorp Vault などのシークレット管理サービスを使用
+    private static final String SECRET_KEY = System.getenv().getOrDefault("JWT_SECRET_KEY", "your-secret-key-change-this-in-production");
+    private static final JWTVerifier JWT_VERIFIER = JWT.require(Algorithm.HMAC256(SECRET_KEY)).build();
+
+    @Inject
+    private AuthServiceClient authServiceClient;
+
+    private final LongAdder localVerified = new LongAdder();
+    private final LongAdder localRejected = new LongAdder();
+    private final LongAdder remoteVerified = new LongAdder();
+    private final LongAdder remoteRejected = new LongAdder();
+    private final LongAdder remoteErrors = new LongAdder();
+
+    /**
+     * Authorizationヘッダーからトークンを取り出して検証
+     *
+     * @param authHeader Authorizationヘッダーの値
+     * @return 検証に成功した場合はトークン情報、それ以外は空
+     */
+    public Optional<VerifiedToken> verifyHeader(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return Optional.empty();
+        }
+        return verify(authHeader.substring(7));
+    }
+
+    /**
+     * トークンを検証
+     *
+     * @param token JWTまたはレガシーセッショントークン
+     * @return 検証に成功した場合はトークン情報、それ以外は空
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+        if (isJwt(token)) {
+            return verifyLocally(token);
+        }
+        return verifyRemotely(token);
+    }
+
+    /**
+     * 検証件数の統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("localVerified", localVerified.sum());
+        stats.put("localRejected", localRejected.sum());
+        stats.put("remoteVerified", remoteVerified.sum());
+        stats.put("remoteRejected", remoteRejected.sum());
+        stats.put("remoteErrors", remoteErrors.sum());
+        return stats;
+    }
+
+    private Optional<VerifiedToken> verifyLocally(String token) {
+        try {
+            DecodedJWT jwt = JWT_VERIFIER.verify(token);
+            String userIdStr = jwt.getClaim("userId").asString();
+            if (userIdStr == null || userIdStr.isEmpty()) {
+                localRejected.increment();
+                return Optional.empty();
+            }
+            // usernameはオプショナル（Auth Serviceの/verifyと同じ扱い）
+            String username = jwt.getClaim("username").asString();
+            localVerified.increment();
+            return Optional.of(new VerifiedToken(UUID.fromString(userIdStr), username, true));
+        } catch (JWTVerificationException | IllegalArgumentException e) {
+            localRejected.increment();
+            return Optional.empty();
+        }
+    }
+
+    private Optional<VerifiedToken> verifyRemotely(String token) {
+        Response verifyResponse;
+        try {
+            verifyResponse = authServiceClient.verifyToken(token);
+        } catch (Exception e) {
+            remoteErrors.increment();
+            return Optional.empty();
+        }
+
+        try {
+            if (verifyResponse.getStatus() != 200) {
+                remoteRejected.increment();
+                return Optional.empty();
+            }
+
+            String body = verifyResponse.readEntity(String.class);
+            try (JsonReader reader = Json.createReader(new StringReader(body))) {
+                JsonObject json = reader.readObject();
+                String userIdStr = json.getString("userId", null);
+                if (userIdStr == null) {
+                    remoteRejected.increment();
+                    return Optional.empty();
+                }
+                remoteVerified.increment();
+                return Optional.of(new VerifiedToken(UUID.fromString(userIdStr), json.getString("username", null), false));
+            }
+        } catch (Exception e) {
+            remoteErrors.increment();
+            return Optional.empty();
+        } finally {
+            verifyResponse.close();
+        }
+    }
+
+    /**
+     * JWTの形式（header.payload.signature）かどうかを判定
+     * レガシーセッショントークンはBase64URL文字列でドットを含まない
+     */
+    private boolean isJwt(String token) {
+        int first = token.indexOf('.');
+        if (first <= 0) {
+            return false;
+        }
+        int second = token.indexOf('.', first + 1);
+        return second > first + 1 && token.indexOf('.', second + 1) == -1;
+    }
+}
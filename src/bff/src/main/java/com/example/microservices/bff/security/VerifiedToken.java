@@ -0,0 +1,33 @@
+package com.example.microservices.bff.security;
+
+import java.util.UUID;
+
+/**
+ * 検証済みトークンの情報
+ */
+public class VerifiedToken {
+    private final UUID userId;
+    private final String username;
+    private final boolean verifiedLocally;
+
+    public VerifiedToken(UUID userId, String username, boolean verifiedLocally) {
+        this.userId = userId;
+        this.username = username;
+        this.verifiedLocally = verifiedLocally;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * BFF内でJWTとして検証された場合はtrue、Auth Serviceに問い合わせた場合はfalse
+     */
+    public boolean isVerifiedLocally() {
+        return verifiedLocally;
+    }
+}
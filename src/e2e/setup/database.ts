@@ -236,6 +236,9 @@ USER_SERVICE_DB_PORT=${userContainer.getMappedPort(5432)}
 USER_SERVICE_DB_NAME=user_service_db
 USER_SERVICE_DB_USER=testuser
 USER_SERVICE_DB_PASSWORD=testpass
+# glassfish-resources.xml の UserServiceLookupPool は既定値を持たないため必須
+USER_SERVICE_DB_MIN_POOL_SIZE=4
+USER_SERVICE_DB_MAX_POOL_SIZE=16
 `;
       fs.writeFileSync(path.join(__dirname, '../../auth-service/.env.e2e'), envContent, 'utf8');
       console.log(`  ✓ Generated /workspaces/my-ws-demo/src/auth-service/.env.e2e`);
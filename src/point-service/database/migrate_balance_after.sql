@@ -0,0 +1,8 @@
+-- point_history.balance_after 追加のマイグレーション
+-- 既存環境に列を追加した後、POST /api/points/maintenance/backfill-balance-after で
+-- ユーザー単位のバッチに分けて既存履歴を補完する
+\c point_service_db;
+
+ALTER TABLE point_history ADD COLUMN IF NOT EXISTS balance_after INTEGER;
+
+SELECT 'point_history.balance_after added' AS status;
@@ -0,0 +1,11 @@
+-- points.history_count 追加のマイグレーション
+-- 列を追加した後、既存の履歴件数で初期化する（以降はポイント操作と同一SQL文で加算される）
+\c point_service_db;
+
+ALTER TABLE points ADD COLUMN IF NOT EXISTS history_count INTEGER NOT NULL DEFAULT 0;
+
+UPDATE points p SET history_count = c.total
+FROM (SELECT user_id, COUNT(*) AS total FROM point_history GROUP BY user_id) c
+WHERE p.user_id = c.user_id AND p.history_count <> c.total;
+
+SELECT 'points.history_count added' AS status;
@@ -0,0 +1,19 @@
+-- 冪等キーテーブル追加のマイグレーション
+\c point_service_db;
+
+-- 冪等キー（ポイント付与・使用の再送時に保存済みの結果を返すため）
+CREATE TABLE IF NOT EXISTS point_idempotency_keys (
+    user_id UUID NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    operation VARCHAR(20) NOT NULL, -- 'EARN' or 'USE'
+    request_hash VARCHAR(64) NOT NULL, -- 要求内容の SHA-256（同じキーの異なる要求を検出）
+    outcome VARCHAR(30), -- 'SUCCEEDED', 'INSUFFICIENT_BALANCE' or 'POINTS_NOT_FOUND'
+    balance INTEGER,
+    last_updated TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (user_id, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_point_idempotency_keys_created_at ON point_idempotency_keys(created_at);
+
+SELECT 'point_idempotency_keys added' AS status;
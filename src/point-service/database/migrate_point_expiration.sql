@@ -0,0 +1,16 @@
+-- ポイント失効処理のマイグレーション
+-- 進捗テーブルと期限切れロット走査用の部分インデックスを追加する
+\c point_service_db;
+
+-- ポイント失効処理の進捗（処理済みの最後のロットの (expires_at, id)）
+CREATE TABLE IF NOT EXISTS point_expiration_checkpoint (
+    name VARCHAR(50) PRIMARY KEY,
+    last_expires_at TIMESTAMP NOT NULL,
+    last_history_id BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT NOW()
+);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_point_history_earn_expires ON point_history(expires_at, id)
+    WHERE transaction_type = 'EARN' AND expires_at IS NOT NULL;
+
+SELECT 'point expiration schema added' AS status;
@@ -0,0 +1,25 @@
+-- 残高変更通知トリガー追加のマイグレーション
+-- 複数レプリカで残高キャッシュを使う場合は POINT_CACHE_LISTEN_ENABLED=true と合わせて適用する
+\c point_service_db;
+
+-- 残高変更通知（各レプリカの残高キャッシュを無効化するため NOTIFY points_changed を送信）
+-- ペイロード: user_id,balance,送信時刻（エポックミリ秒）
+CREATE OR REPLACE FUNCTION notify_points_changed() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('points_changed', OLD.user_id::text || ',,' ||
+            (EXTRACT(EPOCH FROM clock_timestamp()) * 1000)::bigint);
+        RETURN OLD;
+    END IF;
+    PERFORM pg_notify('points_changed', NEW.user_id::text || ',' || NEW.balance || ',' ||
+        (EXTRACT(EPOCH FROM clock_timestamp()) * 1000)::bigint);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS points_changed_notify ON points;
+CREATE TRIGGER points_changed_notify
+    AFTER INSERT OR UPDATE OR DELETE ON points
+    FOR EACH ROW EXECUTE FUNCTION notify_points_changed();
+
+SELECT 'points_changed trigger added' AS status;
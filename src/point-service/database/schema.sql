@@ -5,6 +5,7 @@
 CREATE TABLE IF NOT EXISTS points (
     user_id UUID PRIMARY KEY,
     balance INTEGER NOT NULL DEFAULT 0,
+    history_count INTEGER NOT NULL DEFAULT 0, -- 履歴件数（ポイント操作と同一SQL文で更新、COUNT(*) の代わりに使用）
     last_updated TIMESTAMP DEFAULT NOW()
 );
 
@@ -13,15 +14,45 @@ CREATE TABLE IF NOT EXISTS point_history (
     id SERIAL PRIMARY KEY,
     user_id UUID NOT NULL,
     amount INTEGER NOT NULL,
-    transaction_type VARCHAR(20) NOT NULL, -- 'EARN' or 'USE'
+    transaction_type VARCHAR(20) NOT NULL, -- 'EARN', 'USE' or 'EXPIRE'
     description TEXT,
     created_at TIMESTAMP DEFAULT NOW(),
     expires_at TIMESTAMP,
+    balance_after INTEGER, -- 取引後の残高（ポイント操作と同一SQL文で記録）
     FOREIGN KEY (user_id) REFERENCES points(user_id) ON DELETE CASCADE
 );
 
+-- ポイント失効処理の進捗（処理済みの最後のロットの (expires_at, id)）
+CREATE TABLE IF NOT EXISTS point_expiration_checkpoint (
+    name VARCHAR(50) PRIMARY KEY,
+    last_expires_at TIMESTAMP NOT NULL,
+    last_history_id BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT NOW()
+);
+
+-- 冪等キー（ポイント付与・使用の再送時に保存済みの結果を返すため）
+CREATE TABLE IF NOT EXISTS point_idempotency_keys (
+    user_id UUID NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    operation VARCHAR(20) NOT NULL, -- 'EARN' or 'USE'
+    request_hash VARCHAR(64) NOT NULL, -- 要求内容の SHA-256（同じキーの異なる要求を検出）
+    outcome VARCHAR(30), -- 'SUCCEEDED', 'INSUFFICIENT_BALANCE' or 'POINTS_NOT_FOUND'
+    balance INTEGER,
+    last_updated TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (user_id, idempotency_key)
+);
+
 -- インデックス作成
-CREATE INDEX idx_point_history_user_id ON point_history(user_id);
+-- 履歴のキーセットページネーション用（user_id 単独の検索もこのインデックスで賄う）
+CREATE INDEX idx_point_history_user_created_id ON point_history(user_id, created_at DESC, id DESC);
 CREATE INDEX idx_point_history_created_at ON point_history(created_at);
+-- 失効処理で期限切れのロット（有効期限付きの EARN 履歴）を期限順に走査するための部分インデックス
+CREATE INDEX idx_point_history_earn_expires ON point_history(expires_at, id)
+    WHERE transaction_type = 'EARN' AND expires_at IS NOT NULL;
+-- 保持期間を過ぎた冪等キーの削除用
+CREATE INDEX idx_point_idempotency_keys_created_at ON point_idempotency_keys(created_at);
+
+-- 残高変更通知トリガーは複数レプリカで残高キャッシュを使う場合のみ migrate_points_notify.sql で追加する
 
 SELECT 'Point Service Schema created successfully' AS status;
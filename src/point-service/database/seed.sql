@@ -21,6 +21,18 @@ INSERT INTO point_history (user_id, amount, transaction_type, description, creat
 ('8a17f2c2-c1c8-4fee-ae95-8a483127bf1f', 1000, 'EARN', '新規登録ボーナス', NOW() - INTERVAL '120 days', NOW() + INTERVAL '60 days'),
 ('8a17f2c2-c1c8-4fee-ae95-8a483127bf1f', 250, 'USE', '商品購入', NOW() - INTERVAL '10 days', NULL);
 
+-- 取引後残高を補完（現在の残高を起点に新しい履歴から遡って計算）
+UPDATE point_history h SET balance_after = s.balance_after FROM (
+    SELECT ph.id, p.balance - COALESCE(SUM(CASE WHEN ph.transaction_type = 'EARN' THEN ABS(ph.amount) ELSE -ABS(ph.amount) END)
+        OVER (PARTITION BY ph.user_id ORDER BY ph.created_at DESC, ph.id DESC
+              ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING), 0) AS balance_after
+    FROM point_history ph JOIN points p ON p.user_id = ph.user_id
+) s
+WHERE h.id = s.id AND h.balance_after IS NULL;
+
+-- 履歴件数を補完
+UPDATE points p SET history_count = (SELECT COUNT(*) FROM point_history h WHERE h.user_id = p.user_id);
+
 SELECT 'Point Service Seed data inserted successfully' AS status;
 SELECT COUNT(*) AS points_count FROM points;
 SELECT COUNT(*) AS history_count FROM point_history;
@@ -0,0 +1,219 @@
+package com.example.microservices.point.integration;
+
+import com.example.microservices.point.model.ExpirationChunkResult;
+import com.example.microservices.point.repository.PointExpirationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PointExpirationRepositoryのIntegration Test
+ * 有効期限の早いロットから消費する（FIFO）前提での失効量の計算と、
+ * チェックポイントからの再開を確認します。
+ */
+class PointExpirationRepositoryIT extends BaseIntegrationTest {
+
+    private static final String CHECKPOINT = "test";
+    private static final UUID PARTIALLY_USED = UUID.fromString("323e4567-e89b-12d3-a456-426614174000");
+    private static final UUID UNUSED = UUID.fromString("323e4567-e89b-12d3-a456-426614174001");
+    private static final UUID MIXED = UUID.fromString("323e4567-e89b-12d3-a456-426614174002");
+    private static final UUID USED_BEFORE_LOT = UUID.fromString("323e4567-e89b-12d3-a456-426614174003");
+
+    private PointExpirationRepository pointExpirationRepository;
+
+    private long partiallyUsedLotA;
+    private long partiallyUsedLotB;
+    private long unusedLotA;
+    private long unusedLotB;
+
+    @BeforeEach
+    void setUpRepository() throws Exception {
+        pointExpirationRepository = newRepository();
+
+        LocalDateTime now = LocalDateTime.now();
+
+        // 100（3日前に期限切れ）+ 50（2日前に期限切れ）+ 80（期限前）を付与し、120 を使用（残高 110）
+        // FIFO では使用分が 100 のロットを使い切り、50 のロットから 20 を消費するため、失効するのは 30
+        insertPoints(PARTIALLY_USED, 110, 4);
+        partiallyUsedLotA = insertHistory(PARTIALLY_USED, 100, "EARN", now.minusDays(3), 100);
+        partiallyUsedLotB = insertHistory(PARTIALLY_USED, 50, "EARN", now.minusDays(2), 150);
+        insertHistory(PARTIALLY_USED, 80, "EARN", now.plusDays(30), 230);
+        insertHistory(PARTIALLY_USED, 120, "USE", null, 110);
+
+        // 未使用のまま 70（3日前）と 30（1日前）が期限切れ（同一チャンク内で続けて失効する）
+        insertPoints(UNUSED, 100, 2);
+        unusedLotA = insertHistory(UNUSED, 70, "EARN", now.minusDays(3).plusHours(1), 70);
+        unusedLotB = insertHistory(UNUSED, 30, "EARN", now.minusDays(1), 100);
+    }
+
+    @Test
+    void testExpireChunk_ShouldExpireOnlyUnconsumedRemainderInFifoOrder() throws SQLException {
+        // Act
+        ExpirationChunkResult result = pointExpirationRepository.expireChunk(CHECKPOINT, 100, 0);
+
+        // Assert
+        assertEquals(4, result.getLotsScanned());
+        assertEquals(3, result.getLotsExpired());
+        assertEquals(30 + 70 + 30, result.getPointsExpired());
+        assertTrue(result.getAffectedUserIds().contains(PARTIALLY_USED));
+        assertTrue(result.getAffectedUserIds().contains(UNUSED));
+
+        assertEquals(80, queryInt("SELECT balance FROM points WHERE user_id = ?", PARTIALLY_USED));
+        assertEquals(30, queryInt("SELECT SUM(amount) FROM point_history WHERE user_id = ? AND transaction_type = 'EXPIRE'", PARTIALLY_USED));
+        assertEquals(0, queryInt("SELECT balance FROM points WHERE user_id = ?", UNUSED));
+        assertEquals(2, queryInt("SELECT COUNT(*) FROM point_history WHERE user_id = ? AND transaction_type = 'EXPIRE'", UNUSED));
+
+        // 履歴件数・取引後残高も失効分を反映している
+        assertEquals(5, queryInt("SELECT history_count FROM points WHERE user_id = ?", PARTIALLY_USED));
+        assertEquals(4, queryInt("SELECT history_count FROM points WHERE user_id = ?", UNUSED));
+        assertEquals(0, queryInt("SELECT MIN(balance_after) FROM point_history WHERE user_id = ? AND transaction_type = 'EXPIRE'", UNUSED));
+    }
+
+    @Test
+    void testExpireChunk_WithNonExpiringPointsUsedFirst_ShouldExpireWholeLaterLot() throws SQLException {
+        // Arrange: 有効期限なしの 1000 を付与して 500 を使用した後、期限切れになる 100 を付与
+        LocalDateTime now = LocalDateTime.now();
+        insertPoints(MIXED, 600, 3);
+        insertHistory(MIXED, 1000, "EARN", null, 1000);
+        insertHistory(MIXED, 500, "USE", null, 500);
+        insertHistory(MIXED, 100, "EARN", now.minusDays(1), 600);
+
+        // Act
+        pointExpirationRepository.expireChunk(CHECKPOINT, 100, 0);
+
+        // Assert: 使用は付与前のため後から付与したロットを消費しておらず、100 がすべて失効する
+        assertEquals(100, queryInt("SELECT SUM(amount) FROM point_history WHERE user_id = ? AND transaction_type = 'EXPIRE'", MIXED));
+        assertEquals(500, queryInt("SELECT balance FROM points WHERE user_id = ?", MIXED));
+    }
+
+    @Test
+    void testExpireChunk_WithUseBeforeLot_ShouldNotCountItAgainstLot() throws SQLException {
+        // Arrange: 期限の遅い 100 を付与して全額使用した後、期限切れになる 100 を付与し、そこから 40 を使用
+        LocalDateTime now = LocalDateTime.now();
+        insertPoints(USED_BEFORE_LOT, 60, 4);
+        insertHistory(USED_BEFORE_LOT, 100, "EARN", now.plusDays(30), 100);
+        insertHistory(USED_BEFORE_LOT, 100, "USE", null, 0);
+        insertHistory(USED_BEFORE_LOT, 100, "EARN", now.minusDays(1), 100);
+        insertHistory(USED_BEFORE_LOT, 40, "USE", null, 60);
+
+        // Act
+        pointExpirationRepository.expireChunk(CHECKPOINT, 100, 0);
+
+        // Assert: 付与前の使用は数えず、付与後の使用 40 だけを差し引いた 60 が失効する
+        assertEquals(60, queryInt("SELECT SUM(amount) FROM point_history WHERE user_id = ? AND transaction_type = 'EXPIRE'", USED_BEFORE_LOT));
+        assertEquals(0, queryInt("SELECT balance FROM points WHERE user_id = ?", USED_BEFORE_LOT));
+    }
+
+    @Test
+    void testExpireChunk_ShouldResumeFromCheckpoint() throws Exception {
+        // Act: 1ロットずつ処理し、途中で別インスタンス（再起動を想定）に切り替える
+        ExpirationChunkResult first = pointExpirationRepository.expireChunk(CHECKPOINT, 1, 0);
+        ExpirationChunkResult second = pointExpirationRepository.expireChunk(CHECKPOINT, 1, 0);
+
+        PointExpirationRepository restarted = newRepository();
+        ExpirationChunkResult third = restarted.expireChunk(CHECKPOINT, 1, 0);
+        ExpirationChunkResult fourth = restarted.expireChunk(CHECKPOINT, 1, 0);
+        ExpirationChunkResult fifth = restarted.expireChunk(CHECKPOINT, 1, 0);
+
+        // Assert: (expires_at, id) 順に1ロットずつ進み、期限前のロットには到達しない
+        assertEquals(partiallyUsedLotA, first.getCheckpointHistoryId());
+        assertEquals(0, first.getLotsExpired());
+        assertEquals(unusedLotA, second.getCheckpointHistoryId());
+        assertEquals(partiallyUsedLotB, third.getCheckpointHistoryId());
+        assertEquals(unusedLotB, fourth.getCheckpointHistoryId());
+        assertEquals(0, fifth.getLotsScanned());
+
+        assertEquals(unusedLotB, queryLong("SELECT last_history_id FROM point_expiration_checkpoint WHERE name = ?", CHECKPOINT));
+
+        // チャンクを分けても一度に処理した場合と同じ結果になる
+        assertEquals(80, queryInt("SELECT balance FROM points WHERE user_id = ?", PARTIALLY_USED));
+        assertEquals(0, queryInt("SELECT balance FROM points WHERE user_id = ?", UNUSED));
+    }
+
+    @Test
+    void testExpireChunk_WhenRunAgain_ShouldNotExpireTwice() throws SQLException {
+        // Act
+        pointExpirationRepository.expireChunk(CHECKPOINT, 100, 0);
+        ExpirationChunkResult again = pointExpirationRepository.expireChunk(CHECKPOINT, 100, 0);
+
+        // Assert
+        assertEquals(0, again.getLotsScanned());
+        assertEquals(1, queryInt("SELECT COUNT(*) FROM point_history WHERE user_id = ? AND transaction_type = 'EXPIRE'", PARTIALLY_USED));
+        assertEquals(80, queryInt("SELECT balance FROM points WHERE user_id = ?", PARTIALLY_USED));
+    }
+
+    @Test
+    void testExpireChunk_WithinGracePeriod_ShouldSkipLots() throws SQLException {
+        // Act: 4日分の猶予を指定すると、どのロットもまだ処理対象にならない
+        ExpirationChunkResult result = pointExpirationRepository.expireChunk(CHECKPOINT, 100, 4 * 24 * 60 * 60);
+
+        // Assert
+        assertEquals(0, result.getLotsScanned());
+        assertEquals(110, queryInt("SELECT balance FROM points WHERE user_id = ?", PARTIALLY_USED));
+        assertEquals(100, queryInt("SELECT balance FROM points WHERE user_id = ?", UNUSED));
+    }
+
+    private PointExpirationRepository newRepository() throws Exception {
+        PointExpirationRepository repository = new PointExpirationRepository();
+
+        // リフレクションを使用してDataSourceをインジェクト
+        Field dataSourceField = PointExpirationRepository.class.getDeclaredField("dataSource");
+        dataSourceField.setAccessible(true);
+        dataSourceField.set(repository, getDataSource());
+        return repository;
+    }
+
+    private void insertPoints(UUID userId, int balance, int historyCount) throws SQLException {
+        String sql = "INSERT INTO points (user_id, balance, history_count, last_updated) VALUES (?, ?, ?, NOW())";
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, userId);
+            stmt.setInt(2, balance);
+            stmt.setInt(3, historyCount);
+            stmt.executeUpdate();
+        }
+    }
+
+    private long insertHistory(UUID userId, int amount, String type, LocalDateTime expiresAt, int balanceAfter) throws SQLException {
+        String sql = "INSERT INTO point_history (user_id, amount, transaction_type, description, created_at, expires_at, balance_after) " +
+                     "VALUES (?, ?, ?, ?, NOW(), ?, ?) RETURNING id";
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, userId);
+            stmt.setInt(2, amount);
+            stmt.setString(3, type);
+            stmt.setString(4, type + " " + amount);
+            stmt.setTimestamp(5, expiresAt != null ? Timestamp.valueOf(expiresAt) : null);
+            stmt.setInt(6, balanceAfter);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getLong("id");
+            }
+        }
+    }
+
+    private int queryInt(String sql, Object parameter) throws SQLException {
+        return (int) queryLong(sql, parameter);
+    }
+
+    private long queryLong(String sql, Object parameter) throws SQLException {
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, parameter);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getLong(1);
+            }
+        }
+    }
+}
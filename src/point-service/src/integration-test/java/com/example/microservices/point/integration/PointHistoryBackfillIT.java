@@ -0,0 +1,93 @@
+package com.example.microservices.point.integration;
+
+import com.example.microservices.point.repository.PointHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PointHistoryRepository#backfillBalanceAfter のIntegration Test
+ * ユーザー単位のバッチで全ユーザーの取引後残高が補完されることを確認します。
+ */
+class PointHistoryBackfillIT extends BaseIntegrationTest {
+
+    private static final UUID USER_A = UUID.fromString("223e4567-e89b-12d3-a456-426614175001");
+    private static final UUID USER_B = UUID.fromString("223e4567-e89b-12d3-a456-426614175002");
+    private static final UUID USER_C = UUID.fromString("223e4567-e89b-12d3-a456-426614175003");
+
+    private PointHistoryRepository pointHistoryRepository;
+
+    @BeforeEach
+    void setUpRepository() throws Exception {
+        pointHistoryRepository = new PointHistoryRepository();
+
+        // リフレクションを使用してDataSourceをインジェクト
+        Field dataSourceField = PointHistoryRepository.class.getDeclaredField("dataSource");
+        dataSourceField.setAccessible(true);
+        dataSourceField.set(pointHistoryRepository, getDataSource());
+    }
+
+    @Test
+    void testBackfillBalanceAfter_WithBatchSizeOne_ShouldFillEveryUser() throws Exception {
+        // Arrange: 残高300（+500, -200）、残高50（+50）、残高0（+100, -100）
+        insertUser(USER_A, 300, new int[]{500, -200});
+        insertUser(USER_B, 50, new int[]{50});
+        insertUser(USER_C, 0, new int[]{100, -100});
+
+        // Act
+        int updated = pointHistoryRepository.backfillBalanceAfter(1);
+
+        // Assert
+        assertEquals(5, updated);
+        assertEquals(List.of(500, 300), balanceAfter(USER_A));
+        assertEquals(List.of(50), balanceAfter(USER_B));
+        assertEquals(List.of(100, 0), balanceAfter(USER_C));
+        assertEquals(0, pointHistoryRepository.backfillBalanceAfter(1));
+    }
+
+    private void insertUser(UUID userId, int balance, int[] amounts) throws SQLException {
+        try (Connection conn = getDataSource().getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO points (user_id, balance, history_count) VALUES (?, ?, ?)")) {
+                stmt.setObject(1, userId);
+                stmt.setInt(2, balance);
+                stmt.setInt(3, amounts.length);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO point_history (user_id, amount, transaction_type, description) VALUES (?, ?, ?, 'backfill')")) {
+                for (int amount : amounts) {
+                    stmt.setObject(1, userId);
+                    stmt.setInt(2, Math.abs(amount));
+                    stmt.setString(3, amount >= 0 ? "EARN" : "USE");
+                    stmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private List<Integer> balanceAfter(UUID userId) throws SQLException {
+        List<Integer> balances = new ArrayList<>();
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT balance_after FROM point_history WHERE user_id = ? ORDER BY id")) {
+            stmt.setObject(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    balances.add((Integer) rs.getObject("balance_after"));
+                }
+            }
+        }
+        return balances;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.microservices.point.integration;
+
+import com.example.microservices.point.model.Point;
+import com.example.microservices.point.repository.PointLedgerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PointLedgerRepositoryのIntegration Test
+ * 並行したポイント付与・使用で更新が失われないこと、残高と履歴が一致することを確認します。
+ */
+class PointLedgerRepositoryIT extends BaseIntegrationTest {
+
+    private static final UUID USER_WITH_BALANCE = UUID.fromString("223e4567-e89b-12d3-a456-426614174000");
+    private static final UUID USER_WITHOUT_POINTS = UUID.fromString("223e4567-e89b-12d3-a456-426614174099");
+
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 50;
+
+    private PointLedgerRepository pointLedgerRepository;
+
+    @BeforeEach
+    void setUpRepository() throws Exception {
+        pointLedgerRepository = new PointLedgerRepository();
+
+        // リフレクションを使用してDataSourceをインジェクト
+        Field dataSourceField = PointLedgerRepository.class.getDeclaredField("dataSource");
+        dataSourceField.setAccessible(true);
+        dataSourceField.set(pointLedgerRepository, getDataSource());
+    }
+
+    @Test
+    void testConcurrentEarnAndUse_ShouldNotLoseUpdates() throws Exception {
+        // Arrange: 偶数スレッドは付与、奇数スレッドは使用
+        int earnAmount = 10;
+        int useAmount = 7;
+
+        // Act
+        List<Integer> results = runConcurrently(thread -> {
+            int succeededUses = 0;
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                if (thread % 2 == 0) {
+                    pointLedgerRepository.earn(USER_WITH_BALANCE, earnAmount, "earn " + thread + "-" + i, null);
+                } else if (pointLedgerRepository.use(USER_WITH_BALANCE, useAmount, "use " + thread + "-" + i).isPresent()) {
+                    succeededUses++;
+                }
+            }
+            return succeededUses;
+        });
+
+        // Assert
+        int earns = (THREADS / 2) * OPERATIONS_PER_THREAD;
+        int uses = results.stream().mapToInt(Integer::intValue).sum();
+        int expectedBalance = 1000 + earns * earnAmount - uses * useAmount;
+
+        assertEquals(expectedBalance, queryInt("SELECT balance FROM points WHERE user_id = ?"));
+        assertEquals(expectedBalance, queryInt(
+                "SELECT SUM(CASE WHEN transaction_type = 'EARN' THEN amount ELSE -amount END) FROM point_history WHERE user_id = ?"));
+        assertEquals(1 + earns + uses, queryInt("SELECT COUNT(*) FROM point_history WHERE user_id = ?"));
+        assertEquals(1 + earns + uses, queryInt("SELECT history_count FROM points WHERE user_id = ?"));
+        assertBalanceAfterChain(USER_WITH_BALANCE);
+    }
+
+    @Test
+    void testConcurrentUse_ShouldNeverOverdraw() throws Exception {
+        // Arrange: 残高1000に対して30ずつ、合計で残高を超える回数の使用を並行して要求
+        int useAmount = 30;
+
+        // Act
+        List<Integer> results = runConcurrently(thread -> {
+            int succeededUses = 0;
+            for (int i = 0; i < 5; i++) {
+                if (pointLedgerRepository.use(USER_WITH_BALANCE, useAmount, "use " + thread + "-" + i).isPresent()) {
+                    succeededUses++;
+                }
+            }
+            return succeededUses;
+        });
+
+        // Assert: 1000 / 30 = 33 回だけ成功し、残高は負にならない
+        int uses = results.stream().mapToInt(Integer::intValue).sum();
+        assertEquals(1000 / useAmount, uses);
+        assertEquals(1000 - uses * useAmount, queryInt("SELECT balance FROM points WHERE user_id = ?"));
+        assertEquals(0, queryInt("SELECT COUNT(*) FROM point_history WHERE user_id = ? AND balance_after < 0"));
+        assertBalanceAfterChain(USER_WITH_BALANCE);
+    }
+
+    @Test
+    void testConcurrentEarn_ForNewUser_ShouldCreateSingleBalance() throws Exception {
+        // Act: ポイント残高がないユーザーへの並行付与（INSERT ... ON CONFLICT の競合）
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                pointLedgerRepository.earn(USER_WITHOUT_POINTS, 1, "earn " + thread + "-" + i, null);
+            }
+            return 0;
+        });
+
+        // Assert
+        int total = THREADS * OPERATIONS_PER_THREAD;
+        assertEquals(1, queryInt("SELECT COUNT(*) FROM points WHERE user_id = ?", USER_WITHOUT_POINTS));
+        assertEquals(total, queryInt("SELECT balance FROM points WHERE user_id = ?", USER_WITHOUT_POINTS));
+        assertEquals(total, queryInt("SELECT SUM(amount) FROM point_history WHERE user_id = ?", USER_WITHOUT_POINTS));
+        assertBalanceAfterChain(USER_WITHOUT_POINTS);
+    }
+
+    @Test
+    void testUse_WithInsufficientBalance_ShouldNotWriteHistory() throws SQLException {
+        // Act
+        Optional<Point> result = pointLedgerRepository.use(USER_WITH_BALANCE, 1001, "too much");
+
+        // Assert
+        assertFalse(result.isPresent());
+        assertEquals(1000, queryInt("SELECT balance FROM points WHERE user_id = ?"));
+        assertEquals(1, queryInt("SELECT COUNT(*) FROM point_history WHERE user_id = ?"));
+    }
+
+    private interface Operation {
+        int run(int thread) throws SQLException;
+    }
+
+    /**
+     * 全スレッドを同時に開始して操作を実行し、各スレッドの戻り値を返します
+     */
+    private List<Integer> runConcurrently(Operation operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                Callable<Integer> task = () -> {
+                    start.await();
+                    return operation.run(thread);
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+
+            List<Integer> results = new ArrayList<>();
+            for (Future<Integer> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 履歴を記録順に辿り、各履歴の取引後残高が直前の残高に増減を反映した値であることを確認します
+     */
+    private void assertBalanceAfterChain(UUID userId) throws SQLException {
+        String sql = "SELECT amount, transaction_type, balance_after FROM point_history WHERE user_id = ? ORDER BY id";
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                int balance = 0;
+                while (rs.next()) {
+                    int amount = rs.getInt("amount");
+                    balance += "EARN".equals(rs.getString("transaction_type")) ? amount : -amount;
+                    assertEquals(balance, rs.getInt("balance_after"));
+                }
+                assertEquals(balance, queryInt("SELECT balance FROM points WHERE user_id = ?", userId));
+            }
+        }
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        return queryInt(sql, USER_WITH_BALANCE);
+    }
+
+    private int queryInt(String sql, UUID userId) throws SQLException {
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.microservices.point.integration;
+
+import com.example.microservices.point.cache.PointBalanceCache;
+import com.example.microservices.point.idempotency.IdempotencyKeyCache;
+import com.example.microservices.point.model.IdempotencyRecord;
+import com.example.microservices.point.repository.PointHistoryRepository;
+import com.example.microservices.point.repository.PointIdempotencyRepository;
+import com.example.microservices.point.repository.PointLedgerRepository;
+import com.example.microservices.point.repository.PointRepository;
+import com.example.microservices.point.service.IdempotencyKeyMismatchException;
+import com.example.microservices.point.service.PointService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 冪等キー付きのポイント付与・使用のIntegration Test
+ * 同じキーでの再送が残高を変更せずに保存済みの結果を返すこと、
+ * 同じキーを異なる内容の要求に使った場合に拒否されることを確認します。
+ */
+class PointServiceIdempotencyIT extends BaseIntegrationTest {
+
+    private static final UUID TEST_USER = UUID.fromString("223e4567-e89b-12d3-a456-426614174000");
+
+    private PointService pointService;
+
+    @BeforeEach
+    void setUpService() throws Exception {
+        pointService = newPointService();
+    }
+
+    @Test
+    void testEarnPoints_WithSameKey_ShouldApplyOnce() throws SQLException {
+        // Act
+        IdempotencyRecord first = pointService.earnPoints(TEST_USER, "earn-1", 100, "campaign", null);
+        IdempotencyRecord replay = pointService.earnPoints(TEST_USER, "earn-1", 100, "campaign", null);
+
+        // Assert
+        assertEquals(IdempotencyRecord.Outcome.SUCCEEDED, first.getOutcome());
+        assertFalse(first.isReplayed());
+        assertEquals(1100, first.getBalance());
+
+        assertTrue(replay.isReplayed());
+        assertEquals(IdempotencyRecord.Outcome.SUCCEEDED, replay.getOutcome());
+        assertEquals(1100, replay.getBalance());
+
+        assertEquals(1100, queryInt("SELECT balance FROM points WHERE user_id = ?"));
+        assertEquals(2, queryInt("SELECT COUNT(*) FROM point_history WHERE user_id = ?"));
+    }
+
+    @Test
+    void testEarnPoints_ReplayAfterRestart_ShouldReturnStoredResultFromDatabase() throws Exception {
+        // Arrange
+        pointService.earnPoints(TEST_USER, "earn-1", 100, "campaign", null);
+
+        // Act: 直近キーのキャッシュを持たない別インスタンスから再送
+        IdempotencyRecord replay = newPointService().earnPoints(TEST_USER, "earn-1", 100, "campaign", null);
+
+        // Assert
+        assertTrue(replay.isReplayed());
+        assertEquals(1100, replay.getBalance());
+        assertEquals(1100, queryInt("SELECT balance FROM points WHERE user_id = ?"));
+        assertEquals(2, queryInt("SELECT COUNT(*) FROM point_history WHERE user_id = ?"));
+    }
+
+    @Test
+    void testUsePoints_WithInsufficientBalance_ShouldReplayStoredOutcome() throws SQLException {
+        // Act
+        IdempotencyRecord first = pointService.usePoints(TEST_USER, "use-1", 5000, "purchase");
+        // 残高が増えた後でも、同じキーの再送は最初の結果を返す
+        pointService.earnPoints(TEST_USER, 10000, "top up");
+        IdempotencyRecord replay = pointService.usePoints(TEST_USER, "use-1", 5000, "purchase");
+
+        // Assert
+        assertEquals(IdempotencyRecord.Outcome.INSUFFICIENT_BALANCE, first.getOutcome());
+        assertTrue(replay.isReplayed());
+        assertEquals(IdempotencyRecord.Outcome.INSUFFICIENT_BALANCE, replay.getOutcome());
+        assertEquals(11000, queryInt("SELECT balance FROM points WHERE user_id = ?"));
+        assertEquals(0, queryInt("SELECT COUNT(*) FROM point_history WHERE user_id = ? AND transaction_type = 'USE'"));
+    }
+
+    @Test
+    void testEarnPoints_WithSameKeyAndDifferentPayload_ShouldBeRejected() throws Exception {
+        // Arrange
+        pointService.earnPoints(TEST_USER, "earn-1", 100, "campaign", null);
+
+        // Act & Assert: キャッシュ経由・DB経由のどちらでも拒否される
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> pointService.earnPoints(TEST_USER, "earn-1", 200, "campaign", null));
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> newPointService().earnPoints(TEST_USER, "earn-1", 100, "another campaign", null));
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> newPointService().usePoints(TEST_USER, "earn-1", 100, "campaign"));
+
+        assertEquals(1100, queryInt("SELECT balance FROM points WHERE user_id = ?"));
+    }
+
+    @Test
+    void testEarnPoints_WithInvalidKey_ShouldBeRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> pointService.earnPoints(TEST_USER, " ", 100, "campaign", null));
+        assertThrows(IllegalArgumentException.class,
+                () -> pointService.earnPoints(TEST_USER, new String(new char[256]).replace('\0', 'k'), 100, "campaign", null));
+    }
+
+    @Test
+    void testEarnPoints_WithSameKeyConcurrently_ShouldApplyOnce() throws Exception {
+        // Arrange: 各スレッドはキャッシュを共有しない別インスタンス（別ノードへの再送を想定）
+        int threads = 8;
+        List<PointService> services = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            services.add(newPointService());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act
+        List<IdempotencyRecord> results = new ArrayList<>();
+        try {
+            List<Future<IdempotencyRecord>> futures = new ArrayList<>();
+            for (PointService service : services) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return service.earnPoints(TEST_USER, "earn-concurrent", 100, "campaign", null);
+                }));
+            }
+            start.countDown();
+            for (Future<IdempotencyRecord> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        assertEquals(1, results.stream().filter(record -> !record.isReplayed()).count());
+        for (IdempotencyRecord record : results) {
+            assertEquals(IdempotencyRecord.Outcome.SUCCEEDED, record.getOutcome());
+            assertEquals(1100, record.getBalance());
+        }
+        assertEquals(1100, queryInt("SELECT balance FROM points WHERE user_id = ?"));
+        assertEquals(2, queryInt("SELECT COUNT(*) FROM point_history WHERE user_id = ?"));
+    }
+
+    private PointService newPointService() throws Exception {
+        PointService service = new PointService();
+        inject(service, "pointRepository", withDataSource(new PointRepository()));
+        inject(service, "pointHistoryRepository", withDataSource(new PointHistoryRepository()));
+        inject(service, "pointLedgerRepository", withDataSource(new PointLedgerRepository()));
+        inject(service, "pointIdempotencyRepository", withDataSource(new PointIdempotencyRepository()));
+        inject(service, "pointBalanceCache", new PointBalanceCache());
+        inject(service, "idempotencyKeyCache", new IdempotencyKeyCache());
+        return service;
+    }
+
+    private <T> T withDataSource(T repository) throws Exception {
+        inject(repository, "dataSource", getDataSource());
+        return repository;
+    }
+
+    // リフレクションを使用して依存をインジェクト
+    private void inject(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, TEST_USER);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- Integration Test用のデータクリーンアップ
+DELETE FROM point_idempotency_keys;
+DELETE FROM point_expiration_checkpoint;
+DELETE FROM point_history;
+DELETE FROM points;
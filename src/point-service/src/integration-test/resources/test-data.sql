@@ -0,0 +1,9 @@
+-- Integration Test用のテストデータ
+INSERT INTO points (user_id, balance, history_count, last_updated)
+VALUES
+    ('223e4567-e89b-12d3-a456-426614174000', 1000, 1, CURRENT_TIMESTAMP),
+    ('223e4567-e89b-12d3-a456-426614174001', 0, 0, CURRENT_TIMESTAMP);
+
+INSERT INTO point_history (user_id, amount, transaction_type, description, created_at, balance_after)
+VALUES
+    ('223e4567-e89b-12d3-a456-426614174000', 1000, 'EARN', 'Initial grant', CURRENT_TIMESTAMP, 1000);
@@ -0,0 +1,45 @@
+-- Integration Test用のスキーマ
+CREATE TABLE IF NOT EXISTS points (
+    user_id UUID PRIMARY KEY,
+    balance INTEGER NOT NULL DEFAULT 0,
+    history_count INTEGER NOT NULL DEFAULT 0,
+    last_updated TIMESTAMP DEFAULT NOW()
+);
+
+CREATE TABLE IF NOT EXISTS point_history (
+    id SERIAL PRIMARY KEY,
+    user_id UUID NOT NULL,
+    amount INTEGER NOT NULL,
+    transaction_type VARCHAR(20) NOT NULL,
+    description TEXT,
+    created_at TIMESTAMP DEFAULT NOW(),
+    expires_at TIMESTAMP,
+    balance_after INTEGER,
+    FOREIGN KEY (user_id) REFERENCES points(user_id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS point_expiration_checkpoint (
+    name VARCHAR(50) PRIMARY KEY,
+    last_expires_at TIMESTAMP NOT NULL,
+    last_history_id BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT NOW()
+);
+
+CREATE TABLE IF NOT EXISTS point_idempotency_keys (
+    user_id UUID NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    operation VARCHAR(20) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    outcome VARCHAR(30),
+    balance INTEGER,
+    last_updated TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (user_id, idempotency_key)
+);
+
+-- インデックス作成
+CREATE INDEX IF NOT EXISTS idx_point_history_user_created_id ON point_history(user_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_point_history_created_at ON point_history(created_at);
+CREATE INDEX IF NOT EXISTS idx_point_history_earn_expires ON point_history(expires_at, id)
+    WHERE transaction_type = 'EARN' AND expires_at IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_point_idempotency_keys_created_at ON point_idempotency_keys(created_at);
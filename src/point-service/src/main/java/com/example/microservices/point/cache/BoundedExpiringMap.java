@@ -0,0 +1,155 @@
+package com.example.microservices.point.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 件数上限と有効期限を持つキャッシュ用のマップ
+ * 登録のたびに巡回カーソルで一定件数だけ期限切れを確認して削除し（全件走査はしない）、
+ * 上限に達している場合はカーソル位置からランダムな間隔で取り出したサンプルの中で
+ * 最も早く期限切れになるエントリを追い出す。
+ */
+public class BoundedExpiringMap<K, V> {
+
+    // 登録1件あたりに期限切れを確認するエントリ数
+    private static final int PURGE_BATCH_SIZE = 4;
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+    // サンプル間で読み飛ばすエントリ数の上限
+    private static final int MAX_SAMPLE_SKIP = 4;
+
+    /**
+     * 期限切れの削除・追い出しの通知（remove/clear では呼ばない）
+     */
+    public interface RemovalListener<K, V> {
+        void onRemoval(K key, V value, boolean expired);
+    }
+
+    private final ConcurrentHashMap<K, V> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final ToLongFunction<V> expiresAtMillis;
+    private final RemovalListener<K, V> listener;
+
+    // 期限切れの削除と追い出しのサンプリングで共有する巡回カーソル
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+    private Iterator<Map.Entry<K, V>> cursor;
+
+    public BoundedExpiringMap(int maxEntries, ToLongFunction<V> expiresAtMillis) {
+        this(maxEntries, expiresAtMillis, (key, value, expired) -> { });
+    }
+
+    public BoundedExpiringMap(int maxEntries, ToLongFunction<V> expiresAtMillis, RemovalListener<K, V> listener) {
+        this.maxEntries = maxEntries;
+        this.expiresAtMillis = expiresAtMillis;
+        this.listener = listener;
+    }
+
+    public V get(K key) {
+        return entries.get(key);
+    }
+
+    public void put(K key, V value, long now) {
+        beforeInsert(key, now);
+        entries.put(key, value);
+    }
+
+    public void merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping, long now) {
+        beforeInsert(key, now);
+        entries.merge(key, value, remapping);
+    }
+
+    public V remove(K key) {
+        return entries.remove(key);
+    }
+
+    public boolean remove(K key, V value) {
+        return entries.remove(key, value);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 期限切れを一定件数だけ削除し、上限に達している場合は追い出す
+     * 上限に達していない場合は他のスレッドが削除中であれば省略する
+     */
+    private void beforeInsert(K key, long now) {
+        if (isFull(key)) {
+            maintenanceLock.lock();
+        } else if (!maintenanceLock.tryLock()) {
+            return;
+        }
+        try {
+            purgeExpired(now);
+            while (isFull(key) && evictOne(now)) {
+                // 上限を下回るまで追い出す
+            }
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    private boolean isFull(K key) {
+        return entries.size() >= maxEntries && !entries.containsKey(key);
+    }
+
+    private void purgeExpired(long now) {
+        for (int i = 0; i < PURGE_BATCH_SIZE; i++) {
+            Map.Entry<K, V> candidate = next();
+            if (candidate == null) {
+                return;
+            }
+            if (now >= expiresAtMillis.applyAsLong(candidate.getValue())
+                    && entries.remove(candidate.getKey(), candidate.getValue())) {
+                listener.onRemoval(candidate.getKey(), candidate.getValue(), true);
+            }
+        }
+    }
+
+    private boolean evictOne(long now) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map.Entry<K, V> victim = null;
+        long victimExpiresAt = Long.MAX_VALUE;
+        for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+            Map.Entry<K, V> candidate = null;
+            for (int skip = random.nextInt(MAX_SAMPLE_SKIP); skip >= 0; skip--) {
+                candidate = next();
+            }
+            if (candidate == null) {
+                break;
+            }
+            long expiresAt = expiresAtMillis.applyAsLong(candidate.getValue());
+            if (expiresAt < victimExpiresAt) {
+                victim = candidate;
+                victimExpiresAt = expiresAt;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        if (entries.remove(victim.getKey(), victim.getValue())) {
+            listener.onRemoval(victim.getKey(), victim.getValue(), now >= victimExpiresAt);
+        }
+        return true;
+    }
+
+    // 末尾に達したら先頭から巡回し直す（空の場合は null）
+    private Map.Entry<K, V> next() {
+        if (cursor == null || !cursor.hasNext()) {
+            cursor = entries.entrySet().iterator();
+            if (!cursor.hasNext()) {
+                return null;
+            }
+        }
+        return cursor.next();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.microservices.point.cache;
+
+import com.example.microservices.point.model.Point;
+import com.example.microservices.point.util.ConfigUtil;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ポイント残高キャッシュ
+ * 読み取り時にDBから取得した残高を保持し（read-through）、ポイント操作の結果で上書きする（write-through）。
+ * 他ノードでの更新は PointChangeListener（LISTEN/NOTIFY）による無効化と TTL で反映する。
+ */
+@ApplicationScoped
+public class PointBalanceCache {
+
+    private final boolean enabled = ConfigUtil.getBoolean("POINT_CACHE_ENABLED", true);
+    private final int maxEntries = ConfigUtil.getInt("POINT_CACHE_MAX_ENTRIES", 100_000);
+    // 通知を取りこぼした場合でも古い残高を返し続けないための上限
+    private final long ttlMillis = ConfigUtil.getLong("POINT_CACHE_TTL_MILLIS", 60 * 1000L);
+
+    // 無効化のたびに進める世代番号（読み込み中に無効化された値を登録しないために使用）
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+    private final LongAdder discardedLoads = new LongAdder();
+    private final LongAdder hitAgeMillis = new LongAdder();
+
+    private final BoundedExpiringMap<UUID, Entry> entries = new BoundedExpiringMap<>(
+            maxEntries, entry -> entry.loadedAtMillis + ttlMillis,
+            (userId, entry, expired) -> (expired ? expirations : evictions).increment());
+
+    private static class Entry {
+        private final Point point;
+        private final long loadedAtMillis;
+
+        Entry(Point point, long loadedAtMillis) {
+            this.point = point;
+            this.loadedAtMillis = loadedAtMillis;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * キャッシュされた残高を取得
+     */
+    public Optional<Point> get(UUID userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        long age = System.currentTimeMillis() - entry.loadedAtMillis;
+        if (age >= ttlMillis) {
+            entries.remove(userId, entry);
+            expirations.increment();
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        hitAgeMillis.add(age);
+        return Optional.of(copy(entry.point));
+    }
+
+    /**
+     * DB読み込み前に取得する世代番号
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * DBから読み込んだ残高を登録（read-through）
+     * 読み込み中に無効化が発生していた場合は古い値の可能性があるため登録しない
+     */
+    public void putLoaded(Point point, long loadedGeneration) {
+        if (generation.get() != loadedGeneration) {
+            discardedLoads.increment();
+            return;
+        }
+        store(point);
+    }
+
+    /**
+     * ポイント操作後の残高を登録（write-through）
+     * 既に新しい残高が登録されている場合は上書きしない
+     */
+    public void put(Point point) {
+        store(point);
+    }
+
+    /**
+     * ユーザーの残高を破棄
+     */
+    public void invalidate(UUID userId) {
+        generation.incrementAndGet();
+        if (entries.remove(userId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * 他ノードからの変更通知を反映
+     * キャッシュ上の残高が通知された残高と一致する場合（自ノードの更新）は保持する
+     */
+    public void onRemoteChange(UUID userId, Integer balance) {
+        Entry entry = entries.get(userId);
+        if (entry != null && balance != null && balance.equals(entry.point.getBalance())) {
+            return;
+        }
+        generation.incrementAndGet();
+        if (entries.remove(userId) != null) {
+            remoteInvalidations.increment();
+        }
+    }
+
+    /**
+     * 全件破棄（通知を取りこぼした可能性がある場合）
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        int size = entries.size();
+        entries.clear();
+        invalidations.add(size);
+    }
+
+    /**
+     * キャッシュの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long lookups = hitCount + missCount;
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", lookups > 0 ? (double) hitCount / lookups : 0.0);
+        stats.put("expirations", expirations.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("remoteInvalidations", remoteInvalidations.sum());
+        stats.put("discardedLoads", discardedLoads.sum());
+        stats.put("avgHitAgeMillis", hitCount > 0 ? hitAgeMillis.sum() / hitCount : 0);
+        return stats;
+    }
+
+    private void store(Point point) {
+        if (!enabled || point == null || point.getUserId() == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Entry candidate = new Entry(copy(point), now);
+        entries.merge(point.getUserId(), candidate, (current, updated) -> isNewer(current.point, updated.point) ? current : updated, now);
+    }
+
+    // last_updated は行ロック取得後の clock_timestamp() のため、同一ユーザーの更新順を表す
+    // （トランザクション開始時刻の NOW() では、後からコミットした更新の方が古く見えることがある）
+    private boolean isNewer(Point current, Point candidate) {
+        return current.getLastUpdated() != null && candidate.getLastUpdated() != null
+                && current.getLastUpdated().isAfter(candidate.getLastUpdated());
+    }
+
+    // Point は可変のため、呼び出し元による変更がキャッシュに影響しないよう複製する
+    private Point copy(Point point) {
+        return new Point(point.getUserId(), point.getBalance(), point.getLastUpdated());
+    }
+}
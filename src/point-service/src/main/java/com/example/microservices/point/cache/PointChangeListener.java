@@ -0,0 +1,174 @@
+package com.example.microservices.point.cache;
+
+import com.example.microservices.point.util.ConfigUtil;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ポイント残高の変更通知の受信
+ * points テーブルのトリガーが送る NOTIFY points_changed を LISTEN し、
+ * 他のレプリカで更新された残高をキャッシュから破棄する。
+ * 通知ペイロードは "user_id,balance,送信時刻（エポックミリ秒）"。
+ */
+@ApplicationScoped
+public class PointChangeListener {
+
+    static final String CHANNEL = "points_changed";
+
+    private final boolean enabled = ConfigUtil.getBoolean("POINT_CACHE_LISTEN_ENABLED", false);
+    private final int pollTimeoutMillis = ConfigUtil.getInt("POINT_CACHE_LISTEN_POLL_MILLIS", 500);
+    private final long reconnectDelayMillis = ConfigUtil.getLong("POINT_CACHE_LISTEN_RECONNECT_MILLIS", 5000);
+
+    @Resource(lookup = "java:app/jdbc/pointServiceDB")
+    private DataSource dataSource;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Inject
+    private PointBalanceCache pointBalanceCache;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private Thread listenerThread;
+
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile long lastLagMillis;
+    private volatile long lastNotificationMillis;
+
+    /**
+     * アプリケーション起動時に受信スレッドを開始
+     */
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        if (!enabled || !pointBalanceCache.isEnabled()) {
+            return;
+        }
+        running = true;
+        listenerThread = threadFactory.newThread(this::run);
+        listenerThread.setName("point-change-listener");
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    /**
+     * 受信状況の統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("connected", connected);
+        stats.put("notifications", notifications.sum());
+        stats.put("malformed", malformed.sum());
+        stats.put("reconnects", reconnects.sum());
+        stats.put("lastLagMillis", lastLagMillis);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        stats.put("millisSinceLastNotification", lastNotificationMillis > 0 ? System.currentTimeMillis() - lastNotificationMillis : null);
+        return stats;
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection conn = dataSource.getConnection()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                // 未接続の間の通知は受信できないため、接続のたびにキャッシュを破棄する
+                pointBalanceCache.clear();
+                connected = true;
+
+                try {
+                    PGConnection pgConnection = conn.unwrap(PGConnection.class);
+                    while (running) {
+                        PGNotification[] received = pgConnection.getNotifications(pollTimeoutMillis);
+                        if (received == null) {
+                            continue;
+                        }
+                        for (PGNotification notification : received) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                } finally {
+                    unlisten(conn);
+                }
+            } catch (SQLException e) {
+                System.err.println("Point change listener disconnected: " + e.getMessage());
+            } finally {
+                connected = false;
+            }
+
+            if (running) {
+                reconnects.increment();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(reconnectDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * プールへ返却するコネクションに LISTEN を残さないよう解除する
+     * （残すと他の処理に貸し出された後も通知が溜まり続ける）
+     */
+    private void unlisten(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("UNLISTEN *");
+        } catch (SQLException e) {
+            System.err.println("Failed to unlisten point change channel: " + e.getMessage());
+        }
+    }
+
+    private void handle(String payload) {
+        String[] parts = payload != null ? payload.split(",", -1) : new String[0];
+        if (parts.length < 3) {
+            malformed.increment();
+            return;
+        }
+        try {
+            UUID userId = UUID.fromString(parts[0]);
+            Integer balance = parts[1].isEmpty() ? null : Integer.valueOf(parts[1]);
+            long sentAtMillis = Long.parseLong(parts[2]);
+
+            pointBalanceCache.onRemoteChange(userId, balance);
+
+            long now = System.currentTimeMillis();
+            long lag = Math.max(0, now - sentAtMillis);
+            notifications.increment();
+            lastNotificationMillis = now;
+            lastLagMillis = lag;
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+        } catch (IllegalArgumentException e) {
+            malformed.increment();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.microservices.point.expiration;
+
+import com.example.microservices.point.cache.PointBalanceCache;
+import com.example.microservices.point.model.ExpirationChunkResult;
+import com.example.microservices.point.repository.PointExpirationRepository;
+import com.example.microservices.point.util.ConfigUtil;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ポイント失効エンジン
+ * 定期的に期限切れのロットをチャンク単位で処理する。
+ * 進捗は point_expiration_checkpoint に保存されるため、再起動後は続きから再開する。
+ */
+@ApplicationScoped
+public class PointExpirationEngine {
+
+    private static final String CHECKPOINT_NAME = "default";
+
+    private final boolean enabled = ConfigUtil.getBoolean("POINT_EXPIRATION_ENABLED", true);
+    private final long intervalSeconds = ConfigUtil.getLong("POINT_EXPIRATION_INTERVAL_SECONDS", 60);
+    private final int chunkSize = ConfigUtil.getInt("POINT_EXPIRATION_CHUNK_SIZE", 500);
+    // 1回の実行で処理するチャンク数の上限（残りは次回に持ち越す）
+    private final int maxChunksPerRun = ConfigUtil.getInt("POINT_EXPIRATION_MAX_CHUNKS_PER_RUN", 200);
+    // アプリケーションとDBの時刻のずれを吸収するため、期限切れ直後のロットは次回以降に処理する
+    private final int graceSeconds = ConfigUtil.getInt("POINT_EXPIRATION_GRACE_SECONDS", 60);
+
+    @Inject
+    private PointExpirationRepository pointExpirationRepository;
+
+    @Inject
+    private PointBalanceCache pointBalanceCache;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+    private ScheduledFuture<?> runTask;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder lotsScanned = new LongAdder();
+    private final LongAdder lotsExpired = new LongAdder();
+    private final LongAdder pointsExpired = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long lastRunMillis;
+    private volatile long lastRunLots;
+    private volatile long lastRunDurationMillis;
+    private volatile long lagMillis;
+    private volatile LocalDateTime checkpointExpiresAt;
+    private volatile long checkpointHistoryId;
+
+    /**
+     * アプリケーション起動時に定期実行を開始
+     */
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        if (!enabled) {
+            return;
+        }
+        runTask = scheduler.scheduleWithFixedDelay(this::run, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (runTask != null) {
+            runTask.cancel(false);
+        }
+    }
+
+    /**
+     * 期限切れのロットを処理（他スレッドが実行中の場合は何もしない）
+     *
+     * @return 処理したロット数
+     */
+    public long run() {
+        if (!runLock.tryLock()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long scanned = 0;
+        try {
+            for (int i = 0; i < maxChunksPerRun; i++) {
+                ExpirationChunkResult result = pointExpirationRepository.expireChunk(CHECKPOINT_NAME, chunkSize, graceSeconds);
+                if (result.getLotsScanned() == 0) {
+                    break;
+                }
+                record(result);
+                scanned += result.getLotsScanned();
+                if (result.getLotsScanned() < chunkSize) {
+                    break;
+                }
+            }
+            updateLag();
+            runs.increment();
+        } catch (Exception e) {
+            // 失敗したチャンクはロールバック済みのため、次回の実行で同じ位置から再試行される
+            failures.increment();
+            System.err.println("Point expiration run failed: " + e.getMessage());
+        } finally {
+            lastRunMillis = System.currentTimeMillis();
+            lastRunLots = scanned;
+            lastRunDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            runLock.unlock();
+        }
+        return scanned;
+    }
+
+    /**
+     * 失効処理の統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("runs", runs.sum());
+        stats.put("chunks", chunks.sum());
+        stats.put("lotsScanned", lotsScanned.sum());
+        stats.put("lotsExpired", lotsExpired.sum());
+        stats.put("pointsExpired", pointsExpired.sum());
+        stats.put("failures", failures.sum());
+        stats.put("lastRunLots", lastRunLots);
+        stats.put("lastRunDurationMillis", lastRunDurationMillis);
+        stats.put("lastRunLotsPerSecond", lastRunDurationMillis > 0 ? lastRunLots * 1000 / lastRunDurationMillis : lastRunLots);
+        stats.put("millisSinceLastRun", lastRunMillis > 0 ? System.currentTimeMillis() - lastRunMillis : null);
+        stats.put("lagMillis", lagMillis);
+        stats.put("checkpointExpiresAt", checkpointExpiresAt != null ? checkpointExpiresAt.toString() : null);
+        stats.put("checkpointHistoryId", checkpointHistoryId);
+        return stats;
+    }
+
+    private void record(ExpirationChunkResult result) {
+        chunks.increment();
+        lotsScanned.add(result.getLotsScanned());
+        lotsExpired.add(result.getLotsExpired());
+        pointsExpired.add(result.getPointsExpired());
+        checkpointExpiresAt = result.getCheckpointExpiresAt();
+        checkpointHistoryId = result.getCheckpointHistoryId();
+        for (UUID userId : result.getAffectedUserIds()) {
+            pointBalanceCache.invalidate(userId);
+        }
+    }
+
+    /**
+     * 処理待ちで最も古いロットの有効期限からの経過時間を処理遅延とする
+     */
+    private void updateLag() throws SQLException {
+        LocalDateTime oldestPending = pointExpirationRepository.findOldestPendingExpiresAt(CHECKPOINT_NAME);
+        lagMillis = oldestPending != null ? Math.max(0, Duration.between(oldestPending, LocalDateTime.now()).toMillis()) : 0;
+    }
+}
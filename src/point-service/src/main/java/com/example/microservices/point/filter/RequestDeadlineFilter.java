@@ -0,0 +1,73 @@
+package com.example.microservices.point.filter;
+
+import com.example.microservices.point.util.ConfigUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * リクエスト期限フィルター
+ * 呼び出し元（BFF）が X-Request-Timeout-Ms ヘッダーで伝えた残り時間（ミリ秒）から、
+ * 受信時点の自ノードの時刻を基準に期限を計算してリクエストの属性に保持する（ノード間の時計のずれに影響されない）。
+ * 残り時間が 0 以下のリクエストは、呼び出し元がもう応答を待っていないため処理せずに 504 を返す
+ */
+@Provider
+@PreMatching
+public class RequestDeadlineFilter implements ContainerRequestFilter {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    /**
+     * 受信時に計算した期限（エポックミリ秒）を保持するリクエスト属性
+     */
+    public static final String DEADLINE_PROPERTY = RequestDeadlineFilter.class.getName() + ".deadline";
+
+    private static final boolean ENABLED = ConfigUtil.getBoolean("REQUEST_DEADLINE_ENABLED", true);
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (!ENABLED) {
+            return;
+        }
+        String timeoutHeader = requestContext.getHeaderString(TIMEOUT_HEADER);
+        if (timeoutHeader == null || timeoutHeader.isEmpty()) {
+            return;
+        }
+        long budgetMillis;
+        try {
+            budgetMillis = Long.parseLong(timeoutHeader.trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (budgetMillis <= 0) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Request deadline exceeded");
+            requestContext.abortWith(Response.status(Response.Status.GATEWAY_TIMEOUT)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(error)
+                    .build());
+            return;
+        }
+        requestContext.setProperty(DEADLINE_PROPERTY, System.currentTimeMillis() + budgetMillis);
+    }
+
+    /**
+     * 期限までの残り時間（ミリ秒）
+     * 期限が伝えられていない場合は defaultMillis、期限を過ぎている場合は 0 以下を返す
+     */
+    public static long remainingMillis(HttpServletRequest request, long defaultMillis) {
+        Object deadline = request.getAttribute(DEADLINE_PROPERTY);
+        if (!(deadline instanceof Long)) {
+            return defaultMillis;
+        }
+        return (Long) deadline - System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.microservices.point.idempotency;
+
+import com.example.microservices.point.cache.BoundedExpiringMap;
+import com.example.microservices.point.model.IdempotencyRecord;
+import com.example.microservices.point.util.ConfigUtil;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 直近に完了した冪等キーのキャッシュ
+ * タイムアウト直後の再送はほとんどが同じノードに短時間で届くため、
+ * DBの冪等キーテーブルを参照せずに保存済みの結果を返す
+ */
+@ApplicationScoped
+public class IdempotencyKeyCache {
+
+    private final int maxEntries = ConfigUtil.getInt("IDEMPOTENCY_CACHE_MAX_ENTRIES", 50_000);
+    private final long ttlMillis = ConfigUtil.getLong("IDEMPOTENCY_CACHE_TTL_MILLIS", 10 * 60 * 1000L);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final BoundedExpiringMap<String, Entry> entries = new BoundedExpiringMap<>(
+            maxEntries, entry -> entry.expiresAtMillis, (key, entry, expired) -> evictions.increment());
+
+    private static class Entry {
+        private final IdempotencyRecord record;
+        private final long expiresAtMillis;
+
+        Entry(IdempotencyRecord record, long expiresAtMillis) {
+            this.record = record;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /**
+     * 完了済みの記録を取得
+     */
+    public Optional<IdempotencyRecord> get(UUID userId, String idempotencyKey) {
+        String key = key(userId, idempotencyKey);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (System.currentTimeMillis() >= entry.expiresAtMillis) {
+            entries.remove(key, entry);
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.record);
+    }
+
+    /**
+     * 完了済みの記録を登録
+     */
+    public void put(IdempotencyRecord record) {
+        if (record.getOutcome() == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.put(key(record.getUserId(), record.getIdempotencyKey()), new Entry(record, now + ttlMillis), now);
+    }
+
+    /**
+     * キャッシュの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private String key(UUID userId, String idempotencyKey) {
+        return userId + ":" + idempotencyKey;
+    }
+}
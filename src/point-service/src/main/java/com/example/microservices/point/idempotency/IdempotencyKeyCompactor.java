@@ -0,0 +1,88 @@
+package com.example.microservices.point.idempotency;
+
+import com.example.microservices.point.repository.PointIdempotencyRepository;
+import com.example.microservices.point.util.ConfigUtil;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 冪等キーの定期削除
+ * 保持期間を過ぎたキーを小さなバッチに分けて削除し、長時間のロックを避ける
+ */
+@ApplicationScoped
+public class IdempotencyKeyCompactor {
+
+    private final long ttlSeconds = ConfigUtil.getLong("IDEMPOTENCY_KEY_TTL_SECONDS", 24 * 60 * 60L);
+    private final long intervalSeconds = ConfigUtil.getLong("IDEMPOTENCY_COMPACTION_INTERVAL_SECONDS", 300);
+    private final int batchSize = ConfigUtil.getInt("IDEMPOTENCY_COMPACTION_BATCH_SIZE", 1000);
+
+    @Inject
+    private PointIdempotencyRepository pointIdempotencyRepository;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    private ScheduledFuture<?> compactionTask;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder deleted = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long lastRunMillis;
+
+    /**
+     * アプリケーション起動時に定期削除を開始
+     */
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        compactionTask = scheduler.scheduleWithFixedDelay(this::compact, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (compactionTask != null) {
+            compactionTask.cancel(false);
+        }
+    }
+
+    /**
+     * 保持期間を過ぎたキーを削除
+     */
+    public void compact() {
+        try {
+            int removed;
+            do {
+                removed = pointIdempotencyRepository.deleteOlderThan(ttlSeconds, batchSize);
+                deleted.add(removed);
+            } while (removed == batchSize);
+            runs.increment();
+        } catch (Exception e) {
+            failures.increment();
+            System.err.println("Failed to compact idempotency keys: " + e.getMessage());
+        } finally {
+            lastRunMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 削除処理の統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("runs", runs.sum());
+        stats.put("deleted", deleted.sum());
+        stats.put("failures", failures.sum());
+        stats.put("millisSinceLastRun", lastRunMillis > 0 ? System.currentTimeMillis() - lastRunMillis : null);
+        return stats;
+    }
+}
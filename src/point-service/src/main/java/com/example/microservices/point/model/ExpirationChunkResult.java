@@ -0,0 +1,67 @@
+package com.example.microservices.point.model;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * ポイント失効処理の1チャンク分の結果
+ */
+public class ExpirationChunkResult {
+    private final int lotsScanned;
+    private final int lotsExpired;
+    private final long pointsExpired;
+    private final Set<UUID> affectedUserIds;
+    private final LocalDateTime earliestExpiresAt;
+    private final LocalDateTime checkpointExpiresAt;
+    private final long checkpointHistoryId;
+
+    public ExpirationChunkResult(int lotsScanned, int lotsExpired, long pointsExpired, Set<UUID> affectedUserIds,
+                                 LocalDateTime earliestExpiresAt, LocalDateTime checkpointExpiresAt, long checkpointHistoryId) {
+        this.lotsScanned = lotsScanned;
+        this.lotsExpired = lotsExpired;
+        this.pointsExpired = pointsExpired;
+        this.affectedUserIds = affectedUserIds;
+        this.earliestExpiresAt = earliestExpiresAt;
+        this.checkpointExpiresAt = checkpointExpiresAt;
+        this.checkpointHistoryId = checkpointHistoryId;
+    }
+
+    /**
+     * 処理対象が残っていない（または他ノードが処理中）
+     */
+    public static ExpirationChunkResult empty() {
+        return new ExpirationChunkResult(0, 0, 0, Set.of(), null, null, 0);
+    }
+
+    public int getLotsScanned() {
+        return lotsScanned;
+    }
+
+    public int getLotsExpired() {
+        return lotsExpired;
+    }
+
+    public long getPointsExpired() {
+        return pointsExpired;
+    }
+
+    public Set<UUID> getAffectedUserIds() {
+        return affectedUserIds;
+    }
+
+    /**
+     * チャンク内で最も早い有効期限（処理遅延の計測に使用）
+     */
+    public LocalDateTime getEarliestExpiresAt() {
+        return earliestExpiresAt;
+    }
+
+    public LocalDateTime getCheckpointExpiresAt() {
+        return checkpointExpiresAt;
+    }
+
+    public long getCheckpointHistoryId() {
+        return checkpointHistoryId;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.microservices.point.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * ポイント履歴のページングカーソル
+ * 最後に返した履歴の (created_at, id) を不透明な文字列としてエンコードする
+ */
+public class HistoryCursor {
+    private final LocalDateTime createdAt;
+    private final long id;
+
+    public HistoryCursor(LocalDateTime createdAt, long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    /**
+     * 履歴からカーソルを生成
+     */
+    public static HistoryCursor of(PointHistory history) {
+        return new HistoryCursor(history.getCreatedAt(), history.getId());
+    }
+
+    /**
+     * カーソル文字列をデコード
+     *
+     * @throws IllegalArgumentException 不正なカーソルの場合
+     */
+    public static HistoryCursor decode(String encoded) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('|');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new HistoryCursor(
+                    LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * カーソル文字列にエンコード
+     */
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
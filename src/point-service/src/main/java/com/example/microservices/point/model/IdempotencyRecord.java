@@ -0,0 +1,116 @@
+package com.example.microservices.point.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 冪等キー付きポイント操作の記録
+ * 同じキーで再送された場合は、ここに保存された結果をそのまま返す
+ */
+public class IdempotencyRecord implements Serializable {
+
+    /**
+     * 操作の結果
+     */
+    public enum Outcome {
+        SUCCEEDED,
+        INSUFFICIENT_BALANCE,
+        POINTS_NOT_FOUND
+    }
+
+    private UUID userId;
+    private String idempotencyKey;
+    private String operation;
+    private String requestHash;
+    private Outcome outcome;
+    private Integer balance;
+    private LocalDateTime lastUpdated;
+    private LocalDateTime createdAt;
+    // 保存済みの結果を返した場合は true（DBには保存しない）
+    private boolean replayed;
+
+    // Constructors
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(UUID userId, String idempotencyKey, String operation, String requestHash) {
+        this.userId = userId;
+        this.idempotencyKey = idempotencyKey;
+        this.operation = operation;
+        this.requestHash = requestHash;
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(Outcome outcome) {
+        this.outcome = outcome;
+    }
+
+    public Integer getBalance() {
+        return balance;
+    }
+
+    public void setBalance(Integer balance) {
+        this.balance = balance;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public boolean isReplayed() {
+        return replayed;
+    }
+
+    public void setReplayed(boolean replayed) {
+        this.replayed = replayed;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.microservices.point.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 一括付与の1件分（キャンペーン等でのポイント付与）
+ */
+public class PointGrant implements Serializable {
+    private UUID userId;
+    private int amount;
+    private String description;
+    private LocalDateTime expiresAt;
+
+    // Constructors
+    public PointGrant() {
+    }
+
+    public PointGrant(UUID userId, int amount, String description, LocalDateTime expiresAt) {
+        this.userId = userId;
+        this.amount = amount;
+        this.description = description;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public void setAmount(int amount) {
+        this.amount = amount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -15,6 +15,7 @@ public class PointHistory implements Serializable {
     private String description;
     private LocalDateTime createdAt;
     private LocalDateTime expiresAt;
+    private Integer balanceAfter; // 取引後の残高（未補完の既存履歴はnull）
 
     // Constructors
     public PointHistory() {
@@ -87,4 +88,12 @@ public class PointHistory implements Serializable {
     public void setExpiresAt(LocalDateTime expiresAt) {
         this.expiresAt = expiresAt;
     }
+
+    public Integer getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    public void setBalanceAfter(Integer balanceAfter) {
+        this.balanceAfter = balanceAfter;
+    }
 }
@@ -0,0 +1,59 @@
+package com.example.microservices.point.model;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * ポイント履歴の1ページ分（現在の残高・履歴総数を含む）
+ */
+public class PointHistoryPage implements Serializable {
+    private UUID userId;
+    private int currentBalance;
+    private int totalItems;
+    private List<PointHistory> items;
+
+    // Constructors
+    public PointHistoryPage() {
+    }
+
+    public PointHistoryPage(UUID userId, int currentBalance, int totalItems, List<PointHistory> items) {
+        this.userId = userId;
+        this.currentBalance = currentBalance;
+        this.totalItems = totalItems;
+        this.items = items;
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public int getCurrentBalance() {
+        return currentBalance;
+    }
+
+    public void setCurrentBalance(int currentBalance) {
+        this.currentBalance = currentBalance;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public void setTotalItems(int totalItems) {
+        this.totalItems = totalItems;
+    }
+
+    public List<PointHistory> getItems() {
+        return items;
+    }
+
+    public void setItems(List<PointHistory> items) {
+        this.items = items;
+    }
+}
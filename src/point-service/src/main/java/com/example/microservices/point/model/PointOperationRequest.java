@@ -0,0 +1,52 @@
+package com.example.microservices.point.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ポイント付与・使用リクエスト（サービス間呼び出し用）
+ */
+public class PointOperationRequest {
+    private UUID userId;
+    private Integer amount;
+    private String description;
+    // 付与時のみ使用
+    private LocalDateTime expiresAt;
+
+    // Constructors
+    public PointOperationRequest() {
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public Integer getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Integer amount) {
+        this.amount = amount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.microservices.point.repository;
+
+import com.example.microservices.point.model.ExpirationChunkResult;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * ポイント失効リポジトリ
+ * 有効期限を過ぎた EARN 履歴（ロット）を (expires_at, id) 順にチャンク単位で処理し、
+ * 未消費分を EXPIRE 履歴として記録して残高から差し引く。
+ *
+ * 消費順序は、減算（USE・EXPIRE 等）の時点で付与済みのロットのうち有効期限の早いものから
+ * （有効期限のないポイントは最後）とする。ロットの未消費分は、対象ユーザーの履歴を記録順に辿り、
+ * 各減算をその時点で残っているロットに割り当てて求める（付与前の減算や、有効期限のないポイントの
+ * 使用分が後から付与されたロットを消費したことにならない）。
+ */
+@ApplicationScoped
+public class PointExpirationRepository {
+
+    @Resource(lookup = "java:app/jdbc/pointServiceDB")
+    private DataSource dataSource;
+
+    /**
+     * 未消費分が残っているロット（有効期限のないポイントは expiresAt が null）
+     */
+    private static class OpenLot {
+        private final long id;
+        private final Timestamp expiresAt;
+        private long remaining;
+
+        OpenLot(long id, Timestamp expiresAt, long remaining) {
+            this.id = id;
+            this.expiresAt = expiresAt;
+            this.remaining = remaining;
+        }
+    }
+
+    // 有効期限の早い順（有効期限なしは最後）、同じ場合は付与順
+    private static final Comparator<OpenLot> CONSUMPTION_ORDER = Comparator
+            .comparing((OpenLot lot) -> lot.expiresAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(lot -> lot.id);
+
+    private static class Lot {
+        private final long id;
+        private final UUID userId;
+        private final int amount;
+        private final LocalDateTime expiresAt;
+
+        Lot(long id, UUID userId, int amount, LocalDateTime expiresAt) {
+            this.id = id;
+            this.userId = userId;
+            this.amount = amount;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 期限切れのロットを1チャンク分処理（1トランザクション）
+     * チェックポイント行をロックするため、複数ノードで同時に実行しても二重に失効しない。
+     * 他ノードが処理中の場合は何もせず空の結果を返す。
+     *
+     * @param graceSeconds 現在時刻からこの秒数以上前に期限切れになったロットのみ処理する
+     */
+    public ExpirationChunkResult expireChunk(String checkpointName, int chunkSize, int graceSeconds) throws SQLException {
+        String ensureCheckpointSql = "INSERT INTO point_expiration_checkpoint (name, last_expires_at, last_history_id, updated_at) " +
+                                     "VALUES (?, TIMESTAMP '1970-01-01 00:00:00', 0, NOW()) ON CONFLICT (name) DO NOTHING";
+        String lockCheckpointSql = "SELECT last_expires_at, last_history_id FROM point_expiration_checkpoint " +
+                                   "WHERE name = ? FOR UPDATE SKIP LOCKED";
+        // idx_point_history_earn_expires（部分インデックス）で期限順に走査する
+        String lotsSql = "SELECT id, user_id, amount, expires_at FROM point_history " +
+                         "WHERE transaction_type = 'EARN' AND expires_at IS NOT NULL " +
+                         "AND (expires_at, id) > (?, ?) AND expires_at <= NOW() - (? * INTERVAL '1 second') " +
+                         "ORDER BY expires_at, id LIMIT ?";
+        // 行ロックのみ（ユーザーID順にロックしてデッドロックを避ける）
+        String lockPointsSql = "SELECT user_id, balance FROM points WHERE user_id = ANY(?) ORDER BY user_id FOR UPDATE";
+        // 履歴は残高の行ロック下で記録されるため、ユーザーごとの id 順は記録順と一致する
+        String historySql = "SELECT id, user_id, amount, transaction_type, expires_at FROM point_history " +
+                            "WHERE user_id = ANY(?) ORDER BY user_id, id";
+        String insertExpireSql = "INSERT INTO point_history (user_id, amount, transaction_type, description, created_at, expires_at, balance_after) " +
+                                 "VALUES (?, ?, 'EXPIRE', ?, NOW(), NULL, ?)";
+        String updatePointsSql = "UPDATE points SET balance = balance - ?, history_count = history_count + ?, last_updated = clock_timestamp() " +
+                                 "WHERE user_id = ?";
+        String updateCheckpointSql = "UPDATE point_expiration_checkpoint SET last_expires_at = ?, last_history_id = ?, updated_at = NOW() " +
+                                     "WHERE name = ?";
+
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(ensureCheckpointSql)) {
+                stmt.setString(1, checkpointName);
+                stmt.executeUpdate();
+            }
+
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                Timestamp checkpointExpiresAt;
+                long checkpointHistoryId;
+                try (PreparedStatement stmt = conn.prepareStatement(lockCheckpointSql)) {
+                    stmt.setString(1, checkpointName);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            return ExpirationChunkResult.empty();
+                        }
+                        checkpointExpiresAt = rs.getTimestamp("last_expires_at");
+                        checkpointHistoryId = rs.getLong("last_history_id");
+                    }
+                }
+
+                List<Lot> lots = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(lotsSql)) {
+                    stmt.setTimestamp(1, checkpointExpiresAt);
+                    stmt.setLong(2, checkpointHistoryId);
+                    stmt.setInt(3, graceSeconds);
+                    stmt.setInt(4, chunkSize);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            lots.add(new Lot(rs.getLong("id"), (UUID) rs.getObject("user_id"),
+                                    Math.abs(rs.getInt("amount")), rs.getTimestamp("expires_at").toLocalDateTime()));
+                        }
+                    }
+                }
+                if (lots.isEmpty()) {
+                    conn.commit();
+                    return ExpirationChunkResult.empty();
+                }
+
+                Set<UUID> userIds = new LinkedHashSet<>();
+                for (Lot lot : lots) {
+                    userIds.add(lot.userId);
+                }
+                Array userIdArray = conn.createArrayOf("uuid", userIds.toArray());
+
+                Map<UUID, Integer> balances = new HashMap<>();
+                try (PreparedStatement stmt = conn.prepareStatement(lockPointsSql)) {
+                    stmt.setArray(1, userIdArray);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            balances.put((UUID) rs.getObject("user_id"), rs.getInt("balance"));
+                        }
+                    }
+                }
+
+                // 残高をロックした後に集計する（並行するポイント使用を反映するため）
+                Map<Long, Long> unconsumed = new HashMap<>();
+                try (PreparedStatement stmt = conn.prepareStatement(historySql)) {
+                    stmt.setArray(1, userIdArray);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        replayConsumption(rs, unconsumed);
+                    }
+                }
+
+                Map<UUID, Integer> expiredByUser = new HashMap<>();
+                Map<UUID, Integer> expireRowsByUser = new HashMap<>();
+                int lotsExpired = 0;
+                long pointsExpired = 0;
+                try (PreparedStatement stmt = conn.prepareStatement(insertExpireSql)) {
+                    for (Lot lot : lots) {
+                        Integer balance = balances.get(lot.userId);
+                        if (balance == null) {
+                            continue;
+                        }
+                        long remaining = unconsumed.getOrDefault(lot.id, 0L);
+                        int remainder = (int) Math.max(0, Math.min(Math.min(remaining, lot.amount), balance));
+                        if (remainder == 0) {
+                            continue;
+                        }
+
+                        int balanceAfter = balance - remainder;
+                        balances.put(lot.userId, balanceAfter);
+                        expiredByUser.merge(lot.userId, remainder, Integer::sum);
+                        expireRowsByUser.merge(lot.userId, 1, Integer::sum);
+                        lotsExpired++;
+                        pointsExpired += remainder;
+
+                        stmt.setObject(1, lot.userId);
+                        stmt.setInt(2, remainder);
+                        stmt.setString(3, "ポイント有効期限切れ（履歴ID: " + lot.id + "）");
+                        stmt.setInt(4, balanceAfter);
+                        stmt.addBatch();
+                    }
+                    if (lotsExpired > 0) {
+                        stmt.executeBatch();
+                    }
+                }
+
+                if (!expiredByUser.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(updatePointsSql)) {
+                        for (Map.Entry<UUID, Integer> entry : expiredByUser.entrySet()) {
+                            stmt.setInt(1, entry.getValue());
+                            stmt.setInt(2, expireRowsByUser.get(entry.getKey()));
+                            stmt.setObject(3, entry.getKey());
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+
+                Lot last = lots.get(lots.size() - 1);
+                try (PreparedStatement stmt = conn.prepareStatement(updateCheckpointSql)) {
+                    stmt.setTimestamp(1, Timestamp.valueOf(last.expiresAt));
+                    stmt.setLong(2, last.id);
+                    stmt.setString(3, checkpointName);
+                    stmt.executeUpdate();
+                }
+
+                conn.commit();
+                return new ExpirationChunkResult(lots.size(), lotsExpired, pointsExpired, expiredByUser.keySet(),
+                        lots.get(0).expiresAt, last.expiresAt, last.id);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * 履歴（ユーザー・記録順）を辿って各減算をその時点のロットに割り当て、有効期限のあるロットの未消費分を求める
+     *
+     * @param unconsumed ロットの履歴ID → 未消費のポイント数（出力）
+     */
+    private void replayConsumption(ResultSet rs, Map<Long, Long> unconsumed) throws SQLException {
+        UUID currentUser = null;
+        PriorityQueue<OpenLot> open = new PriorityQueue<>(CONSUMPTION_ORDER);
+        while (rs.next()) {
+            UUID userId = (UUID) rs.getObject("user_id");
+            if (!userId.equals(currentUser)) {
+                currentUser = userId;
+                open.clear();
+            }
+            long id = rs.getLong("id");
+            long amount = Math.abs(rs.getLong("amount"));
+            if ("EARN".equals(rs.getString("transaction_type"))) {
+                Timestamp expiresAt = rs.getTimestamp("expires_at");
+                open.add(new OpenLot(id, expiresAt, amount));
+                if (expiresAt != null) {
+                    unconsumed.put(id, amount);
+                }
+                continue;
+            }
+            // 減算は、その時点で付与済みのロットを有効期限の早い順に消費する
+            while (amount > 0 && !open.isEmpty()) {
+                OpenLot head = open.peek();
+                long taken = Math.min(amount, head.remaining);
+                head.remaining -= taken;
+                amount -= taken;
+                if (head.expiresAt != null) {
+                    unconsumed.put(head.id, head.remaining);
+                }
+                if (head.remaining == 0) {
+                    open.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 処理待ちのロットのうち最も早い有効期限を取得（処理遅延の計測用）
+     */
+    public LocalDateTime findOldestPendingExpiresAt(String checkpointName) throws SQLException {
+        String sql = "SELECT MIN(h.expires_at) AS oldest FROM point_history h " +
+                     "JOIN point_expiration_checkpoint c ON c.name = ? " +
+                     "WHERE h.transaction_type = 'EARN' AND h.expires_at IS NOT NULL " +
+                     "AND (h.expires_at, h.id) > (c.last_expires_at, c.last_history_id) AND h.expires_at <= NOW()";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, checkpointName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Timestamp oldest = rs.getTimestamp("oldest");
+                    return oldest != null ? oldest.toLocalDateTime() : null;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.microservices.point.repository;
 
+import com.example.microservices.point.model.HistoryCursor;
 import com.example.microservices.point.model.PointHistory;
+import com.example.microservices.point.model.PointHistoryPage;
 import javax.annotation.Resource;
 import javax.enterprise.context.ApplicationScoped;
 import javax.sql.DataSource;
@@ -25,8 +27,8 @@ public class PointHistoryRepository {
         List<PointHistory> histories = new ArrayList<>();
         int offset = (page - 1) * limit;
         
-        String sql = "SELECT id, user_id, amount, transaction_type, description, created_at, expires_at " +
-                     "FROM point_history WHERE user_id = ? ORDER BY created_at DESC LIMIT ? OFFSET ?";
+        String sql = "SELECT id, user_id, amount, transaction_type, description, created_at, expires_at, balance_after " +
+                     "FROM point_history WHERE user_id = ? ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?";
         
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -45,16 +47,19 @@ public class PointHistoryRepository {
     }
 
     /**
-     * ユーザーの履歴総数を取得
+     * カーソルより新しい履歴の増減合計を取得（EARN は加算、USE は減算）
      */
-    public int countByUserId(UUID userId) throws SQLException {
-        String sql = "SELECT COUNT(*) as total FROM point_history WHERE user_id = ?";
-        
+    public int sumAmountNewerThan(UUID userId, HistoryCursor cursor) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(CASE WHEN transaction_type = 'EARN' THEN ABS(amount) ELSE -ABS(amount) END), 0) AS total " +
+                     "FROM point_history WHERE user_id = ? AND (created_at, id) > (?, ?)";
+
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
+
             stmt.setObject(1, userId);
-            
+            stmt.setTimestamp(2, Timestamp.valueOf(cursor.getCreatedAt()));
+            stmt.setLong(3, cursor.getId());
+
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     return rs.getInt("total");
@@ -64,12 +69,60 @@ public class PointHistoryRepository {
         return 0;
     }
 
+    /**
+     * 履歴1ページ分と現在の残高・履歴総数を1回のクエリで取得
+     * 履歴総数は points.history_count（ポイント操作と同時に更新）を使い、COUNT(*) を行わない
+     *
+     * @param cursor カーソルページネーションの場合に指定（nullの場合は offset を使用）
+     */
+    public PointHistoryPage findPage(UUID userId, HistoryCursor cursor, int offset, int limit) throws SQLException {
+        String sql = "SELECT p.balance AS current_balance, p.history_count AS total_items, " +
+                     "h.id, h.user_id, h.amount, h.transaction_type, h.description, h.created_at, h.expires_at, h.balance_after " +
+                     "FROM (SELECT CAST(? AS UUID) AS user_id) u " +
+                     "LEFT JOIN points p ON p.user_id = u.user_id " +
+                     "LEFT JOIN LATERAL (" +
+                     "  SELECT id, user_id, amount, transaction_type, description, created_at, expires_at, balance_after " +
+                     "  FROM point_history WHERE user_id = u.user_id " +
+                     (cursor != null ? "AND (created_at, id) < (?, ?) " : "") +
+                     "  ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?" +
+                     ") h ON TRUE " +
+                     "ORDER BY h.created_at DESC, h.id DESC";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            stmt.setObject(index++, userId);
+            if (cursor != null) {
+                stmt.setTimestamp(index++, Timestamp.valueOf(cursor.getCreatedAt()));
+                stmt.setLong(index++, cursor.getId());
+            }
+            stmt.setInt(index++, limit);
+            stmt.setInt(index, cursor != null ? 0 : offset);
+
+            int currentBalance = 0;
+            int totalItems = 0;
+            List<PointHistory> histories = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    currentBalance = rs.getInt("current_balance");
+                    totalItems = rs.getInt("total_items");
+                    rs.getLong("id");
+                    if (!rs.wasNull()) {
+                        histories.add(mapResultSetToPointHistory(rs));
+                    }
+                }
+            }
+            return new PointHistoryPage(userId, currentBalance, totalItems, histories);
+        }
+    }
+
     /**
      * 新規履歴を作成
      */
     public PointHistory create(PointHistory history) throws SQLException {
         String sql = "INSERT INTO point_history (user_id, amount, transaction_type, description, created_at, expires_at) " +
-                     "VALUES (?, ?, ?, ?, ?, ?) RETURNING id, user_id, amount, transaction_type, description, created_at, expires_at";
+                     "VALUES (?, ?, ?, ?, ?, ?) RETURNING id, user_id, amount, transaction_type, description, created_at, expires_at, balance_after";
         
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -90,6 +143,55 @@ public class PointHistoryRepository {
         throw new SQLException("Failed to create point history");
     }
 
+    /**
+     * balance_after が未設定の履歴を補完（バックフィル）
+     * points 行のある対象ユーザーを user_id 順に userBatchSize 件ずつ取り出し（前回の最後の user_id から再開）、
+     * 現在の残高を起点にウィンドウ関数で新しい履歴から順に遡って取引後残高を計算する。
+     * ユーザー単位のバッチごとにコミットするため、テーブル全体をロックしない。
+     * points 行がないユーザーの履歴は補完できないため対象にしない。
+     *
+     * @return 更新した履歴の件数
+     */
+    public int backfillBalanceAfter(int userBatchSize) throws SQLException {
+        String selectSql = "SELECT DISTINCT ph.user_id FROM point_history ph JOIN points p ON p.user_id = ph.user_id " +
+                           "WHERE ph.balance_after IS NULL AND (CAST(? AS uuid) IS NULL OR ph.user_id > ?) " +
+                           "ORDER BY ph.user_id LIMIT ?";
+        String updateSql = "UPDATE point_history h SET balance_after = s.balance_after FROM (" +
+                           "  SELECT ph.id, p.balance - COALESCE(SUM(CASE WHEN ph.transaction_type = 'EARN' THEN ABS(ph.amount) ELSE -ABS(ph.amount) END) " +
+                           "    OVER (PARTITION BY ph.user_id ORDER BY ph.created_at DESC, ph.id DESC " +
+                           "          ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING), 0) AS balance_after " +
+                           "  FROM point_history ph JOIN points p ON p.user_id = ph.user_id " +
+                           "  WHERE ph.user_id = ANY(?)" +
+                           ") s WHERE h.id = s.id AND h.balance_after IS NULL";
+
+        int totalUpdated = 0;
+        UUID lastUserId = null;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement selectStmt = conn.prepareStatement(selectSql);
+             PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+
+            while (true) {
+                List<UUID> userIds = new ArrayList<>();
+                selectStmt.setObject(1, lastUserId, Types.OTHER);
+                selectStmt.setObject(2, lastUserId, Types.OTHER);
+                selectStmt.setInt(3, userBatchSize);
+                try (ResultSet rs = selectStmt.executeQuery()) {
+                    while (rs.next()) {
+                        userIds.add((UUID) rs.getObject("user_id"));
+                    }
+                }
+                if (userIds.isEmpty()) {
+                    break;
+                }
+
+                updateStmt.setArray(1, conn.createArrayOf("uuid", userIds.toArray()));
+                totalUpdated += updateStmt.executeUpdate();
+                lastUserId = userIds.get(userIds.size() - 1);
+            }
+        }
+        return totalUpdated;
+    }
+
     private PointHistory mapResultSetToPointHistory(ResultSet rs) throws SQLException {
         PointHistory history = new PointHistory();
         history.setId(rs.getLong("id"));
@@ -107,6 +209,9 @@ public class PointHistoryRepository {
         if (expiresAt != null) {
             history.setExpiresAt(expiresAt.toLocalDateTime());
         }
+
+        int balanceAfter = rs.getInt("balance_after");
+        history.setBalanceAfter(rs.wasNull() ? null : balanceAfter);
         
         return history;
     }
@@ -0,0 +1,149 @@
+package com.example.microservices.point.repository;
+
+import com.example.microservices.point.model.IdempotencyRecord;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 冪等キーリポジトリ
+ * キーの登録・ポイント操作・結果の保存を1トランザクションで実行し、
+ * 同じキーの2回目以降の要求には保存済みの結果を返す
+ */
+@ApplicationScoped
+public class PointIdempotencyRepository {
+
+    @Resource(lookup = "java:app/jdbc/pointServiceDB")
+    private DataSource dataSource;
+
+    /**
+     * キーの登録と同じトランザクションで実行するポイント操作
+     * 実行結果（outcome・残高）を record に設定する
+     */
+    @FunctionalInterface
+    public interface Operation {
+        void apply(Connection conn, IdempotencyRecord record) throws SQLException;
+    }
+
+    /**
+     * 冪等キー付きで操作を1回だけ実行
+     * 同じキーで並行して要求された場合、後続の要求は先行するトランザクションの完了を待ち、
+     * その結果を返す（先行するトランザクションがロールバックした場合は後続の要求が実行する）。
+     *
+     * @return 今回実行した結果、または保存済みの結果（replayed = true）
+     */
+    public IdempotencyRecord executeOnce(IdempotencyRecord record, Operation operation) throws SQLException {
+        String insertSql = "INSERT INTO point_idempotency_keys (user_id, idempotency_key, operation, request_hash, created_at) " +
+                           "VALUES (?, ?, ?, ?, NOW()) ON CONFLICT (user_id, idempotency_key) DO NOTHING";
+        String completeSql = "UPDATE point_idempotency_keys SET outcome = ?, balance = ?, last_updated = ? " +
+                             "WHERE user_id = ? AND idempotency_key = ?";
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                int inserted;
+                try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+                    stmt.setObject(1, record.getUserId());
+                    stmt.setString(2, record.getIdempotencyKey());
+                    stmt.setString(3, record.getOperation());
+                    stmt.setString(4, record.getRequestHash());
+                    inserted = stmt.executeUpdate();
+                }
+
+                if (inserted == 0) {
+                    Optional<IdempotencyRecord> existing = find(conn, record.getUserId(), record.getIdempotencyKey());
+                    conn.commit();
+                    if (!existing.isPresent()) {
+                        throw new SQLException("Idempotency key disappeared while waiting: " + record.getIdempotencyKey());
+                    }
+                    existing.get().setReplayed(true);
+                    return existing.get();
+                }
+
+                operation.apply(conn, record);
+
+                try (PreparedStatement stmt = conn.prepareStatement(completeSql)) {
+                    stmt.setString(1, record.getOutcome().name());
+                    if (record.getBalance() != null) {
+                        stmt.setInt(2, record.getBalance());
+                    } else {
+                        stmt.setNull(2, Types.INTEGER);
+                    }
+                    stmt.setTimestamp(3, record.getLastUpdated() != null ? Timestamp.valueOf(record.getLastUpdated()) : null);
+                    stmt.setObject(4, record.getUserId());
+                    stmt.setString(5, record.getIdempotencyKey());
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+                return record;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * 作成から一定時間が経過したキーを削除（1回あたり最大 batchSize 件）
+     *
+     * @return 削除した件数
+     */
+    public int deleteOlderThan(long ttlSeconds, int batchSize) throws SQLException {
+        String sql = "DELETE FROM point_idempotency_keys WHERE ctid IN (" +
+                     "  SELECT ctid FROM point_idempotency_keys WHERE created_at < NOW() - (? * INTERVAL '1 second') LIMIT ?" +
+                     ")";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, ttlSeconds);
+            stmt.setInt(2, batchSize);
+            return stmt.executeUpdate();
+        }
+    }
+
+    private Optional<IdempotencyRecord> find(Connection conn, UUID userId, String idempotencyKey) throws SQLException {
+        String sql = "SELECT user_id, idempotency_key, operation, request_hash, outcome, balance, last_updated, created_at " +
+                     "FROM point_idempotency_keys WHERE user_id = ? AND idempotency_key = ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, userId);
+            stmt.setString(2, idempotencyKey);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToRecord(rs));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private IdempotencyRecord mapResultSetToRecord(ResultSet rs) throws SQLException {
+        IdempotencyRecord record = new IdempotencyRecord(
+                (UUID) rs.getObject("user_id"),
+                rs.getString("idempotency_key"),
+                rs.getString("operation"),
+                rs.getString("request_hash"));
+        String outcome = rs.getString("outcome");
+        if (outcome != null) {
+            record.setOutcome(IdempotencyRecord.Outcome.valueOf(outcome));
+        }
+        int balance = rs.getInt("balance");
+        record.setBalance(rs.wasNull() ? null : balance);
+        Timestamp lastUpdated = rs.getTimestamp("last_updated");
+        if (lastUpdated != null) {
+            record.setLastUpdated(lastUpdated.toLocalDateTime());
+        }
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        if (createdAt != null) {
+            record.setCreatedAt(createdAt.toLocalDateTime());
+        }
+        return record;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.microservices.point.repository;
+
+import com.example.microservices.point.model.Point;
+import com.example.microservices.point.model.PointGrant;
+import org.postgresql.PGConnection;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * ポイント台帳リポジトリ
+ * 残高の増減と履歴の記録（取引後残高を含む）を1つのSQL文（CTE）で原子的に実行する
+ * points.last_updated には行ロック取得後の時刻（clock_timestamp()）を設定し、
+ * 同一ユーザーの更新順と一致させる（残高キャッシュの新旧判定に使用するため）
+ */
+@ApplicationScoped
+public class PointLedgerRepository {
+
+    @Resource(lookup = "java:app/jdbc/pointServiceDB")
+    private DataSource dataSource;
+
+    /**
+     * ポイント付与（残高の加算と EARN 履歴の記録）
+     * ポイント残高がない場合は作成する
+     */
+    public Point earn(UUID userId, int amount, String description, LocalDateTime expiresAt) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return earn(conn, userId, amount, description, expiresAt);
+        }
+    }
+
+    /**
+     * ポイント付与（呼び出し元のコネクション・トランザクションで実行）
+     */
+    public Point earn(Connection conn, UUID userId, int amount, String description, LocalDateTime expiresAt) throws SQLException {
+        String sql = "WITH updated AS (" +
+                     "  INSERT INTO points (user_id, balance, history_count, last_updated) VALUES (?, ?, 1, clock_timestamp()) " +
+                     "  ON CONFLICT (user_id) DO UPDATE SET balance = points.balance + EXCLUDED.balance, " +
+                     "    history_count = points.history_count + 1, last_updated = clock_timestamp() " +
+                     "  RETURNING user_id, balance, last_updated" +
+                     "), history AS (" +
+                     "  INSERT INTO point_history (user_id, amount, transaction_type, description, created_at, expires_at, balance_after) " +
+                     "  SELECT user_id, ?, 'EARN', ?, NOW(), ?, balance FROM updated RETURNING id" +
+                     ") " +
+                     "SELECT user_id, balance, last_updated FROM updated";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, userId);
+            stmt.setInt(2, amount);
+            stmt.setInt(3, amount);
+            stmt.setString(4, description);
+            stmt.setTimestamp(5, expiresAt != null ? Timestamp.valueOf(expiresAt) : null);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToPoint(rs);
+                }
+            }
+        }
+        throw new SQLException("Failed to earn points for user: " + userId);
+    }
+
+    /**
+     * ポイント使用（残高の減算と USE 履歴の記録）
+     * 残高が不足している、またはポイント残高がない場合は何も更新せず空を返す
+     */
+    public Optional<Point> use(UUID userId, int amount, String description) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return use(conn, userId, amount, description);
+        }
+    }
+
+    /**
+     * ポイント使用（呼び出し元のコネクション・トランザクションで実行）
+     */
+    public Optional<Point> use(Connection conn, UUID userId, int amount, String description) throws SQLException {
+        String sql = "WITH updated AS (" +
+                     "  UPDATE points SET balance = balance - ?, history_count = history_count + 1, last_updated = clock_timestamp() " +
+                     "  WHERE user_id = ? AND balance >= ? " +
+                     "  RETURNING user_id, balance, last_updated" +
+                     "), history AS (" +
+                     "  INSERT INTO point_history (user_id, amount, transaction_type, description, created_at, expires_at, balance_after) " +
+                     "  SELECT user_id, ?, 'USE', ?, NOW(), NULL, balance FROM updated RETURNING id" +
+                     ") " +
+                     "SELECT user_id, balance, last_updated FROM updated";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, amount);
+            stmt.setObject(2, userId);
+            stmt.setInt(3, amount);
+            stmt.setInt(4, amount);
+            stmt.setString(5, description);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToPoint(rs));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * ポイント残高が存在するか（呼び出し元のコネクション・トランザクションで実行）
+     */
+    public boolean exists(Connection conn, UUID userId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM points WHERE user_id = ?")) {
+            stmt.setObject(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * ポイント一括付与（1バッチ分を1トランザクションで実行）
+     * 付与内容を COPY で一時テーブルに取り込み、ユーザー単位に集計して残高を upsert した後、
+     * 一時テーブルから EARN 履歴（取引後残高を含む）をまとめて登録する。
+     * 同一ユーザーへの複数の付与は入力順に記録される。
+     *
+     * @return 登録した履歴の件数
+     */
+    public int bulkEarn(List<PointGrant> grants) throws SQLException {
+        if (grants.isEmpty()) {
+            return 0;
+        }
+        // ON COMMIT DELETE ROWS のため、コネクションを使い回しても前回の内容は残らない
+        String createStagingSql = "CREATE TEMP TABLE IF NOT EXISTS point_grant_staging (" +
+                                  "  seq INTEGER NOT NULL, user_id UUID NOT NULL, amount INTEGER NOT NULL, " +
+                                  "  description TEXT, expires_at TIMESTAMP" +
+                                  ") ON COMMIT DELETE ROWS";
+        String copySql = "COPY point_grant_staging (seq, user_id, amount, description, expires_at) FROM STDIN WITH (FORMAT csv)";
+        // user_id 順に更新して、並行する一括付与同士のデッドロックを避ける
+        String upsertSql = "INSERT INTO points (user_id, balance, history_count, last_updated) " +
+                           "SELECT user_id, SUM(amount), COUNT(*), clock_timestamp() FROM point_grant_staging " +
+                           "GROUP BY user_id ORDER BY user_id " +
+                           "ON CONFLICT (user_id) DO UPDATE SET balance = points.balance + EXCLUDED.balance, " +
+                           "  history_count = points.history_count + EXCLUDED.history_count, last_updated = clock_timestamp()";
+        // 更新後の残高から、同一ユーザーの後続の付与分を差し引いて各履歴の取引後残高とする
+        String historySql = "INSERT INTO point_history (user_id, amount, transaction_type, description, created_at, expires_at, balance_after) " +
+                            "SELECT s.user_id, s.amount, 'EARN', s.description, NOW(), s.expires_at, " +
+                            "  p.balance - COALESCE(SUM(s.amount) OVER (PARTITION BY s.user_id ORDER BY s.seq DESC " +
+                            "    ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING), 0) " +
+                            "FROM point_grant_staging s JOIN points p ON p.user_id = s.user_id " +
+                            "ORDER BY s.seq";
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(createStagingSql);
+                }
+                conn.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn(copySql, new StringReader(toCsv(grants)));
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(upsertSql);
+                    int inserted = stmt.executeUpdate(historySql);
+                    conn.commit();
+                    return inserted;
+                }
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                if (e instanceof SQLException) {
+                    throw (SQLException) e;
+                }
+                throw new SQLException("Failed to copy point grants", e);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private String toCsv(List<PointGrant> grants) {
+        StringBuilder csv = new StringBuilder(grants.size() * 96);
+        int seq = 0;
+        for (PointGrant grant : grants) {
+            csv.append(seq++).append(',')
+               .append(grant.getUserId()).append(',')
+               .append(grant.getAmount()).append(',');
+            if (grant.getDescription() != null) {
+                csv.append('"').append(grant.getDescription().replace("\"", "\"\"")).append('"');
+            }
+            csv.append(',');
+            if (grant.getExpiresAt() != null) {
+                csv.append(Timestamp.valueOf(grant.getExpiresAt()));
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    private Point mapResultSetToPoint(ResultSet rs) throws SQLException {
+        Point point = new Point();
+        point.setUserId((UUID) rs.getObject("user_id"));
+        point.setBalance(rs.getInt("balance"));
+        Timestamp timestamp = rs.getTimestamp("last_updated");
+        if (timestamp != null) {
+            point.setLastUpdated(timestamp.toLocalDateTime());
+        }
+        return point;
+    }
+}
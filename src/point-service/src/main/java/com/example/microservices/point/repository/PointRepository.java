@@ -40,7 +40,7 @@ public class PointRepository {
      * ポイント残高を更新
      */
     public Point updateBalance(UUID userId, Integer newBalance) throws SQLException {
-        String sql = "UPDATE points SET balance = ?, last_updated = NOW() WHERE user_id = ? RETURNING user_id, balance, last_updated";
+        String sql = "UPDATE points SET balance = ?, last_updated = clock_timestamp() WHERE user_id = ? RETURNING user_id, balance, last_updated";
         
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -61,7 +61,7 @@ public class PointRepository {
      * 新規ポイント残高を作成
      */
     public Point create(UUID userId, Integer initialBalance) throws SQLException {
-        String sql = "INSERT INTO points (user_id, balance, last_updated) VALUES (?, ?, NOW()) RETURNING user_id, balance, last_updated";
+        String sql = "INSERT INTO points (user_id, balance, last_updated) VALUES (?, ?, clock_timestamp()) RETURNING user_id, balance, last_updated";
         
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
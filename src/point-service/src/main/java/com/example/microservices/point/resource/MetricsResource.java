@@ -0,0 +1,54 @@
+package com.example.microservices.point.resource;
+
+import com.example.microservices.point.cache.PointBalanceCache;
+import com.example.microservices.point.cache.PointChangeListener;
+import com.example.microservices.point.expiration.PointExpirationEngine;
+import com.example.microservices.point.idempotency.IdempotencyKeyCache;
+import com.example.microservices.point.idempotency.IdempotencyKeyCompactor;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ポイントサービス運用メトリクス API
+ */
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+
+    @Inject
+    private PointBalanceCache pointBalanceCache;
+
+    @Inject
+    private PointChangeListener pointChangeListener;
+
+    @Inject
+    private PointExpirationEngine pointExpirationEngine;
+
+    @Inject
+    private IdempotencyKeyCache idempotencyKeyCache;
+
+    @Inject
+    private IdempotencyKeyCompactor idempotencyKeyCompactor;
+
+    /**
+     * メトリクス取得
+     * GET /api/metrics
+     */
+    @GET
+    public Response getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("balanceCache", pointBalanceCache.getStats());
+        metrics.put("balanceChangeListener", pointChangeListener.getStats());
+        metrics.put("expiration", pointExpirationEngine.getStats());
+        metrics.put("idempotencyCache", idempotencyKeyCache.getStats());
+        metrics.put("idempotencyCompaction", idempotencyKeyCompactor.getStats());
+        return Response.ok(metrics).build();
+    }
+}
@@ -5,17 +5,46 @@ import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.microservices.point.expiration.PointExpirationEngine;
+import com.example.microservices.point.model.HistoryCursor;
+import com.example.microservices.point.model.IdempotencyRecord;
 import com.example.microservices.point.model.Point;
+import com.example.microservices.point.model.PointGrant;
 import com.example.microservices.point.model.PointHistory;
+import com.example.microservices.point.model.PointHistoryPage;
+import com.example.microservices.point.model.PointOperationRequest;
+import com.example.microservices.point.service.IdempotencyKeyMismatchException;
 import com.example.microservices.point.service.PointService;
+import com.example.microservices.point.util.ConfigUtil;
+import com.example.microservices.point.util.ServiceTokenVerifier;
 
 import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 /**
@@ -29,13 +58,21 @@ public class PointResource {
     @Inject
     private PointService pointService;
 
-    // JWT検証用のシークレットキー（Auth Serviceと同じ値を使用）
-    // SECURITY NOTE: 本番環境では環境変数や暗号化された設定から取得すべき
-    // 環境変数例: System.getenv("JWT_SECRET_KEY")
-    // または AWS Secrets Manager, HashiCorp Vault などのシークレット管理サービスを使用
-    private static final String SECRET_KEY = "your-secret-key-change-this-in-production";
+    @Inject
+    private PointExpirationEngine pointExpirationEngine;
+
+    // JWT検証用のシークレットキー（Auth Service・BFF と同じ JWT_SECRET_KEY を使用。既定値は開発用）
+    // SECURITY NOTE: 本番環境では必ず設定し、AWS Secrets Manager, HashiCorp Vault などで管理すること
+    private static final String SECRET_KEY = ConfigUtil.getString("JWT_SECRET_KEY", "your-secret-key-change-this-in-production");
     private static final Algorithm ALGORITHM = Algorithm.HMAC256(SECRET_KEY);
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int UNPROCESSABLE_ENTITY = 422;
+    private static final int MAX_BULK_BATCH_SIZE = 50_000;
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
     /**
      * ポイント残高取得
      * GET /api/points
@@ -77,13 +114,15 @@ public class PointResource {
     /**
      * ポイント履歴取得
      * GET /api/points/history?page=1&limit=10
+     * GET /api/points/history?cursor={nextCursor}&limit=10（カーソルページネーション、初回は cursor= を空で指定）
      */
     @GET
     @Path("/history")
     public Response getPointHistory(
             @Context HttpHeaders headers,
             @QueryParam("page") @DefaultValue("1") int page,
-            @QueryParam("limit") @DefaultValue("10") int limit) {
+            @QueryParam("limit") @DefaultValue("10") int limit,
+            @QueryParam("cursor") String cursor) {
         
         try {
             // JWTトークンを検証してuserIdを取得
@@ -99,31 +138,19 @@ public class PointResource {
             if (limit < 1) limit = 10;
             if (limit > 100) limit = 100;
 
-            // ポイント履歴を取得
-            List<PointHistory> histories = pointService.getPointHistory(userId, page, limit);
-            int total = pointService.getPointHistoryCount(userId);
-            
-            // 現在のポイント残高を取得
-            int currentBalance = pointService.getPointBalance(userId)
-                    .map(point -> point.getBalance())
-                    .orElse(0);
-
-            // 現在のページの最初の履歴時点での残高を計算
-            int balanceAtPageStart = currentBalance;
-            if (page > 1) {
-                // page=1からpage-1までの全履歴を取得して残高を逆算
-                int offset = 0;
-                int itemsToSkip = (page - 1) * limit;
-                List<PointHistory> previousHistories = pointService.getPointHistory(userId, 1, itemsToSkip);
-                for (PointHistory h : previousHistories) {
-                    if ("EARN".equals(h.getTransactionType())) {
-                        balanceAtPageStart -= Math.abs(h.getAmount());
-                    } else if ("USE".equals(h.getTransactionType()) || "SPEND".equals(h.getTransactionType())) {
-                        balanceAtPageStart += Math.abs(h.getAmount());
-                    }
-                }
+            // カーソル指定時はキーセットページネーション（ページの深さに依存しない）
+            if (cursor != null) {
+                return getPointHistoryByCursor(userId, cursor, limit);
             }
 
+            // 履歴・現在の残高・履歴総数を1回のクエリで取得
+            PointHistoryPage historyPage = pointService.getPointHistoryPage(userId, page, limit);
+            List<PointHistory> histories = historyPage.getItems();
+            int total = historyPage.getTotalItems();
+
+            // 取引後残高は履歴に保存済み（未補完の履歴がある場合のみ計算）
+            int balanceAtPageStart = resolveBalanceAtPageStart(historyPage, histories);
+
             // レスポンスを構築（ページネーション情報を含む）
             Map<String, Object> response = new HashMap<>();
             response.put("userId", userId.toString());
@@ -135,6 +162,10 @@ public class PointResource {
             pagination.put("limit", limit);
             pagination.put("totalItems", total);
             pagination.put("totalPages", (int) Math.ceil((double) total / limit));
+            if (histories.size() == limit && page * limit < total) {
+                // 次ページ以降はカーソルでも取得可能
+                pagination.put("nextCursor", HistoryCursor.of(histories.get(histories.size() - 1)).encode());
+            }
             response.put("pagination", pagination);
 
             return Response.ok(response).build();
@@ -145,6 +176,365 @@ public class PointResource {
         }
     }
 
+    /**
+     * カーソルページネーションによるポイント履歴取得
+     */
+    private Response getPointHistoryByCursor(UUID userId, String cursorParam, int limit) throws SQLException {
+        HistoryCursor cursor;
+        try {
+            cursor = cursorParam.isEmpty() ? null : HistoryCursor.decode(cursorParam);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("Invalid cursor"))
+                    .build();
+        }
+
+        // 次ページの有無を判定するため1件多く取得
+        PointHistoryPage historyPage = pointService.getPointHistoryPageBefore(userId, cursor, limit + 1);
+        List<PointHistory> histories = historyPage.getItems();
+        boolean hasMore = histories.size() > limit;
+        if (hasMore) {
+            histories = histories.subList(0, limit);
+        }
+
+        int balanceAtPageStart = resolveBalanceAtPageStart(historyPage, histories);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("userId", userId.toString());
+        response.put("history", convertHistoriesToMap(histories, balanceAtPageStart));
+
+        Map<String, Object> pagination = new HashMap<>();
+        pagination.put("limit", limit);
+        pagination.put("hasMore", hasMore);
+        if (hasMore) {
+            pagination.put("nextCursor", HistoryCursor.of(histories.get(histories.size() - 1)).encode());
+        }
+        response.put("pagination", pagination);
+
+        return Response.ok(response).build();
+    }
+
+    /**
+     * ポイント付与（サービス間呼び出し用）
+     * POST /api/points/earn  {"userId": "...", "amount": 100, "description": "...", "expiresAt": "2025-12-31T23:59:59"}
+     * X-Service-Token ヘッダーにサービス間トークン、Idempotency-Key ヘッダーに冪等キーが必要
+     * 同じキーでの再送は残高を変更せず最初の結果を返す（Idempotent-Replayed: true）
+     */
+    @POST
+    @Path("/earn")
+    public Response earnPoints(@Context HttpHeaders headers, PointOperationRequest request) {
+        return executePointOperation(headers, request, true);
+    }
+
+    /**
+     * ポイント使用（サービス間呼び出し用）
+     * POST /api/points/use  {"userId": "...", "amount": 100, "description": "..."}
+     * X-Service-Token ヘッダーにサービス間トークン、Idempotency-Key ヘッダーに冪等キーが必要
+     * 残高不足の結果も保存され、同じキーでの再送には同じ結果を返す
+     */
+    @POST
+    @Path("/use")
+    public Response usePoints(@Context HttpHeaders headers, PointOperationRequest request) {
+        return executePointOperation(headers, request, false);
+    }
+
+    private Response executePointOperation(HttpHeaders headers, PointOperationRequest request, boolean earn) {
+        Response forbidden = requireServiceToken(headers);
+        if (forbidden != null) {
+            return forbidden;
+        }
+        if (request == null || request.getUserId() == null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("userId is required"))
+                    .build();
+        }
+        // 呼び出し元の再送で二重に付与・使用しないよう冪等キーを必須とする
+        String idempotencyKey = headers.getHeaderString(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey == null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse(IDEMPOTENCY_KEY_HEADER + " header is required"))
+                    .build();
+        }
+
+        UUID userId = request.getUserId();
+        try {
+            IdempotencyRecord record = earn
+                    ? pointService.earnPoints(userId, idempotencyKey, request.getAmount(), request.getDescription(), request.getExpiresAt())
+                    : pointService.usePoints(userId, idempotencyKey, request.getAmount(), request.getDescription());
+
+            Response.ResponseBuilder builder;
+            switch (record.getOutcome()) {
+                case SUCCEEDED:
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("userId", record.getUserId().toString());
+                    response.put("balance", record.getBalance());
+                    response.put("lastUpdated", record.getLastUpdated());
+                    builder = Response.ok(response);
+                    break;
+                case INSUFFICIENT_BALANCE:
+                    builder = Response.status(Response.Status.BAD_REQUEST)
+                            .entity(createErrorResponse("Insufficient point balance"));
+                    break;
+                default:
+                    builder = Response.status(Response.Status.NOT_FOUND)
+                            .entity(createErrorResponse("Point record not found for user: " + userId));
+                    break;
+            }
+            if (record.isReplayed()) {
+                builder.header(IDEMPOTENT_REPLAYED_HEADER, "true");
+            }
+            return builder.build();
+        } catch (IdempotencyKeyMismatchException e) {
+            return Response.status(UNPROCESSABLE_ENTITY)
+                    .entity(createErrorResponse(e.getMessage()))
+                    .build();
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(createErrorResponse(e.getMessage()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse(e.getMessage()))
+                    .build();
+        } catch (SQLException e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(createErrorResponse("Failed to update points: " + e.getMessage()))
+                    .build();
+        }
+    }
+
+    /**
+     * balance_after 未設定の履歴を補完
+     * POST /api/points/maintenance/backfill-balance-after?batchSize=500
+     * X-Service-Token ヘッダーにサービス間トークンが必要
+     */
+    @POST
+    @Path("/maintenance/backfill-balance-after")
+    public Response backfillBalanceAfter(@Context HttpHeaders headers,
+                                         @QueryParam("batchSize") @DefaultValue("500") int batchSize) {
+        Response forbidden = requireServiceToken(headers);
+        if (forbidden != null) {
+            return forbidden;
+        }
+        try {
+            int updated = pointService.backfillBalanceAfter(Math.max(1, batchSize));
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Balance history backfilled successfully");
+            response.put("updatedRows", updated);
+            return Response.ok(response).build();
+        } catch (SQLException e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(createErrorResponse("Backfill failed: " + e.getMessage()))
+                    .build();
+        }
+    }
+
+    /**
+     * ポイント一括付与
+     * POST /api/points/bulk-grant?batchSize=5000
+     * リクエスト: 1行1件の NDJSON（{"userId": "...", "amount": 100, "description": "...", "expiresAt": "2025-12-31T23:59:59"}）
+     * X-Service-Token ヘッダーにサービス間トークンが必要
+     * レスポンス: バッチごとの進捗・不正な行・失敗したバッチを NDJSON で逐次返し、最後に集計を返す
+     */
+    @POST
+    @Path("/bulk-grant")
+    @Consumes({NDJSON, MediaType.TEXT_PLAIN})
+    @Produces(NDJSON)
+    public Response bulkGrant(@Context HttpHeaders headers, InputStream body,
+                              @QueryParam("batchSize") @DefaultValue("5000") int batchSize) {
+        Response forbidden = requireServiceToken(headers);
+        if (forbidden != null) {
+            return forbidden;
+        }
+        int size = Math.min(Math.max(1, batchSize), MAX_BULK_BATCH_SIZE);
+        StreamingOutput stream = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+
+            List<PointGrant> batch = new ArrayList<>(size);
+            long[] totals = new long[4]; // 0: 付与件数, 1: 不正な行, 2: 失敗件数, 3: バッチ数
+            long startNanos = System.nanoTime();
+            int batchFirstLine = 0;
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    if (batch.isEmpty()) {
+                        batchFirstLine = lineNumber;
+                    }
+                    batch.add(parseGrant(line));
+                } catch (IllegalArgumentException e) {
+                    totals[1]++;
+                    Map<String, Object> rejected = new LinkedHashMap<>();
+                    rejected.put("type", "rejected");
+                    rejected.put("line", lineNumber);
+                    rejected.put("error", e.getMessage());
+                    writeLine(writer, rejected);
+                    continue;
+                }
+                if (batch.size() >= size) {
+                    applyGrantBatch(writer, batch, batchFirstLine, lineNumber, totals);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                applyGrantBatch(writer, batch, batchFirstLine, lineNumber, totals);
+            }
+
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("type", "summary");
+            summary.put("batches", totals[3]);
+            summary.put("granted", totals[0]);
+            summary.put("rejected", totals[1]);
+            summary.put("failed", totals[2]);
+            summary.put("elapsedMillis", elapsedMillis);
+            summary.put("grantsPerSecond", totals[0] * 1000 / elapsedMillis);
+            writeLine(writer, summary);
+        };
+        return Response.ok(stream, NDJSON).build();
+    }
+
+    /**
+     * 一括付与の1バッチを実行して進捗を出力（失敗したバッチはロールバックされ、後続のバッチは継続する）
+     */
+    private void applyGrantBatch(Writer writer, List<PointGrant> batch, int firstLine, int lastLine, long[] totals) throws IOException {
+        totals[3]++;
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("batch", totals[3]);
+        progress.put("firstLine", firstLine);
+        progress.put("lastLine", lastLine);
+        progress.put("size", batch.size());
+        try {
+            int granted = pointService.bulkEarnPoints(batch);
+            totals[0] += granted;
+            progress.put("type", "progress");
+            progress.put("granted", granted);
+            progress.put("totalGranted", totals[0]);
+        } catch (SQLException | IllegalArgumentException e) {
+            totals[2] += batch.size();
+            progress.put("type", "batchFailed");
+            progress.put("error", e.getMessage());
+            System.err.println("Bulk grant batch " + totals[3] + " failed: " + e.getMessage());
+        }
+        writeLine(writer, progress);
+    }
+
+    /**
+     * 一括付与の1行をパース
+     *
+     * @throws IllegalArgumentException 不正な行の場合
+     */
+    private PointGrant parseGrant(String line) {
+        JsonObject json;
+        try (JsonReader jsonReader = Json.createReader(new StringReader(line))) {
+            json = jsonReader.readObject();
+        } catch (JsonException | IllegalStateException e) {
+            throw new IllegalArgumentException("Invalid JSON");
+        }
+
+        UUID userId;
+        try {
+            userId = UUID.fromString(json.getString("userId"));
+        } catch (NullPointerException | ClassCastException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("userId must be a UUID");
+        }
+
+        JsonValue amountValue = json.get("amount");
+        if (!(amountValue instanceof JsonNumber) || !((JsonNumber) amountValue).isIntegral()) {
+            throw new IllegalArgumentException("amount must be an integer");
+        }
+        int amount;
+        try {
+            amount = ((JsonNumber) amountValue).intValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("amount is out of range");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be a positive number");
+        }
+
+        String description = json.containsKey("description") && !json.isNull("description")
+                ? json.getString("description", null) : null;
+
+        LocalDateTime expiresAt = null;
+        if (json.containsKey("expiresAt") && !json.isNull("expiresAt")) {
+            try {
+                expiresAt = LocalDateTime.parse(json.getString("expiresAt"));
+            } catch (ClassCastException | DateTimeParseException e) {
+                throw new IllegalArgumentException("expiresAt must be an ISO-8601 local date-time");
+            }
+            if (!expiresAt.isAfter(LocalDateTime.now())) {
+                throw new IllegalArgumentException("expiresAt must be in the future");
+            }
+        }
+        return new PointGrant(userId, amount, description, expiresAt);
+    }
+
+    private void writeLine(Writer writer, Map<String, Object> value) throws IOException {
+        writer.write(JSONB.toJson(value));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * ポイント失効処理を即時実行（通常はバックグラウンドで定期実行される）
+     * POST /api/points/maintenance/expire
+     * X-Service-Token ヘッダーにサービス間トークンが必要
+     */
+    @POST
+    @Path("/maintenance/expire")
+    public Response runExpiration(@Context HttpHeaders headers) {
+        Response forbidden = requireServiceToken(headers);
+        if (forbidden != null) {
+            return forbidden;
+        }
+        long processed = pointExpirationEngine.run();
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Point expiration completed");
+        response.put("lotsScanned", processed);
+        response.put("stats", pointExpirationEngine.getStats());
+        return Response.ok(response).build();
+    }
+
+    /**
+     * ページ先頭の履歴の取引後残高を決定
+     * balance_after が保存済みであればそのまま使い、未補完の場合のみ集計クエリで計算する
+     */
+    private int resolveBalanceAtPageStart(PointHistoryPage historyPage, List<PointHistory> histories) throws SQLException {
+        if (histories.isEmpty()) {
+            return 0;
+        }
+        PointHistory first = histories.get(0);
+        if (first.getBalanceAfter() != null) {
+            return first.getBalanceAfter();
+        }
+        return pointService.getBalanceAt(historyPage.getUserId(), HistoryCursor.of(first), historyPage.getCurrentBalance());
+    }
+
+    /**
+     * サービス間トークン（X-Service-Token）を確認
+     * 一括付与・メンテナンスは利用者のJWTでは実行させない
+     *
+     * @return 拒否する場合のレスポンス（許可する場合は null）
+     */
+    private Response requireServiceToken(HttpHeaders headers) {
+        if (ServiceTokenVerifier.verify(headers.getHeaderString(ServiceTokenVerifier.HEADER))) {
+            return null;
+        }
+        String message = ServiceTokenVerifier.isConfigured()
+                ? "Invalid or missing service token"
+                : "Service endpoints are disabled (SERVICE_API_TOKEN is not set)";
+        return Response.status(Response.Status.FORBIDDEN)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(createErrorResponse(message))
+                .build();
+    }
+
     /**
      * JWTトークンからuserIdを抽出
      */
@@ -172,27 +562,32 @@ public class PointResource {
 
     /**
      * PointHistoryのリストをMap形式に変換
-     * balanceAfterを計算するために、指定された開始残高から逆算していく
+     * balanceAfterは保存済みの値を使い、未補完の履歴は指定された開始残高から逆算していく
      */
     private List<Map<String, Object>> convertHistoriesToMap(List<PointHistory> histories, int startingBalance) {
         List<Map<String, Object>> result = new ArrayList<>();
         int balanceAfter = startingBalance;
         
         for (PointHistory history : histories) {
+            // 保存済みの取引後残高を優先（未補完の履歴は直前の値から逆算）
+            if (history.getBalanceAfter() != null) {
+                balanceAfter = history.getBalanceAfter();
+            }
+
             Map<String, Object> historyMap = new HashMap<>();
             historyMap.put("id", history.getId());
             historyMap.put("amount", Math.abs(history.getAmount())); // 常に正の値
-            historyMap.put("type", history.getTransactionType()); // EARN or USE -> そのまま使用
+            historyMap.put("type", history.getTransactionType()); // EARN, USE or EXPIRE -> そのまま使用
             historyMap.put("transactionType", history.getTransactionType()); // 互換性のため残す
             historyMap.put("description", history.getDescription());
             historyMap.put("createdAt", history.getCreatedAt());
             historyMap.put("expiresAt", history.getExpiresAt());
             historyMap.put("balanceAfter", balanceAfter);
             
-            // 次の履歴の残高を計算（古い方向に遡る）
+            // 次の履歴の残高を計算（古い方向に遡る、EARN 以外の USE・EXPIRE 等は減算）
             if ("EARN".equals(history.getTransactionType())) {
                 balanceAfter -= Math.abs(history.getAmount());
-            } else if ("USE".equals(history.getTransactionType()) || "SPEND".equals(history.getTransactionType())) {
+            } else {
                 balanceAfter += Math.abs(history.getAmount());
             }
             
@@ -0,0 +1,11 @@
+package com.example.microservices.point.service;
+
+/**
+ * 同じ冪等キーが異なる内容の要求に再利用された場合の例外
+ */
+public class IdempotencyKeyMismatchException extends IllegalArgumentException {
+
+    public IdempotencyKeyMismatchException(String idempotencyKey) {
+        super("Idempotency key was already used for a different request: " + idempotencyKey);
+    }
+}
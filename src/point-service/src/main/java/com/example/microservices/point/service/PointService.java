@@ -1,13 +1,25 @@
 package com.example.microservices.point.service;
 
+import com.example.microservices.point.cache.PointBalanceCache;
+import com.example.microservices.point.idempotency.IdempotencyKeyCache;
+import com.example.microservices.point.model.HistoryCursor;
+import com.example.microservices.point.model.IdempotencyRecord;
 import com.example.microservices.point.model.Point;
+import com.example.microservices.point.model.PointGrant;
 import com.example.microservices.point.model.PointHistory;
+import com.example.microservices.point.model.PointHistoryPage;
 import com.example.microservices.point.repository.PointRepository;
 import com.example.microservices.point.repository.PointHistoryRepository;
+import com.example.microservices.point.repository.PointIdempotencyRepository;
+import com.example.microservices.point.repository.PointLedgerRepository;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,11 +36,35 @@ public class PointService {
     @Inject
     private PointHistoryRepository pointHistoryRepository;
 
+    @Inject
+    private PointLedgerRepository pointLedgerRepository;
+
+    @Inject
+    private PointBalanceCache pointBalanceCache;
+
+    @Inject
+    private PointIdempotencyRepository pointIdempotencyRepository;
+
+    @Inject
+    private IdempotencyKeyCache idempotencyKeyCache;
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     /**
-     * ユーザーのポイント残高を取得
+     * ユーザーのポイント残高を取得（残高キャッシュを経由）
      */
     public Optional<Point> getPointBalance(UUID userId) throws SQLException {
-        return pointRepository.findByUserId(userId);
+        if (!pointBalanceCache.isEnabled()) {
+            return pointRepository.findByUserId(userId);
+        }
+        Optional<Point> cached = pointBalanceCache.get(userId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long generation = pointBalanceCache.currentGeneration();
+        Optional<Point> point = pointRepository.findByUserId(userId);
+        point.ifPresent(loaded -> pointBalanceCache.putLoaded(loaded, generation));
+        return point;
     }
 
     /**
@@ -39,63 +75,204 @@ public class PointService {
     }
 
     /**
-     * ユーザーのポイント履歴総数を取得
+     * カーソル位置の履歴の取引後残高を計算（現在の残高からそれより新しい増減を差し引く）
+     * balance_after が補完されていない履歴のためのフォールバック
+     */
+    public int getBalanceAt(UUID userId, HistoryCursor cursor, int currentBalance) throws SQLException {
+        return currentBalance - pointHistoryRepository.sumAmountNewerThan(userId, cursor);
+    }
+
+    /**
+     * balance_after が未設定の既存履歴を補完
+     *
+     * @return 更新した履歴の件数
      */
-    public int getPointHistoryCount(UUID userId) throws SQLException {
-        return pointHistoryRepository.countByUserId(userId);
+    public int backfillBalanceAfter(int userBatchSize) throws SQLException {
+        return pointHistoryRepository.backfillBalanceAfter(userBatchSize);
+    }
+
+    /**
+     * ポイント履歴の1ページ分を現在の残高・履歴総数と共に取得（DBアクセス1回）
+     */
+    public PointHistoryPage getPointHistoryPage(UUID userId, int page, int limit) throws SQLException {
+        return pointHistoryRepository.findPage(userId, null, (page - 1) * limit, limit);
+    }
+
+    /**
+     * カーソル位置以降のポイント履歴を現在の残高・履歴総数と共に取得（DBアクセス1回）
+     * cursor が null の場合は先頭ページを返す
+     */
+    public PointHistoryPage getPointHistoryPageBefore(UUID userId, HistoryCursor cursor, int limit) throws SQLException {
+        return pointHistoryRepository.findPage(userId, cursor, 0, limit);
     }
 
     /**
      * ポイントを付与
      */
     public Point earnPoints(UUID userId, Integer amount, String description) throws SQLException {
-        Optional<Point> existingPoint = pointRepository.findByUserId(userId);
-        Point updatedPoint;
-        
-        if (existingPoint.isPresent()) {
-            int newBalance = existingPoint.get().getBalance() + amount;
-            updatedPoint = pointRepository.updateBalance(userId, newBalance);
-        } else {
-            updatedPoint = pointRepository.create(userId, amount);
-        }
-
-        // 履歴を記録
-        PointHistory history = new PointHistory();
-        history.setUserId(userId);
-        history.setAmount(amount);
-        history.setTransactionType("EARN");
-        history.setDescription(description);
-        pointHistoryRepository.create(history);
+        return earnPoints(userId, amount, description, null);
+    }
 
-        return updatedPoint;
+    /**
+     * ポイントを付与（有効期限付き）
+     * 残高の加算と履歴の記録は1つのSQL文で原子的に実行する
+     */
+    public Point earnPoints(UUID userId, Integer amount, String description, LocalDateTime expiresAt) throws SQLException {
+        validateAmount(amount);
+        validateExpiresAt(expiresAt);
+        Point point = pointLedgerRepository.earn(userId, amount, description, expiresAt);
+        pointBalanceCache.put(point);
+        return point;
     }
 
     /**
      * ポイントを使用
+     * 残高不足のチェック・減算・履歴の記録は1つのSQL文で原子的に実行する
      */
     public Point usePoints(UUID userId, Integer amount, String description) throws SQLException {
-        Optional<Point> existingPoint = pointRepository.findByUserId(userId);
-        
-        if (!existingPoint.isPresent()) {
+        validateAmount(amount);
+        Optional<Point> updatedPoint = pointLedgerRepository.use(userId, amount, description);
+        if (updatedPoint.isPresent()) {
+            pointBalanceCache.put(updatedPoint.get());
+            return updatedPoint.get();
+        }
+
+        // 更新されなかった理由を判定（失敗時のみ追加で参照）
+        if (!pointRepository.findByUserId(userId).isPresent()) {
             throw new IllegalStateException("Point record not found for user: " + userId);
         }
+        throw new IllegalArgumentException("Insufficient point balance");
+    }
 
-        Point point = existingPoint.get();
-        if (point.getBalance() < amount) {
-            throw new IllegalArgumentException("Insufficient point balance");
+    /**
+     * 冪等キー付きでポイントを付与
+     * 同じキーで再送された場合は残高を変更せず、保存済みの結果を返す
+     *
+     * @throws IdempotencyKeyMismatchException 同じキーが異なる内容の要求に使われた場合
+     */
+    public IdempotencyRecord earnPoints(UUID userId, String idempotencyKey, Integer amount, String description,
+                                        LocalDateTime expiresAt) throws SQLException {
+        validateAmount(amount);
+        validateExpiresAt(expiresAt);
+        IdempotencyRecord request = new IdempotencyRecord(userId, idempotencyKey, "EARN",
+                requestHash("EARN", amount, description, expiresAt));
+        return executeIdempotent(request, (conn, record) -> {
+            Point point = pointLedgerRepository.earn(conn, userId, amount, description, expiresAt);
+            record.setOutcome(IdempotencyRecord.Outcome.SUCCEEDED);
+            record.setBalance(point.getBalance());
+            record.setLastUpdated(point.getLastUpdated());
+        });
+    }
+
+    /**
+     * 冪等キー付きでポイントを使用
+     * 残高不足等で使用できなかった場合もその結果を保存し、再送時は同じ結果を返す
+     *
+     * @throws IdempotencyKeyMismatchException 同じキーが異なる内容の要求に使われた場合
+     */
+    public IdempotencyRecord usePoints(UUID userId, String idempotencyKey, Integer amount, String description) throws SQLException {
+        validateAmount(amount);
+        IdempotencyRecord request = new IdempotencyRecord(userId, idempotencyKey, "USE",
+                requestHash("USE", amount, description, null));
+        return executeIdempotent(request, (conn, record) -> {
+            Optional<Point> point = pointLedgerRepository.use(conn, userId, amount, description);
+            if (point.isPresent()) {
+                record.setOutcome(IdempotencyRecord.Outcome.SUCCEEDED);
+                record.setBalance(point.get().getBalance());
+                record.setLastUpdated(point.get().getLastUpdated());
+            } else if (pointLedgerRepository.exists(conn, userId)) {
+                record.setOutcome(IdempotencyRecord.Outcome.INSUFFICIENT_BALANCE);
+            } else {
+                record.setOutcome(IdempotencyRecord.Outcome.POINTS_NOT_FOUND);
+            }
+        });
+    }
+
+    /**
+     * ポイントを一括付与（1バッチ分を1トランザクションで実行）
+     * 対象ユーザーの残高キャッシュは破棄する
+     *
+     * @return 付与した件数
+     */
+    public int bulkEarnPoints(List<PointGrant> grants) throws SQLException {
+        for (PointGrant grant : grants) {
+            validateAmount(grant.getAmount());
+            validateExpiresAt(grant.getExpiresAt());
+        }
+        try {
+            return pointLedgerRepository.bulkEarn(grants);
+        } finally {
+            // 失敗時もコミット済みかどうかを判別できないため、常に破棄する
+            for (PointGrant grant : grants) {
+                pointBalanceCache.invalidate(grant.getUserId());
+            }
+        }
+    }
+
+    private IdempotencyRecord executeIdempotent(IdempotencyRecord request, PointIdempotencyRepository.Operation operation) throws SQLException {
+        String key = request.getIdempotencyKey();
+        if (key == null || key.trim().isEmpty() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        // 直近に完了したキーはDBを参照せずに返す
+        Optional<IdempotencyRecord> recent = idempotencyKeyCache.get(request.getUserId(), key);
+        if (recent.isPresent()) {
+            return replayOf(request, recent.get());
         }
 
-        int newBalance = point.getBalance() - amount;
-        Point updatedPoint = pointRepository.updateBalance(userId, newBalance);
+        IdempotencyRecord result = pointIdempotencyRepository.executeOnce(request, operation);
+        idempotencyKeyCache.put(result);
+        if (result.isReplayed()) {
+            return replayOf(request, result);
+        }
+        if (result.getOutcome() == IdempotencyRecord.Outcome.SUCCEEDED) {
+            pointBalanceCache.put(new Point(result.getUserId(), result.getBalance(), result.getLastUpdated()));
+        }
+        return result;
+    }
 
-        // 履歴を記録
-        PointHistory history = new PointHistory();
-        history.setUserId(userId);
-        history.setAmount(amount);
-        history.setTransactionType("USE");
-        history.setDescription(description);
-        pointHistoryRepository.create(history);
+    private IdempotencyRecord replayOf(IdempotencyRecord request, IdempotencyRecord stored) {
+        if (!stored.getOperation().equals(request.getOperation()) || !stored.getRequestHash().equals(request.getRequestHash())) {
+            throw new IdempotencyKeyMismatchException(request.getIdempotencyKey());
+        }
+        IdempotencyRecord replay = new IdempotencyRecord(stored.getUserId(), stored.getIdempotencyKey(),
+                stored.getOperation(), stored.getRequestHash());
+        replay.setOutcome(stored.getOutcome());
+        replay.setBalance(stored.getBalance());
+        replay.setLastUpdated(stored.getLastUpdated());
+        replay.setCreatedAt(stored.getCreatedAt());
+        replay.setReplayed(true);
+        return replay;
+    }
 
-        return updatedPoint;
+    private String requestHash(String operation, Integer amount, String description, LocalDateTime expiresAt) {
+        String canonical = operation + "|" + amount + "|" + (description != null ? description : "") + "|"
+                + (expiresAt != null ? expiresAt.toString() : "");
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void validateAmount(Integer amount) {
+        if (amount == null || amount <= 0) {
+            throw new IllegalArgumentException("Amount must be a positive number");
+        }
+    }
+
+    /**
+     * 失効処理は有効期限順に進むため、既に期限切れの付与は受け付けない
+     */
+    private void validateExpiresAt(LocalDateTime expiresAt) {
+        if (expiresAt != null && !expiresAt.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("expiresAt must be in the future");
+        }
     }
 }
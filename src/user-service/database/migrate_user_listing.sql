@@ -0,0 +1,8 @@
+-- ユーザー一覧のページネーション・絞り込み用インデックスのマイグレーション
+-- 稼働中のテーブルをロックしないよう CONCURRENTLY で作成する（トランザクション外で実行すること）
+\c user_service_db;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_created_at_id ON users(created_at, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_username_pattern ON users(username varchar_pattern_ops);
+
+SELECT 'User listing indexes created' AS status;
@@ -0,0 +1,15 @@
+-- ユーザー検索用インデックスのマイグレーション
+-- 稼働中のテーブルをロックしないよう CONCURRENTLY で作成する（トランザクション外で実行すること）
+\c user_service_db;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_username_lower_pattern ON users(lower(username) text_pattern_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email_lower_pattern ON users(lower(email) text_pattern_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_full_name_lower_pattern ON users(lower(full_name) text_pattern_ops);
+
+-- pg_trgm は contrib に含まれる（CREATE EXTENSION にはデータベースの CREATE 権限が必要）
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_username_trgm ON users USING gin (lower(username) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email_trgm ON users USING gin (lower(email) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_full_name_trgm ON users USING gin (lower(full_name) gin_trgm_ops);
+
+SELECT 'User search indexes created' AS status;
@@ -15,5 +15,21 @@ CREATE TABLE IF NOT EXISTS users (
 -- インデックス作成
 CREATE INDEX idx_users_username ON users(username);
 CREATE INDEX idx_users_email ON users(email);
+-- Auth Service のユーザーディレクトリ差分取得用
+CREATE INDEX idx_users_updated_at ON users(updated_at);
+-- ユーザー一覧のキーセットページネーション用（(created_at, id) 順、作成日時の範囲指定）
+CREATE INDEX idx_users_created_at_id ON users(created_at, id);
+-- ユーザー名の前方一致検索用（LIKE 'abc%' はロケールに依存しない pattern_ops のインデックスが必要）
+CREATE INDEX idx_users_username_pattern ON users(username varchar_pattern_ops);
+-- ユーザー検索（GET /users/search）用
+-- 大文字小文字を区別しない前方一致（lower(col) LIKE 'abc%'）
+CREATE INDEX idx_users_username_lower_pattern ON users(lower(username) text_pattern_ops);
+CREATE INDEX idx_users_email_lower_pattern ON users(lower(email) text_pattern_ops);
+CREATE INDEX idx_users_full_name_lower_pattern ON users(lower(full_name) text_pattern_ops);
+-- あいまい検索（トライグラム類似度 lower(col) % 'abc'）
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX idx_users_username_trgm ON users USING gin (lower(username) gin_trgm_ops);
+CREATE INDEX idx_users_email_trgm ON users USING gin (lower(email) gin_trgm_ops);
+CREATE INDEX idx_users_full_name_trgm ON users USING gin (lower(full_name) gin_trgm_ops);
 
 SELECT 'User Service Schema created successfully' AS status;
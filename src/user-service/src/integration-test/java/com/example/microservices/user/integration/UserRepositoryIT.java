@@ -1,12 +1,21 @@
 package com.example.microservices.user.integration;
 
 import com.example.microservices.user.model.User;
+import com.example.microservices.user.model.UserCursor;
+import com.example.microservices.user.model.UserFilter;
+import com.example.microservices.user.model.UserImportResult;
+import com.example.microservices.user.model.UserSearchCursor;
+import com.example.microservices.user.model.UserSearchHit;
+import com.example.microservices.user.model.UserSearchQuery;
 import com.example.microservices.user.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -46,6 +55,21 @@ class UserRepositoryIT extends BaseIntegrationTest {
         assertEquals("testuser3", users.get(2).getUsername());
     }
 
+    @Test
+    void testFindPage_WithoutCursor_ShouldReturnAllUsers() throws SQLException {
+        // Act
+        List<User> users = userRepository.findPage(new UserFilter(), null, 100);
+
+        // Assert
+        assertNotNull(users);
+        assertEquals(3, users.size());
+        
+        // (created_at, id) 順に並んでいることを確認（テストデータは同じ作成日時）
+        assertEquals("testuser1", users.get(0).getUsername());
+        assertEquals("testuser2", users.get(1).getUsername());
+        assertEquals("testuser3", users.get(2).getUsername());
+    }
+
     @Test
     void testFindById_WithValidId_ShouldReturnUser() throws SQLException {
         // Arrange
@@ -159,6 +183,36 @@ class UserRepositoryIT extends BaseIntegrationTest {
         assertEquals("Updated Name", foundUser.get().getFullName());
     }
 
+    @Test
+    void testUpdateReturning_ShouldUpdateExistingUser() throws SQLException {
+        // Arrange
+        UUID testUserId = UUID.fromString("123e4567-e89b-12d3-a456-426614174002");
+        Optional<User> existingUserOpt = userRepository.findById(testUserId);
+        assertTrue(existingUserOpt.isPresent());
+        
+        User existingUser = existingUserOpt.get();
+        existingUser.setEmail("updated@example.com");
+        existingUser.setFullName("Updated Name");
+
+        // Act
+        Optional<User> updated = userRepository.updateReturning(existingUser, null);
+
+        // Assert
+        assertTrue(updated.isPresent());
+        User updatedUser = updated.get();
+        assertEquals(testUserId, updatedUser.getId());
+        assertEquals("testuser3", updatedUser.getUsername());
+        assertEquals("updated@example.com", updatedUser.getEmail());
+        assertEquals("Updated Name", updatedUser.getFullName());
+        assertNotNull(updatedUser.getUpdatedAt());
+
+        // DBから取得して確認
+        Optional<User> foundUser = userRepository.findById(testUserId);
+        assertTrue(foundUser.isPresent());
+        assertEquals("updated@example.com", foundUser.get().getEmail());
+        assertEquals("Updated Name", foundUser.get().getFullName());
+    }
+
     @Test
     void testDelete_ShouldRemoveUser() throws SQLException {
         // Arrange
@@ -179,4 +233,231 @@ class UserRepositoryIT extends BaseIntegrationTest {
         List<User> remainingUsers = userRepository.findAll();
         assertEquals(2, remainingUsers.size());
     }
+
+    @Test
+    void testDeleteReturning_ShouldRemoveUser() throws SQLException {
+        // Arrange
+        UUID testUserId = UUID.fromString("123e4567-e89b-12d3-a456-426614174001");
+        
+        // 削除前に存在確認
+        Optional<User> beforeDelete = userRepository.findById(testUserId);
+        assertTrue(beforeDelete.isPresent());
+
+        // Act
+        boolean deleted = userRepository.deleteReturning(testUserId, null);
+
+        // Assert
+        assertTrue(deleted);
+        Optional<User> afterDelete = userRepository.findById(testUserId);
+        assertFalse(afterDelete.isPresent());
+        
+        // 他のユーザーは残っていることを確認
+        List<User> remainingUsers = userRepository.findPage(new UserFilter(), null, 100);
+        assertEquals(2, remainingUsers.size());
+    }
+
+    @Test
+    void testFindPage_ShouldPaginateWithCursor() throws SQLException {
+        // Act
+        List<User> firstPage = userRepository.findPage(new UserFilter(), null, 2);
+        List<User> secondPage = userRepository.findPage(new UserFilter(), UserCursor.of(firstPage.get(1)), 2);
+
+        // Assert
+        assertEquals(2, firstPage.size());
+        assertEquals("testuser1", firstPage.get(0).getUsername());
+        assertEquals("testuser2", firstPage.get(1).getUsername());
+        assertEquals(1, secondPage.size());
+        assertEquals("testuser3", secondPage.get(0).getUsername());
+    }
+
+    @Test
+    void testFindPage_CursorShouldRoundTrip() throws SQLException {
+        // Arrange
+        List<User> firstPage = userRepository.findPage(new UserFilter(), null, 1);
+        UserCursor cursor = UserCursor.decode(UserCursor.of(firstPage.get(0)).encode());
+
+        // Act
+        List<User> nextPage = userRepository.findPage(new UserFilter(), cursor, 10);
+
+        // Assert
+        assertEquals(2, nextPage.size());
+        assertEquals("testuser2", nextPage.get(0).getUsername());
+    }
+
+    @Test
+    void testFindPage_WithUsernamePrefix_ShouldFilter() throws SQLException {
+        // Act
+        List<User> matched = userRepository.findPage(new UserFilter("testuser2", null, null), null, 10);
+        // "_" はワイルドカードではなく文字として扱われる
+        List<User> escaped = userRepository.findPage(new UserFilter("test_", null, null), null, 10);
+
+        // Assert
+        assertEquals(1, matched.size());
+        assertEquals("testuser2", matched.get(0).getUsername());
+        assertTrue(escaped.isEmpty());
+    }
+
+    @Test
+    void testFindPage_WithCreatedRange_ShouldFilter() throws SQLException {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+
+        // Act
+        List<User> future = userRepository.findPage(new UserFilter(null, now.plusDays(1), null), null, 10);
+        List<User> past = userRepository.findPage(new UserFilter(null, now.minusDays(1), now.plusDays(1)), null, 10);
+
+        // Assert
+        assertTrue(future.isEmpty());
+        assertEquals(3, past.size());
+    }
+
+    @Test
+    void testStreamAll_ShouldVisitAllUsersInOrder() throws Exception {
+        // Arrange
+        List<String> usernames = new ArrayList<>();
+
+        // Act
+        long count = userRepository.streamAll(new UserFilter(), null, 1, user -> usernames.add(user.getUsername()));
+
+        // Assert
+        assertEquals(3, count);
+        assertEquals(List.of("testuser1", "testuser2", "testuser3"), usernames);
+    }
+
+    @Test
+    void testUpdateReturning_ShouldReturnUpdatedRow() throws SQLException {
+        // Arrange
+        UUID testUserId = UUID.fromString("123e4567-e89b-12d3-a456-426614174002");
+        User existing = userRepository.findById(testUserId).orElseThrow();
+        existing.setEmail("returning@example.com");
+
+        // Act
+        Optional<User> updated = userRepository.updateReturning(existing, List.of(existing.getUpdatedAt()));
+
+        // Assert
+        assertTrue(updated.isPresent());
+        assertEquals("returning@example.com", updated.get().getEmail());
+        assertEquals("testuser3", updated.get().getUsername());
+        assertNotNull(updated.get().getCreatedAt());
+        assertNotNull(updated.get().getUpdatedAt());
+    }
+
+    @Test
+    void testUpdateReturning_WithStaleVersion_ShouldNotUpdate() throws SQLException {
+        // Arrange
+        UUID testUserId = UUID.fromString("123e4567-e89b-12d3-a456-426614174002");
+        User existing = userRepository.findById(testUserId).orElseThrow();
+        LocalDateTime staleVersion = existing.getUpdatedAt().minusSeconds(1);
+        existing.setEmail("stale@example.com");
+
+        // Act
+        Optional<User> updated = userRepository.updateReturning(existing, List.of(staleVersion));
+
+        // Assert
+        assertFalse(updated.isPresent());
+        assertEquals("test3@example.com", userRepository.findById(testUserId).orElseThrow().getEmail());
+    }
+
+    @Test
+    void testUpdateReturning_WithUnknownId_ShouldReturnEmpty() throws SQLException {
+        // Arrange
+        User user = new User(UUID.fromString("00000000-0000-0000-0000-000000000000"), "ghost", "ghost@example.com", "Ghost");
+
+        // Act & Assert
+        assertFalse(userRepository.updateReturning(user, null).isPresent());
+    }
+
+    @Test
+    void testDeleteReturning_ShouldReportDeletedRow() throws SQLException {
+        // Arrange
+        UUID testUserId = UUID.fromString("123e4567-e89b-12d3-a456-426614174001");
+        User existing = userRepository.findById(testUserId).orElseThrow();
+
+        // Act & Assert
+        assertFalse(userRepository.deleteReturning(testUserId, List.of(existing.getUpdatedAt().minusSeconds(1))));
+        assertTrue(userRepository.findById(testUserId).isPresent());
+        assertTrue(userRepository.deleteReturning(testUserId, List.of(existing.getUpdatedAt())));
+        assertFalse(userRepository.findById(testUserId).isPresent());
+        assertFalse(userRepository.deleteReturning(testUserId, null));
+    }
+
+    @Test
+    void testFindByIds_ShouldReturnExistingUsersOnly() throws SQLException {
+        // Arrange
+        UUID first = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+        UUID third = UUID.fromString("123e4567-e89b-12d3-a456-426614174002");
+        UUID unknown = UUID.fromString("00000000-0000-0000-0000-000000000000");
+
+        // Act
+        List<User> users = userRepository.findByIds(List.of(first, third, unknown));
+
+        // Assert
+        assertEquals(2, users.size());
+        assertTrue(users.stream().anyMatch(user -> user.getId().equals(first)));
+        assertTrue(users.stream().anyMatch(user -> user.getId().equals(third)));
+        assertTrue(userRepository.findByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    void testImportUsers_ShouldInsertNewUsersAndRejectExisting() throws SQLException {
+        // Arrange
+        List<User> users = List.of(
+                new User(null, "imported1", "imported1@example.com", "Imported, \"One\""),
+                new User(null, "testuser1", "fresh@example.com", "Existing Username"),
+                new User(null, "imported2", "test2@example.com", "Existing Email"),
+                new User(null, "imported3", "imported3@example.com", "Imported Three"));
+
+        // Act
+        UserImportResult result = userRepository.importUsers(users);
+
+        // Assert
+        assertEquals(2, result.getCreated().size());
+        assertEquals("Username already exists", result.getRejected().get(1));
+        assertEquals("Email already exists", result.getRejected().get(2));
+        User imported = userRepository.findById(result.getCreated().get(0)).orElseThrow();
+        assertEquals("imported1", imported.getUsername());
+        assertEquals("Imported, \"One\"", imported.getFullName());
+        assertTrue(userRepository.findByUsername("imported3").isPresent());
+        assertEquals(5, userRepository.findPage(new UserFilter(), null, 100).size());
+    }
+
+    @Test
+    void testSearchByPrefix_ShouldMatchCaseInsensitivelyAndPaginate() throws SQLException {
+        // Arrange
+        UserSearchQuery query = new UserSearchQuery("TESTUSER", UserSearchQuery.Mode.PREFIX,
+                EnumSet.of(UserSearchQuery.Field.USERNAME));
+
+        // Act
+        List<UserSearchHit> firstPage = userRepository.searchByPrefix(query, null, 2);
+        UserSearchCursor cursor = UserSearchCursor.decode(
+                UserSearchCursor.of(query.getMode(), firstPage.get(1)).encode(), query.getMode());
+        List<UserSearchHit> secondPage = userRepository.searchByPrefix(query, cursor, 2);
+
+        // Assert
+        assertEquals(2, firstPage.size());
+        assertEquals("testuser1", firstPage.get(0).getUser().getUsername());
+        assertEquals("testuser2", firstPage.get(1).getUser().getUsername());
+        assertEquals(1, secondPage.size());
+        assertEquals("testuser3", secondPage.get(0).getUser().getUsername());
+    }
+
+    @Test
+    void testSearchByPrefix_ShouldMatchEmail() throws SQLException {
+        // Arrange
+        UserSearchQuery query = new UserSearchQuery("Test2@", UserSearchQuery.Mode.PREFIX,
+                EnumSet.of(UserSearchQuery.Field.USERNAME, UserSearchQuery.Field.EMAIL));
+
+        // Act
+        List<UserSearchHit> hits = userRepository.searchByPrefix(query, null, 10);
+
+        // Assert
+        assertEquals(1, hits.size());
+        assertEquals("test2@example.com", hits.get(0).getUser().getEmail());
+    }
+
+    @Test
+    void testIsTrigramAvailable_ShouldBeFalseWithoutExtension() throws SQLException {
+        // テスト用スキーマでは pg_trgm を作成しない（あいまい検索はメモリ上の索引を使用する）
+        assertFalse(userRepository.isTrigramAvailable());
+    }
 }
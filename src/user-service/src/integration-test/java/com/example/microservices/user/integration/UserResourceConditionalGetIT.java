@@ -0,0 +1,184 @@
+package com.example.microservices.user.integration;
+
+import com.example.microservices.user.cache.ConditionalGetStats;
+import com.example.microservices.user.cache.UserProfileCache;
+import com.example.microservices.user.model.User;
+import com.example.microservices.user.repository.UserRepository;
+import com.example.microservices.user.rest.UserResource;
+import com.example.microservices.user.search.UserSearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * UserResource の ETag / 304 応答とプロフィールキャッシュの無効化のIntegration Test
+ * If-None-Match の評価はコンテナ（Request）の役割のため、強い比較で評価するモックで代替します。
+ */
+class UserResourceConditionalGetIT extends BaseIntegrationTest {
+
+    private static final UUID TEST_USER_ID = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+
+    private UserResource userResource;
+    private ConditionalGetStats conditionalGetStats;
+    private String ifNoneMatch;
+
+    @BeforeEach
+    void setUpResource() throws Exception {
+        UserRepository userRepository = new UserRepository();
+        inject(userRepository, "dataSource", getDataSource());
+
+        conditionalGetStats = new ConditionalGetStats();
+        ifNoneMatch = null;
+
+        HttpHeaders httpHeaders = mock(HttpHeaders.class);
+        when(httpHeaders.getHeaderString(eq(HttpHeaders.IF_NONE_MATCH))).thenAnswer(invocation -> ifNoneMatch);
+
+        Request request = mock(Request.class);
+        when(request.evaluatePreconditions(any(EntityTag.class))).thenAnswer(invocation -> {
+            EntityTag etag = invocation.getArgument(0);
+            return ifNoneMatch != null && ifNoneMatch.equals(etag.toString()) ? Response.notModified(etag) : null;
+        });
+
+        userResource = new UserResource();
+        inject(userResource, "userRepository", userRepository);
+        inject(userResource, "userProfileCache", new UserProfileCache());
+        inject(userResource, "conditionalGetStats", conditionalGetStats);
+        inject(userResource, "userSearchService", mock(UserSearchService.class));
+        inject(userResource, "request", request);
+        inject(userResource, "httpHeaders", httpHeaders);
+    }
+
+    @Test
+    void testGetUserById_ShouldReturnETagAndRevalidateCacheControl() {
+        // Act
+        Response response = userResource.getUserById(TEST_USER_ID);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        EntityTag etag = response.getEntityTag();
+        assertNotNull(etag);
+        assertFalse(etag.isWeak());
+        assertTrue(etag.getValue().matches(TEST_USER_ID + "-[0-9a-f]+"));
+        String cacheControl = response.getHeaderString(HttpHeaders.CACHE_CONTROL);
+        assertTrue(cacheControl.contains("private"));
+        assertTrue(cacheControl.contains("no-cache"));
+
+        // 更新されていなければ同じ ETag を返す
+        assertEquals(etag, userResource.getUserById(TEST_USER_ID).getEntityTag());
+    }
+
+    @Test
+    void testGetUserById_WithMatchingIfNoneMatch_ShouldReturn304FromCache() throws SQLException {
+        // Arrange
+        EntityTag etag = userResource.getUserById(TEST_USER_ID).getEntityTag();
+        // キャッシュ済みであればDBを参照しないことを確認するため、行を直接削除しておく
+        executeUpdate("DELETE FROM users WHERE id = ?", TEST_USER_ID);
+        ifNoneMatch = etag.toString();
+
+        // Act
+        Response response = userResource.getUserById(TEST_USER_ID);
+
+        // Assert
+        assertEquals(304, response.getStatus());
+        assertFalse(response.hasEntity());
+        assertNotNull(response.getHeaderString(HttpHeaders.CACHE_CONTROL));
+        assertEquals(1L, conditionalGetStats.getStats().get("notModified"));
+        assertEquals(1L, conditionalGetStats.getStats().get("conditionalRequests"));
+    }
+
+    @Test
+    void testGetUserById_WithStaleIfNoneMatch_ShouldReturn200() {
+        // Arrange
+        ifNoneMatch = "\"" + TEST_USER_ID + "-0\"";
+
+        // Act
+        Response response = userResource.getUserById(TEST_USER_ID);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertNotEquals(ifNoneMatch, response.getEntityTag().toString());
+        assertEquals(0L, conditionalGetStats.getStats().get("notModified"));
+    }
+
+    @Test
+    void testUpdateUser_ShouldInvalidateCacheAndChangeETag() throws Exception {
+        // Arrange
+        EntityTag before = userResource.getUserById(TEST_USER_ID).getEntityTag();
+        Thread.sleep(5);
+
+        // Act
+        User update = new User(null, "testuser1-renamed", "test1@example.com", "Test User One");
+        Response updated = userResource.updateUser(TEST_USER_ID, update);
+
+        // Assert: 更新前の ETag による条件付き GET は 304 にならず、最新の内容と ETag が返る
+        assertEquals(200, updated.getStatus());
+        assertNotEquals(before, updated.getEntityTag());
+
+        ifNoneMatch = before.toString();
+        Response response = userResource.getUserById(TEST_USER_ID);
+        assertEquals(200, response.getStatus());
+        assertEquals(updated.getEntityTag(), response.getEntityTag());
+        assertEquals("testuser1-renamed", ((User) response.getEntity()).getUsername());
+
+        // 新しい ETag では 304
+        ifNoneMatch = updated.getEntityTag().toString();
+        assertEquals(304, userResource.getUserById(TEST_USER_ID).getStatus());
+    }
+
+    @Test
+    void testUpdateUser_ShouldInvalidateUsernameLookup() {
+        // Arrange
+        assertEquals(200, userResource.getUserByUsername("testuser1").getStatus());
+
+        // Act
+        userResource.updateUser(TEST_USER_ID, new User(null, "testuser1-renamed", "test1@example.com", "Test User One"));
+
+        // Assert
+        assertEquals(404, userResource.getUserByUsername("testuser1").getStatus());
+        assertEquals(200, userResource.getUserByUsername("testuser1-renamed").getStatus());
+    }
+
+    @Test
+    void testDeleteUser_ShouldInvalidateCache() {
+        // Arrange
+        assertEquals(200, userResource.getUserById(TEST_USER_ID).getStatus());
+
+        // Act
+        Response deleted = userResource.deleteUser(TEST_USER_ID);
+
+        // Assert
+        assertEquals(204, deleted.getStatus());
+        assertEquals(404, userResource.getUserById(TEST_USER_ID).getStatus());
+        assertEquals(404, userResource.getUserAccount(TEST_USER_ID).getStatus());
+    }
+
+    private void executeUpdate(String sql, UUID id) throws SQLException {
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    // リフレクションを使用して依存をインジェクト
+    private void inject(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.microservices.user.integration;
+
+import com.example.microservices.user.model.UserSearchCursor;
+import com.example.microservices.user.model.UserSearchHit;
+import com.example.microservices.user.model.UserSearchQuery;
+import com.example.microservices.user.repository.UserRepository;
+import com.example.microservices.user.search.UserSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * pg_trgm によるあいまい検索のIntegration Test
+ * UserRepository#searchBySimilarity（DB）の類似度・並び・カーソルによるページングが、
+ * pg_trgm が使えない環境で代わりに使う UserSearchIndex（メモリ上）の結果と一致することを確認します。
+ */
+class UserSearchSimilarityIT extends BaseIntegrationTest {
+
+    private static final float THRESHOLD = 0.3f;
+
+    private UserRepository userRepository;
+    private UserSearchIndex userSearchIndex;
+
+    @BeforeEach
+    void setUpSearch() throws Exception {
+        try (Connection conn = getDataSource().getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        }
+        addUser("word", "Word");
+        addUser("words", "Word");
+        addUser("two_words", "Word");
+        addUser("sword", "Sword Fish");
+        addUser("wordsmith", "Words Mith");
+        addUser("world", "World");
+        addUser("Wordy", "Wordy");
+        addUser("other", "Someone Else");
+        addUser("word-play", "Word Play");
+
+        userRepository = new UserRepository();
+
+        // リフレクションを使用してDataSourceをインジェクト
+        Field dataSourceField = UserRepository.class.getDeclaredField("dataSource");
+        dataSourceField.setAccessible(true);
+        dataSourceField.set(userRepository, getDataSource());
+
+        userSearchIndex = new UserSearchIndex();
+        Field repositoryField = UserSearchIndex.class.getDeclaredField("userRepository");
+        repositoryField.setAccessible(true);
+        repositoryField.set(userSearchIndex, userRepository);
+    }
+
+    @Test
+    void testSearchBySimilarity_ShouldMatchInMemoryIndex() throws Exception {
+        // Arrange
+        UserSearchQuery query = query("word");
+
+        // Act
+        List<UserSearchHit> fromDb = userRepository.searchBySimilarity(query, null, 100, THRESHOLD);
+        List<UserSearchHit> fromIndex = userSearchIndex.searchBySimilarity(query, null, 100, THRESHOLD);
+
+        // Assert: 同じユーザーが同じ類似度・同じ順（類似度の降順、同じ類似度は id 順）で返る
+        assertFalse(fromDb.isEmpty());
+        assertEquals(ids(fromIndex), ids(fromDb));
+        for (int i = 0; i < fromDb.size(); i++) {
+            assertEquals(fromIndex.get(i).getScore(), fromDb.get(i).getScore(), 1e-6f);
+        }
+    }
+
+    @Test
+    void testSearchBySimilarity_WithCursor_ShouldPageLikeInMemoryIndex() throws Exception {
+        // Arrange
+        UserSearchQuery query = query("word");
+        List<UserSearchHit> all = userSearchIndex.searchBySimilarity(query, null, 100, THRESHOLD);
+
+        // Act: DB で2件ずつ、エンコード・デコードしたカーソルで続きを取得
+        List<UserSearchHit> paged = new ArrayList<>();
+        UserSearchCursor cursor = null;
+        while (true) {
+            List<UserSearchHit> page = userRepository.searchBySimilarity(query, cursor, 2, THRESHOLD);
+            if (page.isEmpty()) {
+                break;
+            }
+            paged.addAll(page);
+            String encoded = UserSearchCursor.of(UserSearchQuery.Mode.FUZZY, page.get(page.size() - 1)).encode();
+            cursor = UserSearchCursor.decode(encoded, UserSearchQuery.Mode.FUZZY);
+        }
+
+        // Assert: 同じ類似度のユーザーがページをまたいでも重複・欠落しない
+        assertEquals(ids(all), ids(paged));
+    }
+
+    private void addUser(String username, String fullName) throws SQLException {
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO users (id, username, email, full_name) VALUES (?, ?, ?, ?)")) {
+            stmt.setObject(1, UUID.randomUUID());
+            stmt.setString(2, username);
+            stmt.setString(3, username + "@example.com");
+            stmt.setString(4, fullName);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static UserSearchQuery query(String text) {
+        return new UserSearchQuery(text, UserSearchQuery.Mode.FUZZY,
+                EnumSet.of(UserSearchQuery.Field.USERNAME, UserSearchQuery.Field.FULL_NAME));
+    }
+
+    private static List<UUID> ids(List<UserSearchHit> hits) {
+        List<UUID> ids = new ArrayList<>();
+        for (UserSearchHit hit : hits) {
+            ids.add(hit.getUser().getId());
+        }
+        return ids;
+    }
+}
@@ -11,3 +11,9 @@ CREATE TABLE IF NOT EXISTS users (
 -- インデックス作成
 CREATE INDEX IF NOT EXISTS idx_users_username ON users(username);
 CREATE INDEX IF NOT EXISTS idx_users_email ON users(email);
+CREATE INDEX IF NOT EXISTS idx_users_created_at_id ON users(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_users_username_pattern ON users(username varchar_pattern_ops);
+-- 前方一致検索用（pg_trgm はあいまい検索の比較を行う UserSearchSimilarityIT でのみ作成する）
+CREATE INDEX IF NOT EXISTS idx_users_username_lower_pattern ON users(lower(username) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_users_email_lower_pattern ON users(lower(email) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_users_full_name_lower_pattern ON users(lower(full_name) text_pattern_ops);
@@ -0,0 +1,50 @@
+package com.example.microservices.user.cache;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ETag 付き GET の統計
+ * If-None-Match 付きのリクエストのうち 304 Not Modified で応答した割合を集計する
+ */
+@ApplicationScoped
+public class ConditionalGetStats {
+
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder conditionalRequests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    /**
+     * ETag 付きで応答した GET を記録
+     *
+     * @param conditional If-None-Match が指定されていた
+     * @param wasNotModified 304 で応答した
+     */
+    public void record(boolean conditional, boolean wasNotModified) {
+        responses.increment();
+        if (conditional) {
+            conditionalRequests.increment();
+        }
+        if (wasNotModified) {
+            notModified.increment();
+        }
+    }
+
+    /**
+     * 統計を取得
+     */
+    public Map<String, Object> getStats() {
+        long total = responses.sum();
+        long conditional = conditionalRequests.sum();
+        long notModifiedCount = notModified.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("responses", total);
+        stats.put("conditionalRequests", conditional);
+        stats.put("notModified", notModifiedCount);
+        stats.put("notModifiedRate", total > 0 ? (double) notModifiedCount / total : 0.0);
+        stats.put("conditionalHitRate", conditional > 0 ? (double) notModifiedCount / conditional : 0.0);
+        return stats;
+    }
+}
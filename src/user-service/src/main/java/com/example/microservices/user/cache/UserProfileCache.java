@@ -0,0 +1,204 @@
+package com.example.microservices.user.cache;
+
+import com.example.microservices.user.model.User;
+import com.example.microservices.user.util.ConfigUtil;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ユーザープロフィールキャッシュ
+ * 読み取り時にDBから取得したユーザーを ID とユーザー名の両方で引けるように保持する（read-through）。
+ * 作成・更新・削除時に無効化し、他ノードでの更新は TTL で反映する。
+ */
+@ApplicationScoped
+public class UserProfileCache {
+
+    private final boolean enabled = ConfigUtil.getBoolean("USER_CACHE_ENABLED", true);
+    private final int maxEntries = ConfigUtil.getInt("USER_CACHE_MAX_ENTRIES", 100_000);
+    // 他ノードでの更新を反映するまでの上限
+    private final long ttlMillis = ConfigUtil.getLong("USER_CACHE_TTL_MILLIS", 30 * 1000L);
+
+    // ユーザー名 → ID（参照時にエントリのユーザー名と一致するか確認する）
+    private final ConcurrentHashMap<String, UUID> usernameIndex = new ConcurrentHashMap<>();
+
+    // 無効化のたびに進める世代番号（読み込み中に無効化された値を登録しないために使用）
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder usernameHits = new LongAdder();
+    private final LongAdder usernameMisses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder discardedLoads = new LongAdder();
+
+    private final BoundedExpiringMap<UUID, Entry> entries = new BoundedExpiringMap<>(
+            maxEntries, entry -> entry.loadedAtMillis + ttlMillis, this::onRemoval);
+
+    private static class Entry {
+        private final User user;
+        private final long loadedAtMillis;
+
+        Entry(User user, long loadedAtMillis) {
+            this.user = user;
+            this.loadedAtMillis = loadedAtMillis;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * ID でキャッシュされたユーザーを取得
+     */
+    public Optional<User> get(UUID id) {
+        Optional<User> user = lookup(id);
+        if (user.isPresent()) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return user;
+    }
+
+    /**
+     * ユーザー名でキャッシュされたユーザーを取得
+     */
+    public Optional<User> getByUsername(String username) {
+        UUID id = usernameIndex.get(username);
+        Optional<User> user = id != null ? lookup(id) : Optional.empty();
+        if (user.isPresent() && !username.equals(user.get().getUsername())) {
+            // ユーザー名が変更された後の古い索引
+            usernameIndex.remove(username, id);
+            user = Optional.empty();
+        }
+        if (user.isPresent()) {
+            usernameHits.increment();
+        } else {
+            usernameMisses.increment();
+        }
+        return user;
+    }
+
+    /**
+     * DB読み込み前に取得する世代番号
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * DBから読み込んだユーザーを登録（read-through）
+     * 読み込み中に無効化が発生していた場合は古い値の可能性があるため登録しない
+     */
+    public void putLoaded(User user, long loadedGeneration) {
+        if (!enabled || user == null || user.getId() == null) {
+            return;
+        }
+        if (generation.get() != loadedGeneration) {
+            discardedLoads.increment();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.put(user.getId(), new Entry(copy(user), now), now);
+        if (user.getUsername() != null) {
+            usernameIndex.put(user.getUsername(), user.getId());
+        }
+    }
+
+    /**
+     * ユーザーを破棄（作成・更新・削除時）
+     */
+    public void invalidate(UUID id) {
+        generation.incrementAndGet();
+        Entry removed = entries.remove(id);
+        if (removed != null) {
+            invalidations.increment();
+            if (removed.user.getUsername() != null) {
+                usernameIndex.remove(removed.user.getUsername(), id);
+            }
+        }
+    }
+
+    /**
+     * 全件破棄
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        int size = entries.size();
+        entries.clear();
+        usernameIndex.clear();
+        invalidations.add(size);
+    }
+
+    /**
+     * キャッシュの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long usernameHitCount = usernameHits.sum();
+        long usernameMissCount = usernameMisses.sum();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", ratio(hitCount, missCount));
+        stats.put("usernameHits", usernameHitCount);
+        stats.put("usernameMisses", usernameMissCount);
+        stats.put("usernameHitRatio", ratio(usernameHitCount, usernameMissCount));
+        stats.put("expirations", expirations.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("discardedLoads", discardedLoads.sum());
+        return stats;
+    }
+
+    private Optional<User> lookup(UUID id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (System.currentTimeMillis() - entry.loadedAtMillis >= ttlMillis) {
+            if (entries.remove(id, entry)) {
+                expirations.increment();
+                usernameIndex.remove(entry.user.getUsername(), id);
+            }
+            return Optional.empty();
+        }
+        return Optional.of(copy(entry.user));
+    }
+
+    // 期限切れの削除・追い出しで外れたエントリのユーザー名索引を削除
+    private void onRemoval(UUID id, Entry entry, boolean expired) {
+        (expired ? expirations : evictions).increment();
+        if (entry.user.getUsername() != null) {
+            usernameIndex.remove(entry.user.getUsername(), id);
+        }
+    }
+
+    private double ratio(long hitCount, long missCount) {
+        long lookups = hitCount + missCount;
+        return lookups > 0 ? (double) hitCount / lookups : 0.0;
+    }
+
+    // User は可変のため、呼び出し元による変更がキャッシュに影響しないよう複製する
+    private User copy(User user) {
+        User copy = new User(user.getId(), user.getUsername(), user.getEmail(), user.getFullName());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+}
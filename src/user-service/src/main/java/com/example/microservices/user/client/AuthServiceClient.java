@@ -0,0 +1,106 @@
+package com.example.microservices.user.client;
+
+import com.example.microservices.user.util.ConfigUtil;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.json.JsonObject;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 認証サービスクライアント（ユーザー一括インポート時の認証情報登録用）
+ */
+@ApplicationScoped
+public class AuthServiceClient {
+
+    private static final String AUTH_SERVICE_URL = ConfigUtil.getString("AUTH_SERVICE_URL", "http://localhost:8081");
+    private static final long CONNECT_TIMEOUT_MILLIS = ConfigUtil.getLong("AUTH_SERVICE_CONNECT_TIMEOUT_MILLIS", 1000);
+    // 平文パスワードのハッシュ化を含むため、通常の API 呼び出しより長く待つ
+    private static final long READ_TIMEOUT_MILLIS = ConfigUtil.getLong("AUTH_SERVICE_READ_TIMEOUT_MILLIS", 60000);
+    // 認証情報の一括登録はサービス間トークンを持つ呼び出し元に限られる
+    private static final String SERVICE_TOKEN_HEADER = "X-Service-Token";
+    private static final String SERVICE_API_TOKEN = ConfigUtil.getString("SERVICE_API_TOKEN", null);
+    // 認証サービスのハッシュ化スレッドプールが満杯（503）の場合に Retry-After に従って再送する回数
+    private static final int BUSY_RETRIES = ConfigUtil.getInt("AUTH_SERVICE_BUSY_RETRIES", 3);
+    private static final long MAX_RETRY_AFTER_MILLIS = 10000;
+
+    private Client client;
+    private WebTarget credentialsBatchTarget;
+
+    @PostConstruct
+    void init() {
+        client = ClientBuilder.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .readTimeout(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .build();
+        credentialsBatchTarget = client.target(AUTH_SERVICE_URL)
+                .path("/auth-service/api/auth/credentials/batch");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        client.close();
+    }
+
+    /**
+     * 認証情報を一括登録
+     *
+     * @param credentials {"userId", "password" または "passwordHash"} の一覧
+     * @return 認証サービスの応答（created / skipped / rejected）
+     * @throws ProcessingException 接続できない、または 200 以外で応答した（503 は再送してもなお満杯の場合）
+     */
+    public JsonObject createCredentials(List<Map<String, Object>> credentials) {
+        Map<String, Object> body = Collections.singletonMap("credentials", credentials);
+        for (int attempt = 0; ; attempt++) {
+            Response response = credentialsBatchTarget.request(MediaType.APPLICATION_JSON)
+                    .header(SERVICE_TOKEN_HEADER, SERVICE_API_TOKEN)
+                    .post(Entity.entity(body, MediaType.APPLICATION_JSON));
+            long retryAfterMillis;
+            try {
+                int status = response.getStatus();
+                if (status == Response.Status.OK.getStatusCode()) {
+                    return response.readEntity(JsonObject.class);
+                }
+                String error = response.readEntity(String.class);
+                if (status != Response.Status.SERVICE_UNAVAILABLE.getStatusCode() || attempt >= BUSY_RETRIES) {
+                    throw new ProcessingException("Credential batch failed with status " + status + ": " + error);
+                }
+                retryAfterMillis = retryAfterMillis(response.getHeaderString("Retry-After"));
+            } finally {
+                response.close();
+            }
+            try {
+                Thread.sleep(retryAfterMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessingException("Interrupted while waiting to retry the credential batch", e);
+            }
+        }
+    }
+
+    /**
+     * Retry-After（秒）を待機時間に変換（未指定・不正な値は1秒、上限は MAX_RETRY_AFTER_MILLIS）
+     */
+    private static long retryAfterMillis(String retryAfter) {
+        long millis = 1000;
+        if (retryAfter != null) {
+            try {
+                millis = Long.parseLong(retryAfter.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                // HTTP 日付形式は使わないため既定値で待つ
+            }
+        }
+        return Math.min(Math.max(millis, 0), MAX_RETRY_AFTER_MILLIS);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.microservices.user.importer;
+
+import com.example.microservices.user.model.User;
+import com.example.microservices.user.model.UserImportRow;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 一括インポートの入力を1行ずつ読み込んで検証する
+ * CSV（1行目はヘッダー: username,email,fullName[,password][,passwordHash]）と
+ * NDJSON（1行1件の JSON オブジェクト）に対応する。入力全体をメモリに載せずに読み進める。
+ */
+public class UserImportReader {
+
+    private static final int MAX_USERNAME_LENGTH = 50;
+    private static final int MAX_EMAIL_LENGTH = 100;
+    private static final int MAX_FULL_NAME_LENGTH = 100;
+
+    private final BufferedReader reader;
+    private final boolean csv;
+    // CSV の列名 → 列番号
+    private final Map<String, Integer> columns = new HashMap<>();
+    private int lineNumber;
+
+    /**
+     * @param csv true の場合 CSV、false の場合 NDJSON として読む
+     * @throws IllegalArgumentException CSV のヘッダーがない、または必須の列がない
+     */
+    public UserImportReader(InputStream body, boolean csv) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        this.csv = csv;
+        if (csv) {
+            readHeader();
+        }
+    }
+
+    /**
+     * 直前に読み込んだ行の行番号（1始まり）
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * 次の行を読み込む（空行は読み飛ばす）
+     *
+     * @return 入力の終端に達した場合は null
+     * @throws IllegalArgumentException 不正な行の場合（後続の行は続けて読める）
+     */
+    public UserImportRow next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!line.trim().isEmpty()) {
+                return csv ? parseCsvRow(line) : parseJsonRow(line);
+            }
+        }
+        return null;
+    }
+
+    private void readHeader() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!line.trim().isEmpty()) {
+                break;
+            }
+        }
+        if (line == null) {
+            throw new IllegalArgumentException("CSV header is required");
+        }
+        if (line.charAt(0) == '\uFEFF') {
+            line = line.substring(1);
+        }
+        List<String> names = parseCsvLine(line);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : new String[] {"username", "email", "fullname"}) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header must contain username, email and fullName");
+            }
+        }
+    }
+
+    private UserImportRow parseCsvRow(String line) {
+        List<String> fields = parseCsvLine(line);
+        return validate(column(fields, "username"), column(fields, "email"), column(fields, "fullname"),
+                column(fields, "password"), column(fields, "passwordhash"));
+    }
+
+    private String column(List<String> fields, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    private UserImportRow parseJsonRow(String line) {
+        JsonObject json;
+        try (JsonReader jsonReader = Json.createReader(new StringReader(line))) {
+            json = jsonReader.readObject();
+        } catch (JsonException | IllegalStateException e) {
+            throw new IllegalArgumentException("Invalid JSON");
+        }
+        return validate(string(json, "username"), string(json, "email"), string(json, "fullName"),
+                string(json, "password"), string(json, "passwordHash"));
+    }
+
+    private String string(JsonObject json, String name) {
+        JsonValue value = json.get(name);
+        if (value == null || value.getValueType() == JsonValue.ValueType.NULL) {
+            return null;
+        }
+        if (!(value instanceof JsonString)) {
+            throw new IllegalArgumentException(name + " must be a string");
+        }
+        String string = ((JsonString) value).getString();
+        return string.isEmpty() ? null : string;
+    }
+
+    /**
+     * 1行分の値を検証（users テーブルの制約と同じ長さ制限）
+     */
+    private UserImportRow validate(String username, String email, String fullName, String password, String passwordHash) {
+        username = username != null ? username.trim() : null;
+        email = email != null ? email.trim() : null;
+        fullName = fullName != null ? fullName.trim() : null;
+
+        if (username == null || username.isEmpty()) {
+            throw new IllegalArgumentException("username is required");
+        }
+        if (username.length() > MAX_USERNAME_LENGTH) {
+            throw new IllegalArgumentException("username must be at most " + MAX_USERNAME_LENGTH + " characters");
+        }
+        if (email == null || email.isEmpty()) {
+            throw new IllegalArgumentException("email is required");
+        }
+        if (email.length() > MAX_EMAIL_LENGTH) {
+            throw new IllegalArgumentException("email must be at most " + MAX_EMAIL_LENGTH + " characters");
+        }
+        int at = email.indexOf('@');
+        if (at <= 0 || at != email.lastIndexOf('@') || at == email.length() - 1) {
+            throw new IllegalArgumentException("email is invalid");
+        }
+        if (fullName == null || fullName.isEmpty()) {
+            throw new IllegalArgumentException("fullName is required");
+        }
+        if (fullName.length() > MAX_FULL_NAME_LENGTH) {
+            throw new IllegalArgumentException("fullName must be at most " + MAX_FULL_NAME_LENGTH + " characters");
+        }
+        if (password != null && passwordHash != null) {
+            throw new IllegalArgumentException("Specify either password or passwordHash, not both");
+        }
+        // BCrypt ハッシュ形式: $2a$10$ + 53文字
+        if (passwordHash != null && !(passwordHash.length() == 60 && passwordHash.startsWith("$2") && passwordHash.charAt(3) == '$')) {
+            throw new IllegalArgumentException("passwordHash must be a BCrypt hash");
+        }
+        return new UserImportRow(lineNumber, new User(null, username, email, fullName), password, passwordHash);
+    }
+
+    /**
+     * CSV の1行を列に分割（"..." で囲んだ列と "" によるエスケープに対応。列内の改行は扱わない）
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
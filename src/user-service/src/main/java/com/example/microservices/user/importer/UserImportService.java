@@ -0,0 +1,342 @@
+package com.example.microservices.user.importer;
+
+import com.example.microservices.user.client.AuthServiceClient;
+import com.example.microservices.user.model.User;
+import com.example.microservices.user.model.UserImportResult;
+import com.example.microservices.user.model.UserImportRow;
+import com.example.microservices.user.repository.UserRepository;
+import com.example.microservices.user.search.UserSearchService;
+import com.example.microservices.user.util.ConfigUtil;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.JsonException;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.ws.rs.ProcessingException;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ユーザー一括インポート
+ * 入力をチャンク単位に読み進め、チャンクごとに COPY で users に登録してから
+ * 認証サービスに認証情報をまとめて登録する。進捗・不正な行・失敗したチャンクはイベントとして逐次通知する。
+ */
+@ApplicationScoped
+public class UserImportService {
+
+    // 認証サービスの1リクエストあたりの上限（CREDENTIAL_BATCH_MAX_SIZE）以下にする
+    private static final int CREDENTIALS_BATCH_SIZE = ConfigUtil.getInt("USER_IMPORT_CREDENTIALS_BATCH_SIZE", 1000);
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private AuthServiceClient authServiceClient;
+
+    @Inject
+    private UserSearchService userSearchService;
+
+    private final AtomicInteger activeImports = new AtomicInteger();
+    private final LongAdder imports = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder importedUsers = new LongAdder();
+    private final LongAdder rejectedRows = new LongAdder();
+    private final LongAdder failedChunks = new LongAdder();
+    private final LongAdder credentialsCreated = new LongAdder();
+    private final LongAdder credentialsSkipped = new LongAdder();
+    private final LongAdder credentialsRejected = new LongAdder();
+    private final LongAdder credentialFailures = new LongAdder();
+    private final LongAdder copyNanos = new LongAdder();
+    private final LongAdder mergeNanos = new LongAdder();
+    private final LongAdder credentialsNanos = new LongAdder();
+
+    /**
+     * インポートの進捗を受け取る処理
+     * イベントは "type" に rejected / progress / chunkFailed / credentialsRejected / credentialsFailed / summary のいずれかを持つ
+     */
+    @FunctionalInterface
+    public interface EventHandler {
+        void accept(Map<String, Object> event) throws IOException;
+    }
+
+    /**
+     * 1回分のインポートの集計
+     */
+    private static class Totals {
+        private long chunks;
+        private long imported;
+        private long rejected;
+        private long failed;
+        private long credentialsCreated;
+        private long credentialsSkipped;
+        private long credentialsRejected;
+        private long credentialFailures;
+    }
+
+    /**
+     * 入力を最後まで読み込んでインポート
+     * 失敗したチャンクはロールバックされ、後続のチャンクは継続する。
+     */
+    public void importUsers(UserImportReader reader, int chunkSize, EventHandler handler) throws IOException {
+        activeImports.incrementAndGet();
+        imports.increment();
+        try {
+            Totals totals = new Totals();
+            long startNanos = System.nanoTime();
+            List<UserImportRow> chunk = new ArrayList<>(chunkSize);
+            // チャンク内のユーザー名・メールアドレスの重複（既存ユーザーとの重複は登録時に DB で確認する）
+            Set<String> usernames = new HashSet<>();
+            Set<String> emails = new HashSet<>();
+            long readStartNanos = System.nanoTime();
+
+            while (true) {
+                UserImportRow row;
+                try {
+                    row = reader.next();
+                } catch (IllegalArgumentException e) {
+                    reject(handler, totals, reader.getLineNumber(), e.getMessage());
+                    continue;
+                }
+                if (row == null) {
+                    break;
+                }
+
+                User user = row.getUser();
+                if (usernames.contains(user.getUsername())) {
+                    reject(handler, totals, row.getLine(), "Duplicate username in chunk");
+                    continue;
+                }
+                if (emails.contains(user.getEmail())) {
+                    reject(handler, totals, row.getLine(), "Duplicate email in chunk");
+                    continue;
+                }
+                usernames.add(user.getUsername());
+                emails.add(user.getEmail());
+                chunk.add(row);
+
+                if (chunk.size() >= chunkSize) {
+                    applyChunk(handler, chunk, System.nanoTime() - readStartNanos, totals);
+                    chunk.clear();
+                    usernames.clear();
+                    emails.clear();
+                    readStartNanos = System.nanoTime();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                applyChunk(handler, chunk, System.nanoTime() - readStartNanos, totals);
+            }
+
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("type", "summary");
+            summary.put("chunks", totals.chunks);
+            summary.put("imported", totals.imported);
+            summary.put("rejected", totals.rejected);
+            summary.put("failed", totals.failed);
+            summary.put("credentialsCreated", totals.credentialsCreated);
+            summary.put("credentialsSkipped", totals.credentialsSkipped);
+            summary.put("credentialsRejected", totals.credentialsRejected);
+            summary.put("credentialFailures", totals.credentialFailures);
+            summary.put("elapsedMillis", elapsedMillis);
+            summary.put("usersPerSecond", totals.imported * 1000 / elapsedMillis);
+            handler.accept(summary);
+        } finally {
+            activeImports.decrementAndGet();
+        }
+    }
+
+    /**
+     * インポートの統計を取得
+     */
+    public Map<String, Object> getStats() {
+        long chunkCount = chunks.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("activeImports", activeImports.get());
+        stats.put("imports", imports.sum());
+        stats.put("chunks", chunkCount);
+        stats.put("importedUsers", importedUsers.sum());
+        stats.put("rejectedRows", rejectedRows.sum());
+        stats.put("failedChunks", failedChunks.sum());
+        stats.put("credentialsCreated", credentialsCreated.sum());
+        stats.put("credentialsSkipped", credentialsSkipped.sum());
+        stats.put("credentialsRejected", credentialsRejected.sum());
+        stats.put("credentialFailures", credentialFailures.sum());
+        stats.put("avgCopyMillis", chunkCount > 0 ? TimeUnit.NANOSECONDS.toMillis(copyNanos.sum() / chunkCount) : 0);
+        stats.put("avgMergeMillis", chunkCount > 0 ? TimeUnit.NANOSECONDS.toMillis(mergeNanos.sum() / chunkCount) : 0);
+        stats.put("avgCredentialsMillis", chunkCount > 0 ? TimeUnit.NANOSECONDS.toMillis(credentialsNanos.sum() / chunkCount) : 0);
+        return stats;
+    }
+
+    /**
+     * 1チャンクを登録して進捗を通知
+     */
+    private void applyChunk(EventHandler handler, List<UserImportRow> chunk, long readNanos, Totals totals) throws IOException {
+        totals.chunks++;
+        chunks.increment();
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("chunk", totals.chunks);
+        progress.put("firstLine", chunk.get(0).getLine());
+        progress.put("lastLine", chunk.get(chunk.size() - 1).getLine());
+        progress.put("size", chunk.size());
+
+        List<User> users = new ArrayList<>(chunk.size());
+        for (UserImportRow row : chunk) {
+            users.add(row.getUser());
+        }
+
+        UserImportResult result;
+        try {
+            result = userRepository.importUsers(users);
+        } catch (SQLException e) {
+            totals.failed += chunk.size();
+            failedChunks.increment();
+            progress.put("type", "chunkFailed");
+            progress.put("error", e.getMessage());
+            System.err.println("User import chunk " + totals.chunks + " failed: " + e.getMessage());
+            handler.accept(progress);
+            return;
+        }
+        copyNanos.add(result.getCopyNanos());
+        mergeNanos.add(result.getMergeNanos());
+
+        for (int seq = 0; seq < chunk.size(); seq++) {
+            String reason = result.getRejected().get(seq);
+            if (reason != null) {
+                reject(handler, totals, chunk.get(seq).getLine(), reason);
+            }
+        }
+
+        List<Map<String, Object>> credentials = new ArrayList<>();
+        // credentials と同じ順の入力行番号（認証サービスが拒否した要素を行に対応付ける）
+        List<Integer> credentialLines = new ArrayList<>();
+        for (Map.Entry<Integer, UUID> created : result.getCreated().entrySet()) {
+            UserImportRow row = chunk.get(created.getKey());
+            if (row.hasCredentials()) {
+                Map<String, Object> credential = new HashMap<>();
+                credential.put("userId", created.getValue().toString());
+                if (row.getPasswordHash() != null) {
+                    credential.put("passwordHash", row.getPasswordHash());
+                } else {
+                    credential.put("password", row.getPassword());
+                }
+                credentials.add(credential);
+                credentialLines.add(row.getLine());
+            }
+        }
+        int imported = result.getCreated().size();
+        totals.imported += imported;
+        importedUsers.add(imported);
+        if (imported > 0) {
+            userSearchService.invalidate();
+        }
+
+        long credentialsStartNanos = System.nanoTime();
+        long skippedBefore = totals.credentialsSkipped;
+        int created = createCredentials(handler, credentials, credentialLines, totals);
+        long credentialsElapsed = System.nanoTime() - credentialsStartNanos;
+        credentialsNanos.add(credentialsElapsed);
+
+        Map<String, Object> timings = new LinkedHashMap<>();
+        timings.put("readMillis", TimeUnit.NANOSECONDS.toMillis(readNanos));
+        timings.put("copyMillis", TimeUnit.NANOSECONDS.toMillis(result.getCopyNanos()));
+        timings.put("mergeMillis", TimeUnit.NANOSECONDS.toMillis(result.getMergeNanos()));
+        timings.put("credentialsMillis", TimeUnit.NANOSECONDS.toMillis(credentialsElapsed));
+
+        progress.put("type", "progress");
+        progress.put("imported", imported);
+        progress.put("rejected", result.getRejected().size());
+        progress.put("credentialsCreated", created);
+        progress.put("credentialsSkipped", totals.credentialsSkipped - skippedBefore);
+        progress.put("totalImported", totals.imported);
+        progress.put("timings", timings);
+        handler.accept(progress);
+    }
+
+    /**
+     * 登録したユーザーの認証情報を認証サービスにまとめて登録
+     * 失敗した場合ユーザーは登録済みのまま残るため、対象のユーザーIDを通知する（再送時、登録済みの認証情報はスキップされる）
+     * 認証サービスが拒否した要素は、バッチ内の位置から入力行番号に戻して通知する。
+     *
+     * @return 作成された認証情報の件数
+     */
+    private int createCredentials(EventHandler handler, List<Map<String, Object>> credentials, List<Integer> lines,
+                                  Totals totals) throws IOException {
+        int created = 0;
+        for (int from = 0; from < credentials.size(); from += CREDENTIALS_BATCH_SIZE) {
+            List<Map<String, Object>> batch = credentials.subList(from, Math.min(from + CREDENTIALS_BATCH_SIZE, credentials.size()));
+            try {
+                JsonObject response = authServiceClient.createCredentials(batch);
+                created += response.getInt("created", 0);
+                int skipped = response.getInt("skipped", 0);
+                totals.credentialsSkipped += skipped;
+                credentialsSkipped.add(skipped);
+                JsonArray rejected = response.getJsonArray("rejected");
+                if (rejected != null) {
+                    for (JsonObject entry : rejected.getValuesAs(JsonObject.class)) {
+                        rejectCredential(handler, totals, entry, from, lines);
+                    }
+                }
+            } catch (ProcessingException | JsonException e) {
+                totals.credentialFailures += batch.size();
+                credentialFailures.add(batch.size());
+                List<Object> userIds = new ArrayList<>(batch.size());
+                for (Map<String, Object> credential : batch) {
+                    userIds.add(credential.get("userId"));
+                }
+                Map<String, Object> failure = new LinkedHashMap<>();
+                failure.put("type", "credentialsFailed");
+                failure.put("chunk", totals.chunks);
+                failure.put("userIds", userIds);
+                failure.put("error", e.getMessage());
+                System.err.println("User import credentials for chunk " + totals.chunks + " failed: " + e.getMessage());
+                handler.accept(failure);
+            }
+        }
+        totals.credentialsCreated += created;
+        credentialsCreated.add(created);
+        return created;
+    }
+
+    /**
+     * 認証サービスが拒否した認証情報を通知（index はバッチ内の位置）
+     */
+    private void rejectCredential(EventHandler handler, Totals totals, JsonObject entry, int batchOffset,
+                                  List<Integer> lines) throws IOException {
+        totals.credentialsRejected++;
+        credentialsRejected.increment();
+        Map<String, Object> rejected = new LinkedHashMap<>();
+        rejected.put("type", "credentialsRejected");
+        rejected.put("chunk", totals.chunks);
+        int index = batchOffset + entry.getInt("index", -1);
+        if (index >= batchOffset && index < lines.size()) {
+            rejected.put("line", lines.get(index));
+        }
+        if (entry.containsKey("userId")) {
+            rejected.put("userId", entry.getString("userId"));
+        }
+        rejected.put("error", entry.getString("error", null));
+        handler.accept(rejected);
+    }
+
+    private void reject(EventHandler handler, Totals totals, int line, String error) throws IOException {
+        totals.rejected++;
+        rejectedRows.increment();
+        Map<String, Object> rejected = new LinkedHashMap<>();
+        rejected.put("type", "rejected");
+        rejected.put("line", line);
+        rejected.put("error", error);
+        handler.accept(rejected);
+    }
+}
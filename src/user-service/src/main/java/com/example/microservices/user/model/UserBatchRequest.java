@@ -0,0 +1,27 @@
+package com.example.microservices.user.model;
+
+import java.util.List;
+
+/**
+ * ユーザー一括取得リクエスト
+ */
+public class UserBatchRequest {
+    private List<String> ids;
+
+    // Constructors
+    public UserBatchRequest() {
+    }
+
+    public UserBatchRequest(List<String> ids) {
+        this.ids = ids;
+    }
+
+    // Getters and Setters
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.microservices.user.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * ユーザー一覧のページングカーソル
+ * 最後に返したユーザーの (created_at, id) を不透明な文字列としてエンコードする
+ */
+public class UserCursor {
+    private final LocalDateTime createdAt;
+    private final UUID id;
+
+    public UserCursor(LocalDateTime createdAt, UUID id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    /**
+     * ユーザーからカーソルを生成
+     */
+    public static UserCursor of(User user) {
+        return new UserCursor(user.getCreatedAt(), user.getId());
+    }
+
+    /**
+     * カーソル文字列をデコード
+     *
+     * @throws IllegalArgumentException 不正なカーソルの場合
+     */
+    public static UserCursor decode(String encoded) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('|');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new UserCursor(
+                    LocalDateTime.parse(decoded.substring(0, separator)),
+                    UUID.fromString(decoded.substring(separator + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * カーソル文字列にエンコード
+     */
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.microservices.user.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * ユーザー一覧の絞り込み条件（未指定の項目は null）
+ */
+public class UserFilter {
+    // ユーザー名の前方一致
+    private String usernamePrefix;
+    // 作成日時の範囲（createdFrom 以上、createdTo 未満）
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+
+    // Constructors
+    public UserFilter() {
+    }
+
+    public UserFilter(String usernamePrefix, LocalDateTime createdFrom, LocalDateTime createdTo) {
+        this.usernamePrefix = usernamePrefix;
+        this.createdFrom = createdFrom;
+        this.createdTo = createdTo;
+    }
+
+    // Getters and Setters
+    public String getUsernamePrefix() {
+        return usernamePrefix;
+    }
+
+    public void setUsernamePrefix(String usernamePrefix) {
+        this.usernamePrefix = usernamePrefix;
+    }
+
+    public LocalDateTime getCreatedFrom() {
+        return createdFrom;
+    }
+
+    public void setCreatedFrom(LocalDateTime createdFrom) {
+        this.createdFrom = createdFrom;
+    }
+
+    public LocalDateTime getCreatedTo() {
+        return createdTo;
+    }
+
+    public void setCreatedTo(LocalDateTime createdTo) {
+        this.createdTo = createdTo;
+    }
+}
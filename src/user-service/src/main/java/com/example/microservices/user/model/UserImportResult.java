@@ -0,0 +1,40 @@
+package com.example.microservices.user.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 一括インポート1チャンク分の結果
+ * 行はチャンク内の位置（0始まり）で識別する
+ */
+public class UserImportResult {
+    private final Map<Integer, UUID> created = new HashMap<>();
+    private final Map<Integer, String> rejected = new HashMap<>();
+    private long copyNanos;
+    private long mergeNanos;
+
+    public Map<Integer, UUID> getCreated() {
+        return created;
+    }
+
+    public Map<Integer, String> getRejected() {
+        return rejected;
+    }
+
+    public long getCopyNanos() {
+        return copyNanos;
+    }
+
+    public void setCopyNanos(long copyNanos) {
+        this.copyNanos = copyNanos;
+    }
+
+    public long getMergeNanos() {
+        return mergeNanos;
+    }
+
+    public void setMergeNanos(long mergeNanos) {
+        this.mergeNanos = mergeNanos;
+    }
+}
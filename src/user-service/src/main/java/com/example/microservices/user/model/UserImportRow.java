@@ -0,0 +1,59 @@
+package com.example.microservices.user.model;
+
+/**
+ * 一括インポートの1行分（ユーザーと、認証サービスに登録するパスワード）
+ */
+public class UserImportRow {
+    private int line;
+    private User user;
+    private String password;
+    private String passwordHash;
+
+    // Constructors
+    public UserImportRow() {
+    }
+
+    public UserImportRow(int line, User user, String password, String passwordHash) {
+        this.line = line;
+        this.user = user;
+        this.password = password;
+        this.passwordHash = passwordHash;
+    }
+
+    public boolean hasCredentials() {
+        return password != null || passwordHash != null;
+    }
+
+    // Getters and Setters
+    public int getLine() {
+        return line;
+    }
+
+    public void setLine(int line) {
+        this.line = line;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+    }
+}
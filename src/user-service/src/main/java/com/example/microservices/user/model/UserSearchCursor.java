@@ -0,0 +1,84 @@
+package com.example.microservices.user.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * ユーザー検索のページングカーソル
+ * 前方一致は最後に返したユーザーの (小文字のユーザー名, id)、あいまい検索は (類似度, id) をエンコードする
+ */
+public class UserSearchCursor {
+    private final UserSearchQuery.Mode mode;
+    private final String key;
+    private final UUID id;
+
+    private UserSearchCursor(UserSearchQuery.Mode mode, String key, UUID id) {
+        this.mode = mode;
+        this.key = key;
+        this.id = id;
+    }
+
+    /**
+     * 検索結果からカーソルを生成
+     */
+    public static UserSearchCursor of(UserSearchQuery.Mode mode, UserSearchHit hit) {
+        String key = mode == UserSearchQuery.Mode.FUZZY
+                ? Float.toString(hit.getScore())
+                : hit.getUser().getUsername().toLowerCase(Locale.ROOT);
+        return new UserSearchCursor(mode, key, hit.getUser().getId());
+    }
+
+    /**
+     * カーソル文字列をデコード
+     *
+     * @throws IllegalArgumentException 不正なカーソル、または検索方法が異なるカーソルの場合
+     */
+    public static UserSearchCursor decode(String encoded, UserSearchQuery.Mode mode) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('|');
+            if (separator <= 0 || decoded.charAt(0) != prefix(mode)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String key = decoded.substring(1, separator);
+            if (mode == UserSearchQuery.Mode.FUZZY) {
+                Float.parseFloat(key);
+            }
+            return new UserSearchCursor(mode, key, UUID.fromString(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * カーソル文字列にエンコード
+     */
+    public String encode() {
+        String raw = prefix(mode) + key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static char prefix(UserSearchQuery.Mode mode) {
+        return mode == UserSearchQuery.Mode.FUZZY ? 'f' : 'p';
+    }
+
+    /**
+     * 前方一致: 最後に返したユーザーの小文字のユーザー名
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * あいまい検索: 最後に返したユーザーの類似度
+     */
+    public float getScore() {
+        return Float.parseFloat(key);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.microservices.user.model;
+
+/**
+ * ユーザー検索の結果1件（あいまい検索の場合は類似度を持つ）
+ */
+public class UserSearchHit {
+    private final User user;
+    private final float score;
+
+    public UserSearchHit(User user, float score) {
+        this.user = user;
+        this.score = score;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.microservices.user.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * ユーザー検索条件
+ * 検索語は大文字小文字を区別しないよう小文字にして保持する
+ */
+public class UserSearchQuery {
+
+    /**
+     * 検索方法
+     */
+    public enum Mode {
+        /** 前方一致 */
+        PREFIX,
+        /** トライグラム類似度によるあいまい検索 */
+        FUZZY
+    }
+
+    /**
+     * 検索対象の項目
+     */
+    public enum Field {
+        USERNAME("username", "username"),
+        EMAIL("email", "email"),
+        FULL_NAME("fullName", "full_name");
+
+        private final String param;
+        private final String column;
+
+        Field(String param, String column) {
+            this.param = param;
+            this.column = column;
+        }
+
+        /**
+         * クエリパラメータの名前から項目を取得
+         *
+         * @throws IllegalArgumentException 不明な項目の場合
+         */
+        public static Field fromParam(String param) {
+            for (Field field : values()) {
+                if (field.param.equalsIgnoreCase(param)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown search field: " + param);
+        }
+
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    private final String text;
+    private final Mode mode;
+    private final Set<Field> fields;
+
+    public UserSearchQuery(String text, Mode mode, Set<Field> fields) {
+        this.text = text.toLowerCase(Locale.ROOT);
+        this.mode = mode;
+        this.fields = Collections.unmodifiableSet(EnumSet.copyOf(fields));
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Set<Field> getFields() {
+        return fields;
+    }
+}
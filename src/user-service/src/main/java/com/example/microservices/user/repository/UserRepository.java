@@ -1,12 +1,26 @@
 package com.example.microservices.user.repository;
 
 import com.example.microservices.user.model.User;
+import com.example.microservices.user.model.UserCursor;
+import com.example.microservices.user.model.UserFilter;
+import com.example.microservices.user.model.UserImportResult;
+import com.example.microservices.user.model.UserSearchCursor;
+import com.example.microservices.user.model.UserSearchHit;
+import com.example.microservices.user.model.UserSearchQuery;
+import org.postgresql.PGConnection;
+
 import javax.annotation.Resource;
 import javax.enterprise.context.ApplicationScoped;
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,6 +33,16 @@ public class UserRepository {
     @Resource(lookup = "java:app/jdbc/userServiceDB")
     private DataSource dataSource;
 
+    private static final String LIST_COLUMNS = "id, username, email, full_name, created_at, updated_at";
+
+    /**
+     * 一覧を逐次処理する際に1行ごとに呼び出される処理
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void accept(User user) throws IOException;
+    }
+
     public List<User> findAll() throws SQLException {
         List<User> users = new ArrayList<>();
         String sql = "SELECT id, username, email, full_name, created_at, updated_at FROM users ORDER BY id";
@@ -35,6 +59,59 @@ public class UserRepository {
         return users;
     }
 
+    /**
+     * ユーザー一覧の1ページを取得（キーセットページネーション）
+     * (created_at, id) の昇順で、after より後のユーザーを最大 limit 件返す
+     *
+     * @param after 前のページの最後のユーザーのカーソル（null の場合は先頭から）
+     */
+    public List<User> findPage(UserFilter filter, UserCursor after, int limit) throws SQLException {
+        List<User> users = new ArrayList<>();
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = prepareListQuery(conn, filter, after, limit);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                users.add(mapResultSetToUser(rs));
+            }
+        }
+        return users;
+    }
+
+    /**
+     * 条件に一致するユーザーを (created_at, id) の昇順で1行ずつ handler に渡す
+     * サーバー側カーソルで fetchSize 件ずつ取得するため、件数に関わらずメモリ上には一度に fetchSize 件しか保持しない。
+     *
+     * @return 処理した件数
+     */
+    public long streamAll(UserFilter filter, UserCursor after, int fetchSize, RowHandler handler)
+            throws SQLException, IOException {
+        long count = 0;
+
+        try (Connection conn = dataSource.getConnection()) {
+            // PostgreSQL のドライバはトランザクション内でのみ fetchSize によるカーソル取得を行う
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = prepareListQuery(conn, filter, after, null)) {
+                stmt.setFetchSize(fetchSize);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        handler.accept(mapResultSetToUser(rs));
+                        count++;
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        return count;
+    }
+
     public Optional<User> findById(UUID id) throws SQLException {
         String sql = "SELECT id, username, email, full_name, created_at, updated_at FROM users WHERE id = ?";
         
@@ -51,6 +128,29 @@ public class UserRepository {
         return Optional.empty();
     }
 
+    /**
+     * 複数のユーザーを1回のクエリで取得（存在しない ID は結果に含まれない、順序は不定）
+     */
+    public List<User> findByIds(Collection<UUID> ids) throws SQLException {
+        List<User> users = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return users;
+        }
+        String sql = "SELECT " + LIST_COLUMNS + " FROM users WHERE id = ANY(?)";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setArray(1, conn.createArrayOf("uuid", ids.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapResultSetToUser(rs));
+                }
+            }
+        }
+        return users;
+    }
+
     public Optional<User> findByUsername(String username) throws SQLException {
         String sql = "SELECT id, username, email, full_name, created_at, updated_at FROM users WHERE username = ?";
         
@@ -88,35 +188,346 @@ public class UserRepository {
         return user;
     }
 
+    /**
+     * ユーザーを無条件に更新（updateReturning(user, null) と同じ。該当するユーザーがいない場合は引数をそのまま返す）
+     */
     public User update(User user) throws SQLException {
-        String sql = "UPDATE users SET username = ?, email = ?, full_name = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ? RETURNING updated_at";
-        
+        return updateReturning(user, null).orElse(user);
+    }
+
+    /**
+     * ユーザーを更新し、更新後の行を返す（1文で存在確認・楽観的排他・更新を行う）
+     *
+     * @param expectedVersions 更新を許可する updated_at の値（null の場合は無条件に更新）
+     * @return 更新後のユーザー。該当するユーザーがいない、または updated_at が一致しない場合は空
+     */
+    public Optional<User> updateReturning(User user, List<LocalDateTime> expectedVersions) throws SQLException {
+        String sql = "UPDATE users SET username = ?, email = ?, full_name = ?, updated_at = CURRENT_TIMESTAMP " +
+                     "WHERE id = ?" + (expectedVersions != null ? " AND updated_at = ANY(?)" : "") +
+                     " RETURNING " + LIST_COLUMNS;
+
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
+
             stmt.setString(1, user.getUsername());
             stmt.setString(2, user.getEmail());
             stmt.setString(3, user.getFullName());
             stmt.setObject(4, user.getId());
-            
+            if (expectedVersions != null) {
+                stmt.setArray(5, toTimestampArray(conn, expectedVersions));
+            }
+
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    user.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+                    return Optional.of(mapResultSetToUser(rs));
                 }
             }
         }
-        return user;
+        return Optional.empty();
     }
 
+    /**
+     * ユーザーを無条件に削除（deleteReturning(id, null) と同じ）
+     */
     public void delete(UUID id) throws SQLException {
-        String sql = "DELETE FROM users WHERE id = ?";
-        
+        deleteReturning(id, null);
+    }
+
+    /**
+     * ユーザーを削除（1文で存在確認・楽観的排他・削除を行う）
+     *
+     * @param expectedVersions 削除を許可する updated_at の値（null の場合は無条件に削除）
+     * @return 削除した場合は true。該当するユーザーがいない、または updated_at が一致しない場合は false
+     */
+    public boolean deleteReturning(UUID id, List<LocalDateTime> expectedVersions) throws SQLException {
+        String sql = "DELETE FROM users WHERE id = ?" +
+                     (expectedVersions != null ? " AND updated_at = ANY(?)" : "") +
+                     " RETURNING id";
+
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
+
             stmt.setObject(1, id);
-            stmt.executeUpdate();
+            if (expectedVersions != null) {
+                stmt.setArray(2, toTimestampArray(conn, expectedVersions));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * 前方一致でユーザーを検索（大文字小文字を区別しない。lower(col) text_pattern_ops のインデックスを使用）
+     * (小文字のユーザー名, id) 順に返す（並びはロケールに依存しないバイト順）
+     */
+    public List<UserSearchHit> searchByPrefix(UserSearchQuery query, UserSearchCursor after, int limit)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT " + LIST_COLUMNS + " FROM users WHERE (");
+        List<Object> params = new ArrayList<>();
+        String pattern = escapeLike(query.getText()) + "%";
+        boolean first = true;
+        for (UserSearchQuery.Field field : query.getFields()) {
+            sql.append(first ? "" : " OR ").append("lower(").append(field.getColumn()).append(") LIKE ? ESCAPE '\\'");
+            params.add(pattern);
+            first = false;
+        }
+        sql.append(")");
+        if (after != null) {
+            sql.append(" AND (lower(username) COLLATE \"C\", id) > (?, ?)");
+            params.add(after.getKey());
+            params.add(after.getId());
         }
+        sql.append(" ORDER BY lower(username) COLLATE \"C\", id LIMIT ?");
+        params.add(limit);
+
+        List<UserSearchHit> hits = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    hits.add(new UserSearchHit(mapResultSetToUser(rs), 1.0f));
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * トライグラム類似度でユーザーを検索（pg_trgm の % 演算子と gin_trgm_ops のインデックスを使用）
+     * 対象項目のうち最も高い類似度の降順、同じ類似度は id 順に返す
+     *
+     * @param threshold 類似度の下限（pg_trgm.similarity_threshold）
+     */
+    public List<UserSearchHit> searchBySimilarity(UserSearchQuery query, UserSearchCursor after, int limit, float threshold)
+            throws SQLException {
+        StringBuilder score = new StringBuilder("GREATEST(");
+        StringBuilder condition = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        boolean first = true;
+        for (UserSearchQuery.Field field : query.getFields()) {
+            score.append(first ? "" : ", ").append("similarity(lower(").append(field.getColumn()).append("), ?)");
+            params.add(query.getText());
+            first = false;
+        }
+        score.append(")");
+        first = true;
+        for (UserSearchQuery.Field field : query.getFields()) {
+            condition.append(first ? "" : " OR ").append("lower(").append(field.getColumn()).append(") % ?");
+            params.add(query.getText());
+            first = false;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM (SELECT " + LIST_COLUMNS + ", ")
+                .append(score).append(" AS score FROM users WHERE ").append(condition).append(") matched");
+        if (after != null) {
+            sql.append(" WHERE score < ? OR (score = ? AND id > ?)");
+            params.add(after.getScore());
+            params.add(after.getScore());
+            params.add(after.getId());
+        }
+        sql.append(" ORDER BY score DESC, id LIMIT ?");
+        params.add(limit);
+
+        List<UserSearchHit> hits = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            // SET LOCAL 相当（トランザクション内のみ有効）にして、プールに戻すコネクションに設定を残さない
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT set_config('pg_trgm.similarity_threshold', ?, true)")) {
+                    stmt.setString(1, Float.toString(threshold));
+                    stmt.execute();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < params.size(); i++) {
+                        stmt.setObject(i + 1, params.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            hits.add(new UserSearchHit(mapResultSetToUser(rs), rs.getFloat("score")));
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * pg_trgm 拡張がインストールされているかどうか
+     */
+    public boolean isTrigramAvailable() throws SQLException {
+        String sql = "SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm')";
+
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * ユーザーの一括登録（1チャンク分を1トランザクションで実行）
+     * COPY で一時テーブルに取り込み、既存ユーザーとユーザー名・メールアドレスが重複する行を除いて users に登録する。
+     * チャンク内の重複は呼び出し元で除いておくこと。
+     */
+    public UserImportResult importUsers(List<User> users) throws SQLException {
+        UserImportResult result = new UserImportResult();
+        if (users.isEmpty()) {
+            return result;
+        }
+        // ON COMMIT DELETE ROWS のため、コネクションを使い回しても前回の内容は残らない
+        String createStagingSql = "CREATE TEMP TABLE IF NOT EXISTS user_import_staging (" +
+                                  "  seq INTEGER NOT NULL, username VARCHAR(50) NOT NULL, " +
+                                  "  email VARCHAR(100) NOT NULL, full_name VARCHAR(100) NOT NULL" +
+                                  ") ON COMMIT DELETE ROWS";
+        String copySql = "COPY user_import_staging (seq, username, email, full_name) FROM STDIN WITH (FORMAT csv)";
+        String conflictSql = "SELECT s.seq, u1.id IS NOT NULL AS username_taken, u2.id IS NOT NULL AS email_taken " +
+                             "FROM user_import_staging s " +
+                             "LEFT JOIN users u1 ON u1.username = s.username " +
+                             "LEFT JOIN users u2 ON u2.email = s.email " +
+                             "WHERE u1.id IS NOT NULL OR u2.id IS NOT NULL";
+        // 確認後に並行して登録された行も ON CONFLICT で除外する
+        String mergeSql = "INSERT INTO users (username, email, full_name) " +
+                          "SELECT username, email, full_name FROM user_import_staging ORDER BY seq " +
+                          "ON CONFLICT DO NOTHING RETURNING id, username";
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                long startedAt = System.nanoTime();
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(createStagingSql);
+                }
+                conn.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn(copySql, new StringReader(toCsv(users)));
+                long copiedAt = System.nanoTime();
+
+                try (Statement stmt = conn.createStatement()) {
+                    try (ResultSet rs = stmt.executeQuery(conflictSql)) {
+                        while (rs.next()) {
+                            boolean usernameTaken = rs.getBoolean("username_taken");
+                            boolean emailTaken = rs.getBoolean("email_taken");
+                            result.getRejected().put(rs.getInt("seq"),
+                                    usernameTaken && emailTaken ? "Username and email already exist"
+                                            : usernameTaken ? "Username already exists" : "Email already exists");
+                        }
+                    }
+
+                    Map<String, Integer> seqByUsername = new HashMap<>();
+                    for (int i = 0; i < users.size(); i++) {
+                        seqByUsername.put(users.get(i).getUsername(), i);
+                    }
+                    try (ResultSet rs = stmt.executeQuery(mergeSql)) {
+                        while (rs.next()) {
+                            Integer seq = seqByUsername.get(rs.getString("username"));
+                            if (seq != null) {
+                                result.getCreated().put(seq, (UUID) rs.getObject("id"));
+                            }
+                        }
+                    }
+                }
+                conn.commit();
+
+                for (int i = 0; i < users.size(); i++) {
+                    if (!result.getCreated().containsKey(i)) {
+                        result.getRejected().putIfAbsent(i, "Username or email already exists");
+                    }
+                }
+                result.setCopyNanos(copiedAt - startedAt);
+                result.setMergeNanos(System.nanoTime() - copiedAt);
+                return result;
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                if (e instanceof SQLException) {
+                    throw (SQLException) e;
+                }
+                throw new SQLException("Failed to copy users", e);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private PreparedStatement prepareListQuery(Connection conn, UserFilter filter, UserCursor after, Integer limit)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT " + LIST_COLUMNS + " FROM users WHERE TRUE");
+        List<Object> params = new ArrayList<>();
+        if (filter != null && filter.getUsernamePrefix() != null) {
+            sql.append(" AND username LIKE ? ESCAPE '\\'");
+            params.add(escapeLike(filter.getUsernamePrefix()) + "%");
+        }
+        if (filter != null && filter.getCreatedFrom() != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(Timestamp.valueOf(filter.getCreatedFrom()));
+        }
+        if (filter != null && filter.getCreatedTo() != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.valueOf(filter.getCreatedTo()));
+        }
+        if (after != null) {
+            sql.append(" AND (created_at, id) > (?, ?)");
+            params.add(Timestamp.valueOf(after.getCreatedAt()));
+            params.add(after.getId());
+        }
+        sql.append(" ORDER BY created_at, id");
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            params.add(limit);
+        }
+
+        PreparedStatement stmt = conn.prepareStatement(sql.toString());
+        try {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+        return stmt;
+    }
+
+    private String toCsv(List<User> users) {
+        StringBuilder csv = new StringBuilder(users.size() * 96);
+        int seq = 0;
+        for (User user : users) {
+            csv.append(seq++).append(',')
+               .append(quoteCsv(user.getUsername())).append(',')
+               .append(quoteCsv(user.getEmail())).append(',')
+               .append(quoteCsv(user.getFullName())).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private String quoteCsv(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private Array toTimestampArray(Connection conn, List<LocalDateTime> values) throws SQLException {
+        Timestamp[] timestamps = new Timestamp[values.size()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = Timestamp.valueOf(values.get(i));
+        }
+        return conn.createArrayOf("timestamp", timestamps);
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
     private User mapResultSetToUser(ResultSet rs) throws SQLException {
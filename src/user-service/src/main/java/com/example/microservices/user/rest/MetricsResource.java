@@ -0,0 +1,49 @@
+package com.example.microservices.user.rest;
+
+import com.example.microservices.user.cache.ConditionalGetStats;
+import com.example.microservices.user.cache.UserProfileCache;
+import com.example.microservices.user.importer.UserImportService;
+import com.example.microservices.user.search.UserSearchService;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ユーザーサービス運用メトリクス API
+ */
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+
+    @Inject
+    private UserProfileCache userProfileCache;
+
+    @Inject
+    private ConditionalGetStats conditionalGetStats;
+
+    @Inject
+    private UserImportService userImportService;
+
+    @Inject
+    private UserSearchService userSearchService;
+
+    /**
+     * メトリクス取得
+     * GET /api/metrics
+     */
+    @GET
+    public Response getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("profileCache", userProfileCache.getStats());
+        metrics.put("conditionalGet", conditionalGetStats.getStats());
+        metrics.put("userImport", userImportService.getStats());
+        metrics.put("userSearch", userSearchService.getStats());
+        return Response.ok(metrics).build();
+    }
+}
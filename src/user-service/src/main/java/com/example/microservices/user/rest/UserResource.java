@@ -1,17 +1,52 @@
 package com.example.microservices.user.rest;
 
+import com.example.microservices.user.cache.ConditionalGetStats;
+import com.example.microservices.user.cache.UserProfileCache;
+import com.example.microservices.user.importer.UserImportReader;
+import com.example.microservices.user.importer.UserImportService;
 import com.example.microservices.user.model.User;
+import com.example.microservices.user.model.UserBatchRequest;
+import com.example.microservices.user.model.UserCursor;
+import com.example.microservices.user.model.UserFilter;
+import com.example.microservices.user.model.UserSearchCursor;
+import com.example.microservices.user.model.UserSearchHit;
+import com.example.microservices.user.model.UserSearchQuery;
 import com.example.microservices.user.repository.UserRepository;
+import com.example.microservices.user.search.UserSearchService;
+import com.example.microservices.user.util.ConfigUtil;
 
 import javax.inject.Inject;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
 import javax.ws.rs.*;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -22,17 +57,84 @@ import java.util.UUID;
 @Consumes(MediaType.APPLICATION_JSON)
 public class UserResource {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String TEXT_CSV = "text/csv";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_PAGE_SIZE = 1000;
+    // 全件を逐次返す際に1回のフェッチで取得する行数
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final Jsonb JSONB = JsonbBuilder.create();
+    private static final int BATCH_MAX_IDS = ConfigUtil.getInt("USER_BATCH_MAX_IDS", 500);
+    private static final int IMPORT_MAX_CHUNK_SIZE = ConfigUtil.getInt("USER_IMPORT_MAX_CHUNK_SIZE", 10000);
+    private static final int SEARCH_MAX_LIMIT = ConfigUtil.getInt("USER_SEARCH_MAX_LIMIT", 100);
+    private static final int SEARCH_MAX_QUERY_LENGTH = 100;
+
+    // ブラウザにもキャッシュさせるが、利用のたびに ETag で再検証させる
+    private static final CacheControl REVALIDATE = createRevalidateCacheControl();
+
     @Inject
     private UserRepository userRepository;
 
+    @Inject
+    private UserProfileCache userProfileCache;
+
+    @Inject
+    private ConditionalGetStats conditionalGetStats;
+
+    @Inject
+    private UserImportService userImportService;
+
+    @Inject
+    private UserSearchService userSearchService;
+
+    @Context
+    private Request request;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
     /**
-     * 全ユーザー取得
+     * ユーザー一覧取得
+     * GET /api/users?limit=100&after={cursor}&usernamePrefix=abc&createdFrom=2025-01-01&createdTo=2025-02-01
+     *
+     * limit 指定時は (created_at, id) 順の1ページを返し、続きがある場合は X-Next-Cursor ヘッダーに
+     * 次のページのカーソルを設定する。limit 未指定時は条件に一致する全件を JSON 配列として逐次書き出す。
      */
     @GET
-    public Response getAllUsers() {
+    public Response getAllUsers(@QueryParam("limit") Integer limit,
+                                @QueryParam("after") String after,
+                                @QueryParam("usernamePrefix") String usernamePrefix,
+                                @QueryParam("createdFrom") String createdFrom,
+                                @QueryParam("createdTo") String createdTo) {
+        UserFilter filter;
+        UserCursor cursor;
+        try {
+            filter = parseFilter(usernamePrefix, createdFrom, createdTo);
+            cursor = after != null && !after.isEmpty() ? UserCursor.decode(after) : null;
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse(e.getMessage()))
+                    .build();
+        }
+
+        if (limit == null) {
+            return Response.ok(streamUsers(filter, cursor, false), MediaType.APPLICATION_JSON).build();
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("limit must be between 1 and " + MAX_PAGE_SIZE))
+                    .build();
+        }
+
         try {
-            List<User> users = userRepository.findAll();
-            return Response.ok(users).build();
+            // 1件多く取得して次のページの有無を判定する
+            List<User> users = userRepository.findPage(filter, cursor, limit + 1);
+            Response.ResponseBuilder builder = Response.ok();
+            if (users.size() > limit) {
+                users = users.subList(0, limit);
+                builder.header(NEXT_CURSOR_HEADER, UserCursor.of(users.get(limit - 1)).encode());
+            }
+            return builder.entity(users).build();
         } catch (SQLException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(createErrorResponse("Failed to fetch users: " + e.getMessage()))
@@ -40,6 +142,81 @@ public class UserResource {
         }
     }
 
+    /**
+     * ユーザー検索
+     * GET /api/users/search?q=tar&mode=prefix&fields=username,email,fullName&limit=20&after={cursor}
+     *
+     * mode=prefix は大文字小文字を区別しない前方一致（(小文字のユーザー名, id) 順）、
+     * mode=fuzzy はトライグラム類似度によるあいまい検索（類似度の降順）。
+     * 続きがある場合は X-Next-Cursor ヘッダーに次のページのカーソルを設定する。
+     */
+    @GET
+    @Path("/search")
+    public Response searchUsers(@QueryParam("q") String q,
+                                @QueryParam("mode") @DefaultValue("prefix") String mode,
+                                @QueryParam("fields") @DefaultValue("username,email,fullName") String fields,
+                                @QueryParam("limit") @DefaultValue("20") int limit,
+                                @QueryParam("after") String after) {
+        UserSearchQuery query;
+        UserSearchCursor cursor;
+        try {
+            query = parseSearchQuery(q, mode, fields);
+            cursor = after != null && !after.isEmpty() ? UserSearchCursor.decode(after, query.getMode()) : null;
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse(e.getMessage()))
+                    .build();
+        }
+        if (limit < 1 || limit > SEARCH_MAX_LIMIT) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("limit must be between 1 and " + SEARCH_MAX_LIMIT))
+                    .build();
+        }
+
+        try {
+            // 1件多く取得して次のページの有無を判定する
+            List<UserSearchHit> hits = userSearchService.search(query, cursor, limit + 1);
+            Response.ResponseBuilder builder = Response.ok();
+            if (hits.size() > limit) {
+                hits = hits.subList(0, limit);
+                builder.header(NEXT_CURSOR_HEADER, UserSearchCursor.of(query.getMode(), hits.get(limit - 1)).encode());
+            }
+            List<User> users = new ArrayList<>(hits.size());
+            for (UserSearchHit hit : hits) {
+                users.add(hit.getUser());
+            }
+            return builder.entity(users).build();
+        } catch (SQLException e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(createErrorResponse("Failed to search users: " + e.getMessage()))
+                    .build();
+        }
+    }
+
+    /**
+     * ユーザー一覧を NDJSON（1行1ユーザー）で逐次取得
+     * Accept: application/x-ndjson を指定した場合に選択される。絞り込み条件は JSON 版と同じ。
+     */
+    @GET
+    @Produces(NDJSON + ";qs=0.5")
+    public Response streamAllUsers(@QueryParam("after") String after,
+                                   @QueryParam("usernamePrefix") String usernamePrefix,
+                                   @QueryParam("createdFrom") String createdFrom,
+                                   @QueryParam("createdTo") String createdTo) {
+        UserFilter filter;
+        UserCursor cursor;
+        try {
+            filter = parseFilter(usernamePrefix, createdFrom, createdTo);
+            cursor = after != null && !after.isEmpty() ? UserCursor.decode(after) : null;
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(createErrorResponse(e.getMessage()))
+                    .build();
+        }
+        return Response.ok(streamUsers(filter, cursor, true), NDJSON).build();
+    }
+
     /**
      * ユーザーID指定取得
      */
@@ -47,9 +224,9 @@ public class UserResource {
     @Path("/{id}")
     public Response getUserById(@PathParam("id") UUID id) {
         try {
-            Optional<User> user = userRepository.findById(id);
+            Optional<User> user = findUserById(id);
             if (user.isPresent()) {
-                return Response.ok(user.get()).build();
+                return okWithETag(user.get(), user.get());
             } else {
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity(createErrorResponse("User not found with id: " + id))
@@ -62,6 +239,82 @@ public class UserResource {
         }
     }
 
+    /**
+     * ユーザー一括取得
+     * POST /api/users/batch  {"ids": ["...", "..."]}
+     * 要求された ID の順（重複は除く）にユーザーを返し、存在しない ID は missing に列挙する。
+     * etags には各ユーザーの ETag（単体取得と同じ値）を ID ごとに返す。
+     * キャッシュにないユーザーは1回のクエリ（WHERE id = ANY(?)）でまとめて取得する。
+     */
+    @POST
+    @Path("/batch")
+    public Response getUsersBatch(UserBatchRequest batchRequest) {
+        if (batchRequest == null || batchRequest.getIds() == null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("ids is required"))
+                    .build();
+        }
+
+        Set<UUID> ids = new LinkedHashSet<>();
+        try {
+            for (String id : batchRequest.getIds()) {
+                ids.add(UUID.fromString(id));
+            }
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("Invalid UUID format in ids"))
+                    .build();
+        }
+        if (ids.size() > BATCH_MAX_IDS) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(createErrorResponse("Too many ids (max " + BATCH_MAX_IDS + ")"))
+                    .build();
+        }
+
+        try {
+            Map<UUID, User> found = new HashMap<>();
+            List<UUID> toLoad = new ArrayList<>();
+            for (UUID id : ids) {
+                Optional<User> cached = userProfileCache.get(id);
+                if (cached.isPresent()) {
+                    found.put(id, cached.get());
+                } else {
+                    toLoad.add(id);
+                }
+            }
+            if (!toLoad.isEmpty()) {
+                long generation = userProfileCache.currentGeneration();
+                for (User user : userRepository.findByIds(toLoad)) {
+                    userProfileCache.putLoaded(user, generation);
+                    found.put(user.getId(), user);
+                }
+            }
+
+            List<User> users = new ArrayList<>();
+            List<String> missing = new ArrayList<>();
+            Map<String, String> etags = new LinkedHashMap<>();
+            for (UUID id : ids) {
+                User user = found.get(id);
+                if (user != null) {
+                    users.add(user);
+                    etags.put(id.toString(), createETag(user).toString());
+                } else {
+                    missing.add(id.toString());
+                }
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("users", users);
+            result.put("missing", missing);
+            result.put("etags", etags);
+            return Response.ok(result).build();
+        } catch (SQLException e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(createErrorResponse("Failed to fetch users: " + e.getMessage()))
+                    .build();
+        }
+    }
+
     /**
      * ユーザー名指定取得
      */
@@ -69,9 +322,9 @@ public class UserResource {
     @Path("/username/{username}")
     public Response getUserByUsername(@PathParam("username") String username) {
         try {
-            Optional<User> user = userRepository.findByUsername(username);
+            Optional<User> user = findUserByUsername(username);
             if (user.isPresent()) {
-                return Response.ok(user.get()).build();
+                return okWithETag(user.get(), user.get());
             } else {
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity(createErrorResponse("User not found with username: " + username))
@@ -91,7 +344,7 @@ public class UserResource {
     @Path("/{id}/account")
     public Response getUserAccount(@PathParam("id") UUID id) {
         try {
-            Optional<User> userOpt = userRepository.findById(id);
+            Optional<User> userOpt = findUserById(id);
             if (!userOpt.isPresent()) {
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity(createErrorResponse("User not found with id: " + id))
@@ -102,7 +355,7 @@ public class UserResource {
             Map<String, Object> accountData = new HashMap<>();
             accountData.put("user", userOpt.get());
 
-            return Response.ok(accountData).build();
+            return okWithETag(userOpt.get(), accountData);
         } catch (SQLException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(createErrorResponse("Failed to fetch account: " + e.getMessage()))
@@ -117,6 +370,8 @@ public class UserResource {
     public Response createUser(User user) {
         try {
             User createdUser = userRepository.create(user);
+            userProfileCache.invalidate(createdUser.getId());
+            userSearchService.invalidate();
             return Response.status(Response.Status.CREATED).entity(createdUser).build();
         } catch (SQLException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -125,23 +380,66 @@ public class UserResource {
         }
     }
 
+    /**
+     * ユーザー一括インポート
+     * POST /api/users/import?chunkSize=1000
+     * リクエスト: CSV（Content-Type: text/csv。1行目はヘッダー username,email,fullName[,password][,passwordHash]）
+     *             または NDJSON（{"username": "...", "email": "...", "fullName": "...", "password": "..."}）
+     * レスポンス: チャンクごとの進捗と所要時間・不正な行・失敗したチャンクを NDJSON で逐次返し、最後に集計を返す
+     *
+     * チャンクごとに COPY で登録し、password / passwordHash を指定した行は認証サービスに認証情報をまとめて登録する。
+     */
+    @POST
+    @Path("/import")
+    @Consumes({TEXT_CSV, NDJSON})
+    @Produces(NDJSON)
+    public Response importUsers(InputStream body, @QueryParam("chunkSize") @DefaultValue("1000") int chunkSize) {
+        int size = Math.min(Math.max(1, chunkSize), IMPORT_MAX_CHUNK_SIZE);
+        MediaType mediaType = httpHeaders.getMediaType();
+        boolean csv = mediaType != null && mediaType.isCompatible(MediaType.valueOf(TEXT_CSV));
+
+        UserImportReader reader;
+        try {
+            reader = new UserImportReader(body, csv);
+        } catch (IllegalArgumentException | IOException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(createErrorResponse(e.getMessage()))
+                    .build();
+        }
+
+        StreamingOutput stream = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            userImportService.importUsers(reader, size, event -> {
+                writer.write(JSONB.toJson(event));
+                writer.write('\n');
+                writer.flush();
+            });
+        };
+        return Response.ok(stream, NDJSON).build();
+    }
+
     /**
      * ユーザー更新
+     * If-Match に ETag を指定した場合は、その時点から更新されていない場合のみ更新する（不一致は 412）
      */
     @PUT
     @Path("/{id}")
     public Response updateUser(@PathParam("id") UUID id, User user) {
         try {
-            Optional<User> existingUser = userRepository.findById(id);
-            if (!existingUser.isPresent()) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(createErrorResponse("User not found with id: " + id))
-                        .build();
+            List<LocalDateTime> expectedVersions = parseIfMatch(id);
+            if (expectedVersions != null && expectedVersions.isEmpty()) {
+                return preconditionFailed(id);
             }
 
             user.setId(id);
-            User updatedUser = userRepository.update(user);
-            return Response.ok(updatedUser).build();
+            Optional<User> updatedUser = userRepository.updateReturning(user, expectedVersions);
+            userProfileCache.invalidate(id);
+            userSearchService.invalidate();
+            if (!updatedUser.isPresent()) {
+                return expectedVersions != null ? preconditionFailed(id) : userNotFound(id);
+            }
+            return Response.ok(updatedUser.get()).tag(createETag(updatedUser.get())).build();
         } catch (SQLException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(createErrorResponse("Failed to update user: " + e.getMessage()))
@@ -151,19 +449,23 @@ public class UserResource {
 
     /**
      * ユーザー削除
+     * If-Match に ETag を指定した場合は、その時点から更新されていない場合のみ削除する（不一致は 412）
      */
     @DELETE
     @Path("/{id}")
     public Response deleteUser(@PathParam("id") UUID id) {
         try {
-            Optional<User> user = userRepository.findById(id);
-            if (!user.isPresent()) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(createErrorResponse("User not found with id: " + id))
-                        .build();
+            List<LocalDateTime> expectedVersions = parseIfMatch(id);
+            if (expectedVersions != null && expectedVersions.isEmpty()) {
+                return preconditionFailed(id);
             }
 
-            userRepository.delete(id);
+            boolean deleted = userRepository.deleteReturning(id, expectedVersions);
+            userProfileCache.invalidate(id);
+            userSearchService.invalidate();
+            if (!deleted) {
+                return expectedVersions != null ? preconditionFailed(id) : userNotFound(id);
+            }
             return Response.noContent().build();
         } catch (SQLException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -172,6 +474,223 @@ public class UserResource {
         }
     }
 
+    /**
+     * ID でユーザーを取得（キャッシュになければDBから読み込んで登録）
+     */
+    private Optional<User> findUserById(UUID id) throws SQLException {
+        Optional<User> cached = userProfileCache.get(id);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long generation = userProfileCache.currentGeneration();
+        Optional<User> user = userRepository.findById(id);
+        user.ifPresent(loaded -> userProfileCache.putLoaded(loaded, generation));
+        return user;
+    }
+
+    /**
+     * ユーザー名でユーザーを取得（キャッシュになければDBから読み込んで登録）
+     */
+    private Optional<User> findUserByUsername(String username) throws SQLException {
+        Optional<User> cached = userProfileCache.getByUsername(username);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long generation = userProfileCache.currentGeneration();
+        Optional<User> user = userRepository.findByUsername(username);
+        user.ifPresent(loaded -> userProfileCache.putLoaded(loaded, generation));
+        return user;
+    }
+
+    /**
+     * ETag を付けて応答する（If-None-Match が一致する場合はボディなしの 304）
+     */
+    private Response okWithETag(User user, Object entity) {
+        EntityTag etag = createETag(user);
+        Response.ResponseBuilder precondition = request.evaluatePreconditions(etag);
+        if (precondition != null) {
+            Response response = precondition.cacheControl(REVALIDATE).build();
+            conditionalGetStats.record(isConditional(),
+                    response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode());
+            return response;
+        }
+        conditionalGetStats.record(isConditional(), false);
+        return Response.ok(entity).tag(etag).cacheControl(REVALIDATE).build();
+    }
+
+    /**
+     * ユーザーの ID と updated_at から強い ETag を生成（更新のたびに updated_at が変わる）
+     */
+    private EntityTag createETag(User user) {
+        LocalDateTime version = user.getUpdatedAt() != null ? user.getUpdatedAt() : user.getCreatedAt();
+        long micros = version != null
+                ? version.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + version.getNano() / 1_000
+                : 0L;
+        return new EntityTag(user.getId() + "-" + Long.toHexString(micros));
+    }
+
+    /**
+     * If-Match ヘッダーから更新・削除を許可する updated_at の一覧を取得
+     *
+     * @return ヘッダーがない、または "*" の場合は null（無条件）。
+     *         どの ETag もこのユーザーの強い ETag として解釈できない場合は空のリスト（必ず 412）
+     */
+    private List<LocalDateTime> parseIfMatch(UUID id) {
+        String ifMatch = httpHeaders.getHeaderString(HttpHeaders.IF_MATCH);
+        if (ifMatch == null || ifMatch.trim().isEmpty() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String prefix = id + "-";
+        List<LocalDateTime> versions = new ArrayList<>();
+        for (String tag : ifMatch.split(",")) {
+            String value = tag.trim();
+            // 弱い ETag（W/"..."）は強い比較では一致しない
+            if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+                continue;
+            }
+            value = value.substring(1, value.length() - 1);
+            if (!value.startsWith(prefix)) {
+                continue;
+            }
+            try {
+                long micros = Long.parseLong(value.substring(prefix.length()), 16);
+                versions.add(LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC));
+            } catch (NumberFormatException e) {
+                // このサービスが発行した ETag ではない
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * If-Match が一致しない場合の応答（ユーザーが存在しない場合は 404）
+     */
+    private Response preconditionFailed(UUID id) throws SQLException {
+        Optional<User> current = userRepository.findById(id);
+        if (!current.isPresent()) {
+            return userNotFound(id);
+        }
+        return Response.status(Response.Status.PRECONDITION_FAILED)
+                .tag(createETag(current.get()))
+                .entity(createErrorResponse("User has been modified: " + id))
+                .build();
+    }
+
+    private Response userNotFound(UUID id) {
+        return Response.status(Response.Status.NOT_FOUND)
+                .entity(createErrorResponse("User not found with id: " + id))
+                .build();
+    }
+
+    private boolean isConditional() {
+        return httpHeaders.getHeaderString(HttpHeaders.IF_NONE_MATCH) != null;
+    }
+
+    private static CacheControl createRevalidateCacheControl() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+        cacheControl.setNoTransform(false);
+        return cacheControl;
+    }
+
+    /**
+     * DBから読み出したユーザーを1件ずつレスポンスに書き出す（JSON 配列または NDJSON）
+     * 書き出し開始後にDBエラーが発生した場合はステータスを変更できないため、接続を切って不完全な応答であることを伝える
+     */
+    private StreamingOutput streamUsers(UserFilter filter, UserCursor cursor, boolean ndjson) {
+        return output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            boolean[] first = {true};
+            if (!ndjson) {
+                writer.write('[');
+            }
+            try {
+                userRepository.streamAll(filter, cursor, STREAM_FETCH_SIZE, user -> {
+                    if (ndjson) {
+                        writer.write(JSONB.toJson(user));
+                        writer.write('\n');
+                    } else {
+                        if (!first[0]) {
+                            writer.write(',');
+                        }
+                        writer.write(JSONB.toJson(user));
+                    }
+                    first[0] = false;
+                });
+            } catch (SQLException e) {
+                System.err.println("Failed to stream users: " + e.getMessage());
+                throw new IOException("Failed to stream users", e);
+            }
+            if (!ndjson) {
+                writer.write(']');
+            }
+            writer.flush();
+        };
+    }
+
+    /**
+     * 検索条件をパース
+     *
+     * @throws IllegalArgumentException 検索語がない、または不正な mode / fields の場合
+     */
+    private UserSearchQuery parseSearchQuery(String q, String mode, String fields) {
+        String text = q != null ? q.trim() : "";
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("q is required");
+        }
+        if (text.length() > SEARCH_MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("q must be at most " + SEARCH_MAX_QUERY_LENGTH + " characters");
+        }
+
+        UserSearchQuery.Mode searchMode;
+        if ("prefix".equalsIgnoreCase(mode)) {
+            searchMode = UserSearchQuery.Mode.PREFIX;
+        } else if ("fuzzy".equalsIgnoreCase(mode)) {
+            searchMode = UserSearchQuery.Mode.FUZZY;
+        } else {
+            throw new IllegalArgumentException("mode must be prefix or fuzzy");
+        }
+
+        Set<UserSearchQuery.Field> searchFields = EnumSet.noneOf(UserSearchQuery.Field.class);
+        for (String field : fields.split(",")) {
+            if (!field.trim().isEmpty()) {
+                searchFields.add(UserSearchQuery.Field.fromParam(field.trim()));
+            }
+        }
+        if (searchFields.isEmpty()) {
+            throw new IllegalArgumentException("fields must not be empty");
+        }
+        return new UserSearchQuery(text, searchMode, searchFields);
+    }
+
+    private UserFilter parseFilter(String usernamePrefix, String createdFrom, String createdTo) {
+        UserFilter filter = new UserFilter(
+                usernamePrefix != null && !usernamePrefix.isEmpty() ? usernamePrefix : null,
+                parseDateTime("createdFrom", createdFrom),
+                parseDateTime("createdTo", createdTo));
+        if (filter.getCreatedFrom() != null && filter.getCreatedTo() != null
+                && !filter.getCreatedFrom().isBefore(filter.getCreatedTo())) {
+            throw new IllegalArgumentException("createdFrom must be before createdTo");
+        }
+        return filter;
+    }
+
+    /**
+     * 日時（2025-01-01T00:00:00）または日付（2025-01-01、その日の0時）を解析
+     */
+    private LocalDateTime parseDateTime(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return value.length() == 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
     private Map<String, String> createErrorResponse(String message) {
         Map<String, String> error = new HashMap<>();
         error.put("error", message);
@@ -0,0 +1,299 @@
+package com.example.microservices.user.search;
+
+import com.example.microservices.user.model.User;
+import com.example.microservices.user.model.UserSearchCursor;
+import com.example.microservices.user.model.UserSearchHit;
+import com.example.microservices.user.model.UserSearchQuery;
+import com.example.microservices.user.repository.UserRepository;
+import com.example.microservices.user.util.ConfigUtil;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * メモリ上のユーザー検索索引（pg_trgm が使えない環境・テスト用）
+ * 全ユーザーを (小文字のユーザー名, id) 順の配列に読み込み、項目ごとに小文字の値で整列した位置の配列を持つ。
+ * 前方一致は二分探索、あいまい検索は pg_trgm と同じ方法で求めたトライグラム類似度で行う。
+ * 作成・更新・削除時に古くなったことを記録し、次の検索時（または一定時間経過後）に読み込み直す。
+ */
+@ApplicationScoped
+public class UserSearchIndex {
+
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    // 他ノードでの更新を反映するまでの上限
+    private final long refreshMillis = ConfigUtil.getLong("USER_SEARCH_INDEX_REFRESH_MILLIS", 60 * 1000L);
+
+    @Inject
+    private UserRepository userRepository;
+
+    private volatile Snapshot snapshot;
+    private volatile boolean stale = true;
+
+    private final LongAdder rebuilds = new LongAdder();
+
+    /**
+     * 読み込み時点の索引
+     */
+    private static class Snapshot {
+        private final User[] users;
+        // 項目ごとの小文字の値（users と同じ位置）
+        private final Map<UserSearchQuery.Field, String[]> values = new HashMap<>();
+        // 項目ごとに小文字の値の順に並べた users の位置
+        private final Map<UserSearchQuery.Field, int[]> sorted = new HashMap<>();
+        // 項目ごとのトライグラム（あいまい検索時に初めて作成する）
+        private volatile Map<UserSearchQuery.Field, Set<String>[]> trigrams;
+        private final long loadedAtMillis;
+
+        Snapshot(List<User> loaded, long loadedAtMillis) {
+            this.loadedAtMillis = loadedAtMillis;
+            users = loaded.toArray(new User[0]);
+            Arrays.sort(users, Comparator.comparing((User user) -> lower(user.getUsername()))
+                    .thenComparing(user -> user.getId().toString()));
+            for (UserSearchQuery.Field field : UserSearchQuery.Field.values()) {
+                String[] fieldValues = new String[users.length];
+                for (int i = 0; i < users.length; i++) {
+                    fieldValues[i] = lower(valueOf(users[i], field));
+                }
+                Integer[] order = new Integer[users.length];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, Comparator.comparing(i -> fieldValues[i]));
+                values.put(field, fieldValues);
+                sorted.put(field, Arrays.stream(order).mapToInt(Integer::intValue).toArray());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<UserSearchQuery.Field, Set<String>[]> trigrams() {
+            Map<UserSearchQuery.Field, Set<String>[]> result = trigrams;
+            if (result == null) {
+                result = new HashMap<>();
+                for (UserSearchQuery.Field field : UserSearchQuery.Field.values()) {
+                    String[] fieldValues = values.get(field);
+                    Set<String>[] sets = new Set[fieldValues.length];
+                    for (int i = 0; i < fieldValues.length; i++) {
+                        sets[i] = trigramsOf(fieldValues[i]);
+                    }
+                    result.put(field, sets);
+                }
+                trigrams = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 索引が古くなったことを記録（作成・更新・削除時）
+     */
+    public void markStale() {
+        stale = true;
+    }
+
+    /**
+     * 前方一致で検索（(小文字のユーザー名, id) 順。DB での検索と同じ並び）
+     */
+    public List<UserSearchHit> searchByPrefix(UserSearchQuery query, UserSearchCursor after, int limit) throws SQLException {
+        Snapshot current = current();
+        String prefix = query.getText();
+        BitSet matched = new BitSet(current.users.length);
+        for (UserSearchQuery.Field field : query.getFields()) {
+            String[] fieldValues = current.values.get(field);
+            int[] order = current.sorted.get(field);
+            for (int i = lowerBound(fieldValues, order, prefix); i < order.length && fieldValues[order[i]].startsWith(prefix); i++) {
+                matched.set(order[i]);
+            }
+        }
+
+        List<UserSearchHit> hits = new ArrayList<>();
+        for (int i = matched.nextSetBit(0); i >= 0 && hits.size() < limit; i = matched.nextSetBit(i + 1)) {
+            User user = current.users[i];
+            if (after != null && compareKey(current.values.get(UserSearchQuery.Field.USERNAME)[i], user, after) <= 0) {
+                continue;
+            }
+            hits.add(new UserSearchHit(copy(user), 1.0f));
+        }
+        return hits;
+    }
+
+    /**
+     * トライグラム類似度で検索（類似度の降順、同じ類似度は id 順。DB での検索と同じ並び）
+     */
+    public List<UserSearchHit> searchBySimilarity(UserSearchQuery query, UserSearchCursor after, int limit, float threshold)
+            throws SQLException {
+        Snapshot current = current();
+        Map<UserSearchQuery.Field, Set<String>[]> trigrams = current.trigrams();
+        Set<String> queryTrigrams = trigramsOf(query.getText());
+
+        List<UserSearchHit> candidates = new ArrayList<>();
+        for (int i = 0; i < current.users.length; i++) {
+            float score = 0;
+            for (UserSearchQuery.Field field : query.getFields()) {
+                score = Math.max(score, similarity(queryTrigrams, trigrams.get(field)[i]));
+            }
+            if (score < threshold) {
+                continue;
+            }
+            if (after != null && (score > after.getScore()
+                    || (score == after.getScore() && current.users[i].getId().toString().compareTo(after.getId().toString()) <= 0))) {
+                continue;
+            }
+            candidates.add(new UserSearchHit(current.users[i], score));
+        }
+        candidates.sort(Comparator.comparing((UserSearchHit hit) -> -hit.getScore())
+                .thenComparing(hit -> hit.getUser().getId().toString()));
+
+        List<UserSearchHit> hits = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (UserSearchHit candidate : candidates.subList(0, Math.min(limit, candidates.size()))) {
+            hits.add(new UserSearchHit(copy(candidate.getUser()), candidate.getScore()));
+        }
+        return hits;
+    }
+
+    /**
+     * 索引の統計を取得
+     */
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", current != null ? current.users.length : 0);
+        stats.put("stale", stale);
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("refreshMillis", refreshMillis);
+        return stats;
+    }
+
+    /**
+     * 現在の索引を取得（古い場合は DB から読み込み直す）
+     */
+    private Snapshot current() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null && !stale && System.currentTimeMillis() - current.loadedAtMillis < refreshMillis) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && !stale && System.currentTimeMillis() - current.loadedAtMillis < refreshMillis) {
+                return current;
+            }
+            // 読み込み中の更新を取りこぼさないよう、読み込み前に解除する
+            stale = false;
+            long loadedAt = System.currentTimeMillis();
+            List<User> users = new ArrayList<>();
+            try {
+                userRepository.streamAll(null, null, LOAD_FETCH_SIZE, users::add);
+            } catch (SQLException e) {
+                stale = true;
+                throw e;
+            } catch (IOException e) {
+                stale = true;
+                throw new SQLException("Failed to load users into the search index", e);
+            }
+            current = new Snapshot(users, loadedAt);
+            snapshot = current;
+            rebuilds.increment();
+            return current;
+        }
+    }
+
+    /**
+     * order の並びで prefix 以上となる最初の位置
+     */
+    private static int lowerBound(String[] fieldValues, int[] order, String prefix) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fieldValues[order[mid]].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * (小文字のユーザー名, id) をカーソルと比較
+     */
+    private static int compareKey(String username, User user, UserSearchCursor after) {
+        int result = username.compareTo(after.getKey());
+        return result != 0 ? result : user.getId().toString().compareTo(after.getId().toString());
+    }
+
+    /**
+     * pg_trgm と同じ方法でトライグラムを作成
+     * 英数字の並びを単語とし、各単語の前に空白2つ・後ろに空白1つを付けて3文字ずつ切り出す
+     */
+    static Set<String> trigramsOf(String value) {
+        Set<String> trigrams = new HashSet<>();
+        int length = value.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(value.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String padded = "  " + value.substring(start, i) + " ";
+                for (int j = 0; j + 3 <= padded.length(); j++) {
+                    trigrams.add(padded.substring(j, j + 3));
+                }
+                start = -1;
+            }
+        }
+        return trigrams;
+    }
+
+    /**
+     * 共通するトライグラムの数 / どちらかに含まれるトライグラムの数
+     */
+    static float similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int common = 0;
+        for (String trigram : a) {
+            if (b.contains(trigram)) {
+                common++;
+            }
+        }
+        return (float) common / (a.size() + b.size() - common);
+    }
+
+    private static String valueOf(User user, UserSearchQuery.Field field) {
+        switch (field) {
+            case EMAIL:
+                return user.getEmail();
+            case FULL_NAME:
+                return user.getFullName();
+            default:
+                return user.getUsername();
+        }
+    }
+
+    private static String lower(String value) {
+        return value != null ? value.toLowerCase(Locale.ROOT) : "";
+    }
+
+    // User は可変のため、呼び出し元による変更が索引に影響しないよう複製する
+    private static User copy(User user) {
+        User copy = new User(user.getId(), user.getUsername(), user.getEmail(), user.getFullName());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+}
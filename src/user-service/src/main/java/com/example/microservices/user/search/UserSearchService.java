@@ -0,0 +1,112 @@
+package com.example.microservices.user.search;
+
+import com.example.microservices.user.model.UserSearchCursor;
+import com.example.microservices.user.model.UserSearchHit;
+import com.example.microservices.user.model.UserSearchQuery;
+import com.example.microservices.user.repository.UserRepository;
+import com.example.microservices.user.util.ConfigUtil;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ユーザー検索
+ * 通常は DB のインデックス（前方一致は text_pattern_ops、あいまい検索は pg_trgm）で検索する。
+ * USER_SEARCH_BACKEND=memory の場合、または auto（既定）で pg_trgm がインストールされていない場合の
+ * あいまい検索はメモリ上の索引で検索する。
+ */
+@ApplicationScoped
+public class UserSearchService {
+
+    private final String backend = ConfigUtil.getString("USER_SEARCH_BACKEND", "auto").toLowerCase(Locale.ROOT);
+    // pg_trgm の既定値と同じ
+    private final float similarityThreshold =
+            Float.parseFloat(ConfigUtil.getString("USER_SEARCH_SIMILARITY_THRESHOLD", "0.3"));
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private UserSearchIndex userSearchIndex;
+
+    // pg_trgm の有無（初回の検索時に確認する）
+    private volatile Boolean trigramAvailable;
+
+    private final LongAdder prefixSearches = new LongAdder();
+    private final LongAdder fuzzySearches = new LongAdder();
+    private final LongAdder memorySearches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    /**
+     * ユーザーを検索
+     *
+     * @param after 前のページの最後の結果のカーソル（最初のページは null）
+     */
+    public List<UserSearchHit> search(UserSearchQuery query, UserSearchCursor after, int limit) throws SQLException {
+        long startedAt = System.nanoTime();
+        try {
+            boolean fuzzy = query.getMode() == UserSearchQuery.Mode.FUZZY;
+            (fuzzy ? fuzzySearches : prefixSearches).increment();
+            if (useMemoryIndex(fuzzy)) {
+                memorySearches.increment();
+                return fuzzy
+                        ? userSearchIndex.searchBySimilarity(query, after, limit, similarityThreshold)
+                        : userSearchIndex.searchByPrefix(query, after, limit);
+            }
+            return fuzzy
+                    ? userRepository.searchBySimilarity(query, after, limit, similarityThreshold)
+                    : userRepository.searchByPrefix(query, after, limit);
+        } finally {
+            searchNanos.add(System.nanoTime() - startedAt);
+        }
+    }
+
+    /**
+     * ユーザーの作成・更新・削除を通知（メモリ上の索引を読み込み直させる）
+     */
+    public void invalidate() {
+        userSearchIndex.markStale();
+    }
+
+    /**
+     * 検索の統計を取得
+     */
+    public Map<String, Object> getStats() {
+        long searches = prefixSearches.sum() + fuzzySearches.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("backend", backend);
+        stats.put("trigramAvailable", trigramAvailable);
+        stats.put("similarityThreshold", similarityThreshold);
+        stats.put("prefixSearches", prefixSearches.sum());
+        stats.put("fuzzySearches", fuzzySearches.sum());
+        stats.put("memorySearches", memorySearches.sum());
+        stats.put("avgSearchMillis", searches > 0 ? (double) TimeUnit.NANOSECONDS.toMicros(searchNanos.sum() / searches) / 1000 : 0.0);
+        stats.put("memoryIndex", userSearchIndex.getStats());
+        return stats;
+    }
+
+    private boolean useMemoryIndex(boolean fuzzy) throws SQLException {
+        if ("memory".equals(backend)) {
+            return true;
+        }
+        if ("database".equals(backend) || !fuzzy) {
+            return false;
+        }
+        Boolean available = trigramAvailable;
+        if (available == null) {
+            available = userRepository.isTrigramAvailable();
+            trigramAvailable = available;
+            if (!available) {
+                System.err.println("pg_trgm is not installed; fuzzy user search uses the in-memory index");
+            }
+        }
+        return !available;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.microservices.user.util;
+
+/**
+ * 設定値取得ユーティリティ
+ * システムプロパティ優先、次に環境変数、最後にデフォルト値
+ * テスト時にはシステムプロパティで動的な値を設定可能
+ */
+public final class ConfigUtil {
+
+    private ConfigUtil() {
+    }
+
+    /**
+     * 文字列の設定値を取得
+     */
+    public static String getString(String key, String defaultValue) {
+        // システムプロパティを優先（テスト用）
+        String sysProp = System.getProperty(key);
+        if (sysProp != null && !sysProp.isEmpty()) {
+            return sysProp;
+        }
+        // 次に環境変数
+        String envVar = System.getenv(key);
+        if (envVar != null && !envVar.isEmpty()) {
+            return envVar;
+        }
+        // デフォルト値
+        return defaultValue;
+    }
+
+    /**
+     * 整数の設定値を取得（不正な値の場合はデフォルト値）
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid integer value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * long値の設定値を取得（不正な値の場合はデフォルト値）
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid long value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 真偽値の設定値を取得
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+}
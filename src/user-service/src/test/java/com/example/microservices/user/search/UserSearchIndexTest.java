@@ -0,0 +1,198 @@
+package com.example.microservices.user.search;
+
+import com.example.microservices.user.model.User;
+import com.example.microservices.user.model.UserSearchCursor;
+import com.example.microservices.user.model.UserSearchHit;
+import com.example.microservices.user.model.UserSearchQuery;
+import com.example.microservices.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * UserSearchIndex のテスト
+ * トライグラム・類似度が pg_trgm の show_trgm / similarity と同じ値になること、
+ * カーソルで続きを取得した結果が一度に取得した結果と一致することを確認します。
+ */
+class UserSearchIndexTest {
+
+    private static final float THRESHOLD = 0.3f;
+
+    private UserRepository userRepository;
+    private UserSearchIndex userSearchIndex;
+    private final List<User> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        users.clear();
+        addUser("word", "Word");
+        addUser("words", "Word");
+        addUser("two_words", "Word");
+        addUser("sword", "Sword Fish");
+        addUser("wordsmith", "Words Mith");
+        addUser("world", "World");
+        addUser("Wordy", "Wordy");
+        addUser("other", "Someone Else");
+        addUser("word-play", "Word Play");
+
+        userRepository = mock(UserRepository.class);
+        doAnswer(invocation -> {
+            UserRepository.RowHandler handler = invocation.getArgument(3);
+            for (User user : users) {
+                handler.accept(user);
+            }
+            return (long) users.size();
+        }).when(userRepository).streamAll(isNull(), isNull(), anyInt(), any(UserRepository.RowHandler.class));
+
+        userSearchIndex = new UserSearchIndex();
+        Field field = UserSearchIndex.class.getDeclaredField("userRepository");
+        field.setAccessible(true);
+        field.set(userSearchIndex, userRepository);
+    }
+
+    @Test
+    void testTrigramsOf_ShouldMatchPgTrgm() {
+        // show_trgm('word') = {"  w"," wo","ord","rd ","wor"}
+        assertEquals(new HashSet<>(Arrays.asList("  w", " wo", "wor", "ord", "rd ")), UserSearchIndex.trigramsOf("word"));
+        // show_trgm('a') = {"  a"," a "}
+        assertEquals(new HashSet<>(Arrays.asList("  a", " a ")), UserSearchIndex.trigramsOf("a"));
+        // 英数字以外は単語の区切りとして扱う
+        assertEquals(UserSearchIndex.trigramsOf("foo bar"), UserSearchIndex.trigramsOf("foo-bar"));
+        assertEquals(UserSearchIndex.trigramsOf("foo bar"), UserSearchIndex.trigramsOf("  foo,,bar. "));
+        assertTrue(UserSearchIndex.trigramsOf("").isEmpty());
+        assertTrue(UserSearchIndex.trigramsOf("--").isEmpty());
+    }
+
+    @Test
+    void testSimilarity_ShouldMatchPgTrgm() {
+        // SELECT similarity('word', 'two words') = 0.36363637
+        assertEquals(0.36363637f, similarity("word", "two words"));
+        // SELECT similarity('cat', 'cats') = 0.5
+        assertEquals(0.5f, similarity("cat", "cats"));
+        assertEquals(1.0f, similarity("word", "word"));
+        assertEquals(0.0f, similarity("word", "cat"));
+        assertEquals(0.0f, similarity("", "word"));
+    }
+
+    @Test
+    void testSearchBySimilarity_ShouldOrderByScoreThenId() throws Exception {
+        // Act
+        List<UserSearchHit> hits = userSearchIndex.searchBySimilarity(query("word", UserSearchQuery.Mode.FUZZY), null, 100, THRESHOLD);
+
+        // Assert
+        assertFalse(hits.isEmpty());
+        for (int i = 1; i < hits.size(); i++) {
+            UserSearchHit previous = hits.get(i - 1);
+            UserSearchHit current = hits.get(i);
+            assertTrue(previous.getScore() > current.getScore()
+                    || (previous.getScore() == current.getScore()
+                        && previous.getUser().getId().toString().compareTo(current.getUser().getId().toString()) < 0));
+        }
+        for (UserSearchHit hit : hits) {
+            assertTrue(hit.getScore() >= THRESHOLD);
+            assertNotEquals("other", hit.getUser().getUsername());
+        }
+        // 同じ氏名 "Word" の3人は類似度 1.0 で先頭に並ぶ
+        assertEquals(1.0f, hits.get(2).getScore());
+    }
+
+    @Test
+    void testSearchBySimilarity_WithCursor_ShouldPageThroughAllHitsOnce() throws Exception {
+        // Arrange
+        UserSearchQuery query = query("word", UserSearchQuery.Mode.FUZZY);
+        List<UserSearchHit> all = userSearchIndex.searchBySimilarity(query, null, 100, THRESHOLD);
+
+        // Act: 2件ずつ、エンコード・デコードしたカーソルで続きを取得
+        List<UserSearchHit> paged = new ArrayList<>();
+        UserSearchCursor cursor = null;
+        while (true) {
+            List<UserSearchHit> page = userSearchIndex.searchBySimilarity(query, cursor, 2, THRESHOLD);
+            if (page.isEmpty()) {
+                break;
+            }
+            paged.addAll(page);
+            String encoded = UserSearchCursor.of(UserSearchQuery.Mode.FUZZY, page.get(page.size() - 1)).encode();
+            cursor = UserSearchCursor.decode(encoded, UserSearchQuery.Mode.FUZZY);
+        }
+
+        // Assert: 同じ類似度のユーザーがページをまたいでも重複・欠落しない
+        assertEquals(ids(all), ids(paged));
+    }
+
+    @Test
+    void testSearchByPrefix_WithCursor_ShouldPageInUsernameOrder() throws Exception {
+        // Arrange
+        UserSearchQuery query = query("WOR", UserSearchQuery.Mode.PREFIX);
+        List<UserSearchHit> all = userSearchIndex.searchByPrefix(query, null, 100);
+
+        // Act
+        List<UserSearchHit> paged = new ArrayList<>();
+        UserSearchCursor cursor = null;
+        while (true) {
+            List<UserSearchHit> page = userSearchIndex.searchByPrefix(query, cursor, 2);
+            if (page.isEmpty()) {
+                break;
+            }
+            paged.addAll(page);
+            cursor = UserSearchCursor.of(UserSearchQuery.Mode.PREFIX, page.get(page.size() - 1));
+        }
+
+        // Assert: 大文字小文字を区別せず、ユーザー名・氏名のどちらかが前方一致するユーザーを (小文字のユーザー名, id) 順に返す
+        List<String> usernames = new ArrayList<>();
+        for (UserSearchHit hit : all) {
+            usernames.add(hit.getUser().getUsername());
+        }
+        assertEquals(Arrays.asList("two_words", "word", "word-play", "words", "wordsmith", "Wordy", "world"), usernames);
+        assertEquals(ids(all), ids(paged));
+    }
+
+    @Test
+    void testMarkStale_ShouldReloadOnNextSearch() throws Exception {
+        // Arrange
+        UserSearchQuery query = query("new", UserSearchQuery.Mode.PREFIX);
+        assertTrue(userSearchIndex.searchByPrefix(query, null, 10).isEmpty());
+        addUser("newcomer", "New Comer");
+
+        // Act & Assert: 古いと記録されるまでは読み込み済みの索引を使う
+        assertTrue(userSearchIndex.searchByPrefix(query, null, 10).isEmpty());
+        userSearchIndex.markStale();
+        assertEquals(1, userSearchIndex.searchByPrefix(query, null, 10).size());
+        verify(userRepository, times(2)).streamAll(isNull(), isNull(), anyInt(), any(UserRepository.RowHandler.class));
+    }
+
+    private void addUser(String username, String fullName) {
+        users.add(new User(UUID.randomUUID(), username, username + "@example.com", fullName));
+    }
+
+    private static UserSearchQuery query(String text, UserSearchQuery.Mode mode) {
+        return new UserSearchQuery(text, mode, EnumSet.of(UserSearchQuery.Field.USERNAME, UserSearchQuery.Field.FULL_NAME));
+    }
+
+    private static float similarity(String a, String b) {
+        return UserSearchIndex.similarity(UserSearchIndex.trigramsOf(a), UserSearchIndex.trigramsOf(b));
+    }
+
+    private static List<UUID> ids(List<UserSearchHit> hits) {
+        List<UUID> ids = new ArrayList<>();
+        for (UserSearchHit hit : hits) {
+            ids.add(hit.getUser().getId());
+        }
+        return ids;
+    }
+}